@@ -0,0 +1,62 @@
+package io.github.tkjonesy.ONNX;
+
+import lombok.Getter;
+
+/**
+ * The {@code BatchSizer} class picks how many images to infer in one call so that a batch stays within a latency
+ * budget. It keeps a moving average of the measured cost per image and chooses the largest batch whose estimated
+ * latency fits the budget, growing by at most a factor of two per batch so a bad first estimate cannot overshoot.
+ * Larger batches let ONNX Runtime use the CPU better, at the cost of the time the first image waits for the last.
+ */
+public class BatchSizer {
+
+    // Weight of the newest measurement in the moving average
+    private static final double SMOOTHING = 0.2;
+
+    /** The largest batch size ever chosen. */
+    @Getter
+    private final int maxBatchSize;
+
+    /** The latency a batch may take, in nanoseconds. */
+    @Getter
+    private final long latencyBudgetNanos;
+
+    private double nanosPerImage = -1;
+    private int batchSize = 1;
+
+    /**
+     * @param maxBatchSize The largest batch size to choose.
+     * @param latencyBudgetNanos The time one batch may take, in nanoseconds.
+     */
+    public BatchSizer(int maxBatchSize, long latencyBudgetNanos) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.latencyBudgetNanos = latencyBudgetNanos;
+    }
+
+    /**
+     * @return The number of images the next batch should hold.
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Records how long a batch took and updates the batch size.
+     *
+     * @param images The number of images in the batch.
+     * @param nanos The time the batch took, in nanoseconds.
+     */
+    public synchronized void record(int images, long nanos) {
+        if (images <= 0) return;
+        double perImage = (double) nanos / images;
+        nanosPerImage = nanosPerImage < 0 ? perImage : SMOOTHING * perImage + (1 - SMOOTHING) * nanosPerImage;
+
+        int fits = (int) Math.max(1, Math.min(maxBatchSize, latencyBudgetNanos / Math.max(1.0, nanosPerImage)));
+        int next = Math.min(fits, batchSize * 2);
+        if (next != batchSize) {
+            System.out.printf("📦 Batch size %d -> %d (%.1f ms per image, budget %d ms)%n",
+                    batchSize, next, nanosPerImage / 1e6, latencyBudgetNanos / 1_000_000);
+            batchSize = next;
+        }
+    }
+}
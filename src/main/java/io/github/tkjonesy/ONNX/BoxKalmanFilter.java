@@ -0,0 +1,150 @@
+package io.github.tkjonesy.ONNX;
+
+/**
+ * The {@code BoxKalmanFilter} class holds the constant-velocity Kalman filter of the {@link ObjectTracker}, working
+ * in place on the tracker's primitive state arrays.
+ * <p>
+ * Track {@code i} has the state {@code state[8 * i .. 8 * i + 7]}: the box's center x and y, width and height,
+ * followed by their velocities in pixels per second. The four coordinates move independently, so instead of one
+ * 8x8 covariance each coordinate has a 2x2 (position, velocity) covariance, stored as its three distinct entries in
+ * {@code covariance[12 * i + 3 * k .. 12 * i + 3 * k + 2]}. This is exact for the diagonal noise used here and makes
+ * a step a handful of multiplications per coordinate.
+ * <p>
+ * Noise is relative to the size of the box, so small and large instruments are smoothed alike: detections are
+ * trusted to {@value #MEASUREMENT_STD} of the box size, and the velocity may change by about
+ * {@value #ACCELERATION_STD} box sizes per second every second.
+ */
+final class BoxKalmanFilter {
+
+    /** The standard deviation of a detected coordinate, as a fraction of the box size. */
+    private static final float MEASUREMENT_STD = 0.05f;
+
+    /** The standard deviation of the acceleration, in box sizes per second squared. */
+    private static final float ACCELERATION_STD = 1.0f;
+
+    /** The standard deviation of a new track's velocity, in box sizes per second. */
+    private static final float INITIAL_VELOCITY_STD = 1.0f;
+
+    static final int STATE_SIZE = 8;
+    static final int COVARIANCE_SIZE = 12;
+
+    private BoxKalmanFilter() {}
+
+    /**
+     * Starts a track at rest on a detected box.
+     *
+     * @param box The box as (x1, y1, x2, y2), starting at {@code o}.
+     */
+    static void init(float[] state, float[] covariance, int i, float[] box, int o) {
+        int s = STATE_SIZE * i, c = COVARIANCE_SIZE * i;
+        state[s] = (box[o] + box[o + 2]) / 2;
+        state[s + 1] = (box[o + 1] + box[o + 3]) / 2;
+        state[s + 2] = box[o + 2] - box[o];
+        state[s + 3] = box[o + 3] - box[o + 1];
+        float size = size(state, s);
+        float positionVariance = square(MEASUREMENT_STD * size);
+        float velocityVariance = square(INITIAL_VELOCITY_STD * size);
+        for (int k = 0; k < 4; k++) {
+            state[s + 4 + k] = 0;
+            covariance[c + 3 * k] = positionVariance;
+            covariance[c + 3 * k + 1] = 0;
+            covariance[c + 3 * k + 2] = velocityVariance;
+        }
+    }
+
+    /**
+     * Moves a track {@code dt} seconds ahead and grows its uncertainty accordingly.
+     */
+    static void predict(float[] state, float[] covariance, int i, float dt) {
+        if (dt <= 0) return;
+        int s = STATE_SIZE * i, c = COVARIANCE_SIZE * i;
+        // Continuous white-noise acceleration, integrated over dt
+        float q = square(ACCELERATION_STD * size(state, s));
+        float q00 = q * dt * dt * dt / 3, q01 = q * dt * dt / 2, q11 = q * dt;
+        for (int k = 0; k < 4; k++) {
+            state[s + k] += state[s + 4 + k] * dt;
+            int p = c + 3 * k;
+            float p00 = covariance[p], p01 = covariance[p + 1], p11 = covariance[p + 2];
+            covariance[p] = p00 + dt * (2 * p01 + dt * p11) + q00;
+            covariance[p + 1] = p01 + dt * p11 + q01;
+            covariance[p + 2] = p11 + q11;
+        }
+    }
+
+    /**
+     * Corrects a predicted track with a detected box.
+     *
+     * @param box The box as (x1, y1, x2, y2), starting at {@code o}.
+     */
+    static void update(float[] state, float[] covariance, int i, float[] box, int o) {
+        int s = STATE_SIZE * i, c = COVARIANCE_SIZE * i;
+        float cx = (box[o] + box[o + 2]) / 2, cy = (box[o + 1] + box[o + 3]) / 2;
+        float w = box[o + 2] - box[o], h = box[o + 3] - box[o + 1];
+        float r = square(MEASUREMENT_STD * Math.max(1, Math.max(w, h)));
+        correct(state, covariance, s, c, 0, cx, r);
+        correct(state, covariance, s, c, 1, cy, r);
+        correct(state, covariance, s, c, 2, w, r);
+        correct(state, covariance, s, c, 3, h, r);
+    }
+
+    // One coordinate's update: gain K = P H^T / (H P H^T + r) with H = [1 0]
+    private static void correct(float[] state, float[] covariance, int s, int c, int k, float measured, float r) {
+        int p = c + 3 * k;
+        float p00 = covariance[p], p01 = covariance[p + 1], p11 = covariance[p + 2];
+        float k0 = p00 / (p00 + r), k1 = p01 / (p00 + r);
+        float residual = measured - state[s + k];
+        state[s + k] += k0 * residual;
+        state[s + 4 + k] += k1 * residual;
+        covariance[p] = (1 - k0) * p00;
+        covariance[p + 1] = (1 - k0) * p01;
+        covariance[p + 2] = p11 - k1 * p01;
+    }
+
+    /**
+     * Stops a track where it is, for tracks that went undetected: without new detections the velocity is a guess
+     * that would carry the box off.
+     */
+    static void stop(float[] state, int i) {
+        int s = STATE_SIZE * i;
+        for (int k = 4; k < STATE_SIZE; k++) {
+            state[s + k] = 0;
+        }
+    }
+
+    /**
+     * Writes a track's box {@code dt} seconds ahead, without changing the track.
+     *
+     * @param box Receives the box as (x1, y1, x2, y2), starting at {@code o}.
+     */
+    static void extrapolate(float[] state, int i, float dt, float[] box, int o) {
+        int s = STATE_SIZE * i;
+        float cx = state[s] + state[s + 4] * dt;
+        float cy = state[s + 1] + state[s + 5] * dt;
+        float w = Math.max(1, state[s + 2] + state[s + 6] * dt);
+        float h = Math.max(1, state[s + 3] + state[s + 7] * dt);
+        box[o] = cx - w / 2;
+        box[o + 1] = cy - h / 2;
+        box[o + 2] = cx + w / 2;
+        box[o + 3] = cy + h / 2;
+    }
+
+    /**
+     * Writes the standard deviation of a track's center, i.e. how far from its predicted box the next detection may
+     * reasonably be. A new track, whose velocity is still unknown, reaches further than a settled one.
+     *
+     * @param spread Receives the standard deviations in x and y, starting at {@code o}.
+     */
+    static void spread(float[] covariance, int i, float[] spread, int o) {
+        int c = COVARIANCE_SIZE * i;
+        spread[o] = (float) Math.sqrt(covariance[c]);
+        spread[o + 1] = (float) Math.sqrt(covariance[c + 3]);
+    }
+
+    private static float size(float[] state, int s) {
+        return Math.max(1, Math.max(state[s + 2], state[s + 3]));
+    }
+
+    private static float square(float value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,217 @@
+package io.github.tkjonesy.ONNX;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code DetectionBatch} class holds every detection found in one frame as parallel primitive arrays
+ * (struct-of-arrays) instead of a list of {@link Detection} records. Detection {@code i} has the class id
+ * {@code classIds[i]}, the score {@code scores[i]}, the box {@code boxes[4 * i .. 4 * i + 3]} as (x1, y1, x2, y2)
+ * in frame coordinates and the track id {@code trackIds[i]}, which is -1 until an {@link ObjectTracker} assigns one.
+ * <p>
+ * A batch is meant to be reused: {@link #clear()} resets it for the next frame without releasing its arrays, so
+ * filling a batch allocates nothing once it has grown to the largest detection count. Labels are only resolved
+ * when text is needed, through the label table shared with the model.
+ * <p>
+ * A batch shared with other threads can be made {@link #setReadOnly read-only}, so every method that changes it throws
+ * instead. The arrays returned by the getters are the batch's own and must not be written either.
+ */
+public class DetectionBatch {
+
+    /** The number of detections in this batch. */
+    @Getter
+    private int count = 0;
+
+    /** The class id of each detection. */
+    @Getter
+    private int[] classIds;
+
+    /** The boxes as (x1, y1, x2, y2), 4 floats per detection. */
+    @Getter
+    private float[] boxes;
+
+    /** The confidence of each detection. */
+    @Getter
+    private float[] scores;
+
+    /** The track of each detection, or -1 if it is not tracked. */
+    @Getter
+    private int[] trackIds;
+
+    /** The sequence number of the frame these detections were found in. */
+    @Getter
+    private long frameSequence = -1;
+
+    /** The {@link System#nanoTime()} at which the frame was captured. */
+    @Getter
+    private long captureTimestamp = 0;
+
+    /** The class id to label table, shared with the model that produced the detections. */
+    @Getter
+    private List<String> labels = Collections.emptyList();
+
+    /** Whether changing the batch is refused, e.g. while it is shared with other threads. */
+    @Getter
+    @Setter
+    private boolean readOnly = false;
+
+    public DetectionBatch() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The number of detections the batch can hold before growing.
+     */
+    public DetectionBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.classIds = new int[capacity];
+        this.boxes = new float[capacity * 4];
+        this.scores = new float[capacity];
+        this.trackIds = new int[capacity];
+    }
+
+    public void setFrameSequence(long frameSequence) {
+        checkWritable();
+        this.frameSequence = frameSequence;
+    }
+
+    public void setCaptureTimestamp(long captureTimestamp) {
+        checkWritable();
+        this.captureTimestamp = captureTimestamp;
+    }
+
+    public void setLabels(List<String> labels) {
+        checkWritable();
+        this.labels = labels;
+    }
+
+    /**
+     * Removes all detections, keeping the arrays for reuse.
+     */
+    public void clear() {
+        checkWritable();
+        count = 0;
+    }
+
+    /**
+     * Appends one detection, growing the arrays if needed.
+     */
+    public void add(int classId, float x1, float y1, float x2, float y2, float score) {
+        add(classId, x1, y1, x2, y2, score, -1);
+    }
+
+    /**
+     * Appends one tracked detection, growing the arrays if needed.
+     */
+    public void add(int classId, float x1, float y1, float x2, float y2, float score, int trackId) {
+        checkWritable();
+        ensureCapacity(count + 1);
+        int o = count * 4;
+        classIds[count] = classId;
+        boxes[o] = x1;
+        boxes[o + 1] = y1;
+        boxes[o + 2] = x2;
+        boxes[o + 3] = y2;
+        scores[count] = score;
+        trackIds[count] = trackId;
+        count++;
+    }
+
+    /**
+     * Replaces the contents of this batch with a copy of another batch.
+     *
+     * @param other The batch to copy.
+     */
+    public void copyFrom(DetectionBatch other) {
+        checkWritable();
+        ensureCapacity(other.count);
+        System.arraycopy(other.classIds, 0, classIds, 0, other.count);
+        System.arraycopy(other.boxes, 0, boxes, 0, other.count * 4);
+        System.arraycopy(other.scores, 0, scores, 0, other.count);
+        System.arraycopy(other.trackIds, 0, trackIds, 0, other.count);
+        count = other.count;
+        frameSequence = other.frameSequence;
+        captureTimestamp = other.captureTimestamp;
+        labels = other.labels;
+    }
+
+    /**
+     * @param i The index of a detection.
+     * @return The label of detection {@code i}, or "class N" if the label table has no entry for its class.
+     */
+    public String label(int i) {
+        return labelOf(classIds[i]);
+    }
+
+    /**
+     * @param classId A class id.
+     * @return The label of the class, or "class N" if the label table has no entry for it.
+     */
+    public String labelOf(int classId) {
+        return classId >= 0 && classId < labels.size() ? labels.get(classId) : "class " + classId;
+    }
+
+    /**
+     * Converts the batch to {@link Detection} records, for code that still works on lists.
+     *
+     * @return A new list with one record per detection.
+     */
+    public List<Detection> toDetections() {
+        List<Detection> detections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int o = i * 4;
+            float[] bbox = {boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3]};
+            detections.add(new Detection(label(i), bbox, scores[i]));
+        }
+        return detections;
+    }
+
+    /**
+     * Builds a batch from {@link Detection} records. Labels missing from the label table are appended to a copy of it.
+     *
+     * @param detections The records to convert.
+     * @param labels The class id to label table.
+     * @return A new batch holding the same detections.
+     */
+    public static DetectionBatch fromDetections(List<Detection> detections, List<String> labels) {
+        DetectionBatch batch = new DetectionBatch(detections.size());
+        List<String> table = new ArrayList<>(labels);
+        for (Detection detection : detections) {
+            int classId = table.indexOf(detection.label());
+            if (classId < 0) {
+                classId = table.size();
+                table.add(detection.label());
+            }
+            float[] bbox = detection.bbox();
+            batch.add(classId, bbox[0], bbox[1], bbox[2], bbox[3], detection.confidence());
+        }
+        batch.labels = table;
+        return batch;
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("The detection batch is read-only");
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > classIds.length) {
+            int newCapacity = Math.max(capacity, classIds.length * 2);
+            int[] newClassIds = new int[newCapacity];
+            float[] newBoxes = new float[newCapacity * 4];
+            float[] newScores = new float[newCapacity];
+            int[] newTrackIds = new int[newCapacity];
+            System.arraycopy(classIds, 0, newClassIds, 0, count);
+            System.arraycopy(boxes, 0, newBoxes, 0, count * 4);
+            System.arraycopy(scores, 0, newScores, 0, count);
+            System.arraycopy(trackIds, 0, newTrackIds, 0, count);
+            classIds = newClassIds;
+            boxes = newBoxes;
+            scores = newScores;
+            trackIds = newTrackIds;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.tkjonesy.ONNX;
 
+import io.github.tkjonesy.ONNX.kernels.Kernels;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.Point;
 import org.bytedeco.opencv.opencv_core.Scalar;
@@ -14,6 +15,8 @@ import static org.bytedeco.opencv.global.opencv_imgproc.LINE_8;
 import static org.bytedeco.opencv.global.opencv_core.copyMakeBorder;
 import static org.bytedeco.opencv.global.opencv_core.BORDER_CONSTANT;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.List;
 
 /**
@@ -22,6 +25,8 @@ import java.util.List;
  */
 public class ImageUtil {
 
+    private static final Kernels KERNELS = Kernels.get();
+
     /**
      * Resizes the source image to fit within the specified dimensions, adding padding
      * as necessary to maintain the original aspect ratio.
@@ -40,13 +45,11 @@ public class ImageUtil {
         int newUnpadW = (int) Math.round(oldW * r);
         int newUnpadH = (int) Math.round(oldH * r);
 
-        int dw = (width - newUnpadW) / 2;
-        int dh = (height - newUnpadH) / 2;
-
-        int top = (int) Math.round(dh - 0.1);
-        int bottom = (int) Math.round(dh + 0.1);
-        int left = (int) Math.round(dw - 0.1);
-        int right = (int) Math.round(dw + 0.1);
+        // An odd amount of padding puts the extra row or column at the bottom or right, so dst is exactly width x height
+        int top = (height - newUnpadH) / 2;
+        int bottom = height - newUnpadH - top;
+        int left = (width - newUnpadW) / 2;
+        int right = width - newUnpadW - left;
 
         resize(src, dst, new Size(newUnpadW, newUnpadH));
         copyMakeBorder(dst, dst, top, bottom, left, right, BORDER_CONSTANT);
@@ -60,12 +63,15 @@ public class ImageUtil {
      */
     public static float[] whc2cwh(float[] src) {
         float[] chw = new float[src.length];
-        int j = 0;
-        for (int ch = 0; ch < 3; ++ch) {
-            for (int i = ch; i < src.length; i += 3) {
-                chw[j] = src[i];
-                j++;
-            }
+        int planeSize = src.length / 3;
+        // The planes are filled a chunk at a time through the thread's scratch, so nothing else is allocated
+        ChunkScratch scratch = SCRATCH.get();
+        for (int p = 0; p < planeSize; p += CHUNK_PIXELS) {
+            int n = Math.min(CHUNK_PIXELS, planeSize - p);
+            KERNELS.deinterleave(src, 3 * p, n, scratch.floatC0, scratch.floatC1, scratch.floatC2, 0);
+            System.arraycopy(scratch.floatC0, 0, chw, p, n);
+            System.arraycopy(scratch.floatC1, 0, chw, planeSize + p, n);
+            System.arraycopy(scratch.floatC2, 0, chw, 2 * planeSize + p, n);
         }
         return chw;
     }
@@ -77,6 +83,7 @@ public class ImageUtil {
      * @return A new array in CWH format.
      */
     public static byte[] whc2cwh(byte[] src) {
+        // A plain strided copy: byte gathers are slower than this loop, so the kernels are not worth a detour here
         byte[] chw = new byte[src.length];
         int j = 0;
         for (int ch = 0; ch < 3; ++ch) {
@@ -88,6 +95,56 @@ public class ImageUtil {
         return chw;
     }
 
+    /**
+     * Reorders an interleaved W-H-C float buffer into planar C-W-H order in a destination buffer.
+     * Both buffers are accessed with absolute indexing, so their positions are left untouched and no
+     * intermediate array is allocated.
+     *
+     * @param src The source buffer in WHC format, e.g. a view over an image's native memory.
+     * @param dst The destination buffer in CWH format, e.g. the buffer backing an input tensor.
+     */
+    public static void whc2cwh(FloatBuffer src, FloatBuffer dst) {
+        int pixels = Math.min(src.capacity(), dst.capacity()) / 3;
+        int planeSize = dst.capacity() / 3;
+        ChunkScratch scratch = SCRATCH.get();
+        for (int p = 0; p < pixels; p += CHUNK_PIXELS) {
+            int n = Math.min(CHUNK_PIXELS, pixels - p);
+            src.get(3 * p, scratch.floatHwc, 0, 3 * n);
+            KERNELS.deinterleave(scratch.floatHwc, 0, n, scratch.floatC0, scratch.floatC1, scratch.floatC2, 0);
+            dst.put(p, scratch.floatC0, 0, n);
+            dst.put(planeSize + p, scratch.floatC1, 0, n);
+            dst.put(2 * planeSize + p, scratch.floatC2, 0, n);
+        }
+    }
+
+    /**
+     * Reorders an interleaved W-H-C byte buffer into planar C-W-H order in a destination buffer.
+     * Both buffers are accessed with absolute indexing, so their positions are left untouched and no
+     * intermediate array is allocated.
+     *
+     * @param src The source buffer in WHC format, e.g. a view over an image's native memory.
+     * @param dst The destination buffer in CWH format, e.g. the buffer backing an input tensor.
+     */
+    public static void whc2cwh(ByteBuffer src, ByteBuffer dst) {
+        // A plain strided copy, like the byte[] overload: byte gathers are slower than this loop
+        int pixels = Math.min(src.capacity(), dst.capacity()) / 3;
+        int planeSize = dst.capacity() / 3;
+        for (int p = 0, i = 0; p < pixels; p++, i += 3) {
+            dst.put(p, src.get(i));
+            dst.put(planeSize + p, src.get(i + 1));
+            dst.put(2 * planeSize + p, src.get(i + 2));
+        }
+    }
+
+    // The float variants move pixels through small heap arrays so the de-interleave can run on arrays
+    private static final int CHUNK_PIXELS = 1024;
+    private static final ThreadLocal<ChunkScratch> SCRATCH = ThreadLocal.withInitial(ChunkScratch::new);
+
+    private static final class ChunkScratch {
+        final float[] floatHwc = new float[3 * CHUNK_PIXELS];
+        final float[] floatC0 = new float[CHUNK_PIXELS], floatC1 = new float[CHUNK_PIXELS], floatC2 = new float[CHUNK_PIXELS];
+    }
+
     /**
      * Draws bounding boxes and labels on an image based on a list of detections.
      *
@@ -120,4 +177,31 @@ public class ImageUtil {
             );
         }
     }
+
+    /**
+     * Draws bounding boxes and labels on an image for every detection in a batch. Tracked detections are labeled
+     * with their track id as well, e.g. "scalpel #12".
+     *
+     * @param img The image on which to draw the predictions.
+     * @param detections The batch of detections to draw.
+     */
+    public static void drawPredictions(Mat img, DetectionBatch detections) {
+        float[] boxes = detections.getBoxes();
+        int[] trackIds = detections.getTrackIds();
+        Point topLeft = new Point(), bottomRight = new Point(), labelOrigin = new Point();
+        for (int i = 0; i < detections.getCount(); i++) {
+            int o = i * 4;
+            topLeft.x((int) boxes[o]).y((int) boxes[o + 1]);
+            bottomRight.x((int) boxes[o + 2]).y((int) boxes[o + 3]);
+            labelOrigin.x((int) boxes[o] - 1).y((int) boxes[o + 1] - 5);
+            rectangle(img, topLeft, bottomRight, BOX_COLOR, 2, LINE_8, 0);
+            String label = trackIds[i] >= 0 ? detections.label(i) + " #" + trackIds[i] : detections.label(i);
+            putText(img, label, labelOrigin, FONT_HERSHEY_SIMPLEX, 0.5, BOX_COLOR, 1, LINE_8, false);
+        }
+        topLeft.close();
+        bottomRight.close();
+        labelOrigin.close();
+    }
+
+    private static final Scalar BOX_COLOR = new Scalar(249.0, 218.0, 60.0, 0.0);
 }
@@ -0,0 +1,349 @@
+package io.github.tkjonesy.ONNX;
+
+import io.github.tkjonesy.ONNX.kernels.Kernels;
+import lombok.Getter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+
+/**
+ * The {@code LetterboxPreprocessor} class turns a BGR camera frame into a planar RGB input tensor in a single
+ * pass. For every output pixel it either writes the constant padding value or samples the source frame with
+ * bilinear interpolation, swaps BGR to RGB, optionally normalizes to [0, 1], and stores the result straight into
+ * its CHW position. This replaces the separate resize, {@code copyMakeBorder}, {@code cvtColor}, {@code convertTo}
+ * and {@link ImageUtil#whc2cwh} passes.
+ * <p>
+ * The letterbox padding and the interpolation lookup tables are computed analytically from the frame size and
+ * cached, so they are only rebuilt when the camera resolution or the model input size changes.
+ */
+public class LetterboxPreprocessor {
+
+    /** The number of output rows processed by one task in the parallel variant. */
+    private static final int ROWS_PER_TASK = 32;
+
+    /** Interpolation weights are fixed point with 11 fractional bits, like OpenCV's INTER_LINEAR. */
+    private static final int WEIGHT_BITS = 11;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    /** A blended sample carries the product of two weights, so it is scaled by 2^22. */
+    private static final int FIXED_SHIFT = 2 * WEIGHT_BITS;
+    private static final int FIXED_HALF = 1 << (FIXED_SHIFT - 1);
+    private static final float FIXED_TO_NORMALIZED = 1.0f / (255.0f * (1 << FIXED_SHIFT));
+
+    private static final Kernels KERNELS = Kernels.get();
+
+    private final ForkJoinPool pool;
+
+    private volatile Geometry geometry;
+
+    /**
+     * Creates a preprocessor whose parallel variant runs on the common ForkJoin pool.
+     */
+    public LetterboxPreprocessor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool The pool used by the row-parallel variant.
+     */
+    public LetterboxPreprocessor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks whether a frame can be handled by the fused kernel, which reads 8-bit, 3-channel BGR images.
+     *
+     * @param src The frame to check.
+     * @return {@code true} if the frame can be processed by this class.
+     */
+    public static boolean supports(Mat src) {
+        return src.type() == CV_8UC3 && src.cols() > 0 && src.rows() > 0;
+    }
+
+    /**
+     * Returns the letterbox geometry for a frame and target size, reusing the cached geometry when possible.
+     *
+     * @param srcW The width of the source frame.
+     * @param srcH The height of the source frame.
+     * @param dstW The width of the model input.
+     * @param dstH The height of the model input.
+     * @return The scale, padding and interpolation tables mapping the frame into the model input.
+     */
+    public Geometry geometryFor(int srcW, int srcH, int dstW, int dstH) {
+        Geometry g = this.geometry;
+        if (g == null || !g.matches(srcW, srcH, dstW, dstH)) {
+            g = new Geometry(srcW, srcH, dstW, dstH);
+            this.geometry = g;
+        }
+        return g;
+    }
+
+    /**
+     * Letterboxes the frame into a FLOAT tensor buffer, normalized to [0, 1].
+     *
+     * @param src The 8-bit BGR source frame.
+     * @param dst The CHW tensor buffer of size 3 * dstW * dstH.
+     * @param dstW The width of the model input.
+     * @param dstH The height of the model input.
+     * @param parallel Whether to split the rows across the ForkJoin pool.
+     * @return The geometry used, needed to map detections back to the frame.
+     */
+    public Geometry process(Mat src, FloatBuffer dst, int dstW, int dstH, boolean parallel) {
+        return process(src, dst, null, dstW, dstH, parallel);
+    }
+
+    /**
+     * Letterboxes the frame into a UINT8 tensor buffer.
+     *
+     * @param src The 8-bit BGR source frame.
+     * @param dst The CHW tensor buffer of size 3 * dstW * dstH.
+     * @param dstW The width of the model input.
+     * @param dstH The height of the model input.
+     * @param parallel Whether to split the rows across the ForkJoin pool.
+     * @return The geometry used, needed to map detections back to the frame.
+     */
+    public Geometry process(Mat src, ByteBuffer dst, int dstW, int dstH, boolean parallel) {
+        return process(src, null, dst, dstW, dstH, parallel);
+    }
+
+    private Geometry process(Mat src, FloatBuffer floatDst, ByteBuffer byteDst, int dstW, int dstH, boolean parallel) {
+        if (!supports(src)) {
+            throw new IllegalArgumentException("LetterboxPreprocessor requires a non-empty CV_8UC3 image");
+        }
+        Geometry g = geometryFor(src.cols(), src.rows(), dstW, dstH);
+        ByteBuffer srcBuf = src.createBuffer();
+        int step = (int) src.step();
+
+        if (parallel && pool != null) {
+            pool.invoke(new RowBand(g, srcBuf, step, floatDst, byteDst, 0, dstH));
+        } else {
+            processRows(g, srcBuf, step, floatDst, byteDst, 0, dstH);
+        }
+        return g;
+    }
+
+    // The fused kernel: letterbox, bilinear resize, BGR -> RGB, normalize and HWC -> CHW for a band of output rows
+    private static void processRows(Geometry g, ByteBuffer src, int step, FloatBuffer floatDst, ByteBuffer byteDst, int rowStart, int rowEnd) {
+        final int dstW = g.dstW;
+        final int planeSize = g.dstW * g.dstH;
+        final int rowBytes = g.srcW * 3;
+        final RowScratch scratch = SCRATCH.get().ensureCapacity(rowBytes, dstW);
+        final byte[] upper = scratch.upper, lower = scratch.lower;
+        final int[] red = scratch.red, green = scratch.green, blue = scratch.blue;
+
+        // Columns outside the resized image are padding and stay zero in the scratch rows
+        Arrays.fill(red, 0, dstW, 0);
+        Arrays.fill(green, 0, dstW, 0);
+        Arrays.fill(blue, 0, dstW, 0);
+
+        int loadedUpper = -1, loadedLower = -1;
+        for (int dy = rowStart; dy < rowEnd; dy++) {
+            int rowIndex = dy * dstW;
+            int sy = dy - g.top;
+
+            // Padding rows above and below the image
+            if (sy < 0 || sy >= g.newH) {
+                writeRow(scratch, floatDst, byteDst, rowIndex, planeSize, scratch.zeros, scratch.zeros, scratch.zeros, dstW);
+                continue;
+            }
+
+            // Pull the two source rows this output row blends, reusing them when consecutive rows share them
+            int y0 = g.yRow0[sy], y1 = g.yRow1[sy];
+            if (y0 != loadedUpper) {
+                src.get(y0 * step, upper, 0, rowBytes);
+                loadedUpper = y0;
+            }
+            if (y1 != loadedLower) {
+                src.get(y1 * step, lower, 0, rowBytes);
+                loadedLower = y1;
+            }
+
+            interpolateRow(upper, lower, g.xOffset0, g.xOffset1, g.xWeight, g.yWeight[sy], red, green, blue, g.left, g.newW);
+            writeRow(scratch, floatDst, byteDst, rowIndex, planeSize, red, green, blue, dstW);
+        }
+    }
+
+    // Fixed-point bilinear samples for one output row, scaled by 2^(2 * WEIGHT_BITS).
+    // The source is BGR, so channel 2 is red and channel 0 is blue.
+    private static void interpolateRow(byte[] upper, byte[] lower, int[] xOffset0, int[] xOffset1, int[] xWeight, int wy,
+                                       int[] red, int[] green, int[] blue, int left, int width) {
+        final int iwy = WEIGHT_ONE - wy;
+        for (int sx = 0; sx < width; sx++) {
+            int o0 = xOffset0[sx];
+            int o1 = xOffset1[sx];
+            int wx = xWeight[sx];
+            int iwx = WEIGHT_ONE - wx;
+            int dx = left + sx;
+
+            blue[dx] = ((upper[o0] & 0xFF) * iwx + (upper[o1] & 0xFF) * wx) * iwy
+                    + ((lower[o0] & 0xFF) * iwx + (lower[o1] & 0xFF) * wx) * wy;
+            green[dx] = ((upper[o0 + 1] & 0xFF) * iwx + (upper[o1 + 1] & 0xFF) * wx) * iwy
+                    + ((lower[o0 + 1] & 0xFF) * iwx + (lower[o1 + 1] & 0xFF) * wx) * wy;
+            red[dx] = ((upper[o0 + 2] & 0xFF) * iwx + (upper[o1 + 2] & 0xFF) * wx) * iwy
+                    + ((lower[o0 + 2] & 0xFF) * iwx + (lower[o1 + 2] & 0xFF) * wx) * wy;
+        }
+    }
+
+    // Store one output row into each of the three planes with bulk puts
+    private static void writeRow(RowScratch scratch, FloatBuffer floatDst, ByteBuffer byteDst, int rowIndex, int planeSize,
+                                 int[] red, int[] green, int[] blue, int width) {
+        if (floatDst != null) {
+            float[] out = scratch.floatOut;
+            KERNELS.scale(red, out, width, FIXED_TO_NORMALIZED);
+            floatDst.put(rowIndex, out, 0, width);
+            KERNELS.scale(green, out, width, FIXED_TO_NORMALIZED);
+            floatDst.put(planeSize + rowIndex, out, 0, width);
+            KERNELS.scale(blue, out, width, FIXED_TO_NORMALIZED);
+            floatDst.put(2 * planeSize + rowIndex, out, 0, width);
+        } else {
+            byte[] out = scratch.byteOut;
+            for (int i = 0; i < width; i++) out[i] = (byte) ((red[i] + FIXED_HALF) >> FIXED_SHIFT);
+            byteDst.put(rowIndex, out, 0, width);
+            for (int i = 0; i < width; i++) out[i] = (byte) ((green[i] + FIXED_HALF) >> FIXED_SHIFT);
+            byteDst.put(planeSize + rowIndex, out, 0, width);
+            for (int i = 0; i < width; i++) out[i] = (byte) ((blue[i] + FIXED_HALF) >> FIXED_SHIFT);
+            byteDst.put(2 * planeSize + rowIndex, out, 0, width);
+        }
+    }
+
+    private static final ThreadLocal<RowScratch> SCRATCH = ThreadLocal.withInitial(RowScratch::new);
+
+    /**
+     * Per-thread row buffers, grown on demand and then reused for every frame.
+     */
+    private static final class RowScratch {
+        private byte[] upper = new byte[0], lower = new byte[0], byteOut = new byte[0];
+        private int[] red = new int[0], green = new int[0], blue = new int[0], zeros = new int[0];
+        private float[] floatOut = new float[0];
+
+        private RowScratch ensureCapacity(int rowBytes, int width) {
+            if (upper.length < rowBytes) {
+                upper = new byte[rowBytes];
+                lower = new byte[rowBytes];
+            }
+            if (red.length < width) {
+                red = new int[width];
+                green = new int[width];
+                blue = new int[width];
+                zeros = new int[width];
+                floatOut = new float[width];
+                byteOut = new byte[width];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * A band of output rows, split in half until it is small enough to process directly.
+     */
+    private static final class RowBand extends RecursiveAction {
+        private final Geometry g;
+        private final ByteBuffer src;
+        private final int step;
+        private final FloatBuffer floatDst;
+        private final ByteBuffer byteDst;
+        private final int rowStart;
+        private final int rowEnd;
+
+        private RowBand(Geometry g, ByteBuffer src, int step, FloatBuffer floatDst, ByteBuffer byteDst, int rowStart, int rowEnd) {
+            this.g = g;
+            this.src = src;
+            this.step = step;
+            this.floatDst = floatDst;
+            this.byteDst = byteDst;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (rowEnd - rowStart <= ROWS_PER_TASK) {
+                processRows(g, src, step, floatDst, byteDst, rowStart, rowEnd);
+                return;
+            }
+            int mid = (rowStart + rowEnd) >>> 1;
+            invokeAll(
+                    new RowBand(g, src, step, floatDst, byteDst, rowStart, mid),
+                    new RowBand(g, src, step, floatDst, byteDst, mid, rowEnd)
+            );
+        }
+    }
+
+    /**
+     * The mapping between a source frame and the model input: scale, padding, and the per-column and per-row
+     * bilinear sampling tables. Instances are immutable and may be shared between threads.
+     */
+    @Getter
+    public static final class Geometry {
+        private final int srcW, srcH, dstW, dstH;
+
+        /** The size of the resized image inside the padded input. */
+        private final int newW, newH;
+
+        /** The padding added on the left and top of the resized image. */
+        private final int left, top;
+
+        /** The scale factor from frame coordinates to input coordinates. */
+        private final float gain;
+
+        private final int[] xOffset0, xOffset1, yRow0, yRow1;
+        private final int[] xWeight, yWeight;
+
+        Geometry(int srcW, int srcH, int dstW, int dstH) {
+            this.srcW = srcW;
+            this.srcH = srcH;
+            this.dstW = dstW;
+            this.dstH = dstH;
+
+            // Same rounding as ImageUtil.resizeWithPadding
+            double r = Math.min((double) dstW / srcW, (double) dstH / srcH);
+            this.gain = (float) r;
+            this.newW = (int) Math.round(srcW * r);
+            this.newH = (int) Math.round(srcH * r);
+            this.left = (dstW - newW) / 2;
+            this.top = (dstH - newH) / 2;
+
+            this.xOffset0 = new int[newW];
+            this.xOffset1 = new int[newW];
+            this.xWeight = new int[newW];
+            buildTable(srcW, newW, xOffset0, xOffset1, xWeight, 3);
+
+            this.yRow0 = new int[newH];
+            this.yRow1 = new int[newH];
+            this.yWeight = new int[newH];
+            buildTable(srcH, newH, yRow0, yRow1, yWeight, 1);
+        }
+
+        // Bilinear taps using OpenCV's pixel-center convention for INTER_LINEAR
+        private static void buildTable(int srcLen, int dstLen, int[] tap0, int[] tap1, int[] weight, int stride) {
+            double scale = (double) srcLen / dstLen;
+            for (int i = 0; i < dstLen; i++) {
+                double f = (i + 0.5) * scale - 0.5;
+                int i0 = (int) Math.floor(f);
+                float w = (float) (f - i0);
+                if (i0 < 0) {
+                    i0 = 0;
+                    w = 0f;
+                }
+                if (i0 >= srcLen - 1) {
+                    i0 = srcLen - 1;
+                    w = 0f;
+                }
+                int i1 = Math.min(i0 + 1, srcLen - 1);
+                tap0[i] = i0 * stride;
+                tap1[i] = i1 * stride;
+                weight[i] = Math.round(w * WEIGHT_ONE);
+            }
+        }
+
+        boolean matches(int srcW, int srcH, int dstW, int dstH) {
+            return this.srcW == srcW && this.srcH == srcH && this.dstW == dstW && this.dstH == dstH;
+        }
+    }
+}
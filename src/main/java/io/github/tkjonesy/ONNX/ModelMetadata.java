@@ -0,0 +1,232 @@
+package io.github.tkjonesy.ONNX;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code ModelMetadata} class describes the tensors a YOLO model takes and produces, read from the model when
+ * its session is created instead of being configured by hand:
+ * <ul>
+ *     <li>the input size, from the input tensor's {@code [N, 3, H, W]} shape, or from the {@code imgsz} property
+ *     if the model was exported with dynamic height and width,</li>
+ *     <li>the number of classes and anchors, from the output tensor's {@code [N, 4 + C, A]} shape,</li>
+ *     <li>the labels, from the {@code names} property Ultralytics writes into exported models. Only models without
+ *     it fall back to the {@code .names} file,</li>
+ *     <li>the stride, from the {@code stride} property, which a dynamic input's height and width must be a multiple
+ *     of.</li>
+ * </ul>
+ */
+@Getter
+public class ModelMetadata {
+
+    /** The input size assumed when neither the input shape nor the {@code imgsz} property gives one. */
+    private static final int DEFAULT_INPUT_SIZE = 640;
+
+    /** The stride assumed when the model has no {@code stride} property, the largest one of YOLOv8 and YOLO11. */
+    private static final int DEFAULT_STRIDE = 32;
+
+    // Entries of the Python dict Ultralytics stores as "names", e.g. {0: 'person', 1: "driver's seat"}
+    private static final Pattern NAME_ENTRY = Pattern.compile("(\\d+)\\s*:\\s*(?:'((?:[^'\\\\]|\\\\.)*)'|\"((?:[^\"\\\\]|\\\\.)*)\")");
+
+    /** The number of input channels, usually 3. */
+    private final int inputChannels;
+
+    /** The width of the model input in pixels. */
+    private final int inputWidth;
+
+    /** The height of the model input in pixels. */
+    private final int inputHeight;
+
+    /** Whether the model accepts inputs of other heights and widths than {@link #inputWidth} x {@link #inputHeight}. */
+    private final boolean dynamicInputSize;
+
+    /** The largest stride of the model; the height and width of a dynamic input must be multiples of it. */
+    private final int stride;
+
+    /** The number of classes C in the output, or the number of labels if the output shape is dynamic. */
+    private final int numClasses;
+
+    /** The number of anchors A in the output, or -1 if it depends on the input. */
+    private final int numAnchors;
+
+    /** The label of each class id. */
+    private final List<String> labels;
+
+    /** Where the labels came from: the model's metadata or the label file. */
+    private final String labelSource;
+
+    private ModelMetadata(int inputChannels, int inputWidth, int inputHeight, boolean dynamicInputSize, int stride,
+                          int numClasses, int numAnchors, List<String> labels, String labelSource) {
+        this.inputChannels = inputChannels;
+        this.inputWidth = inputWidth;
+        this.inputHeight = inputHeight;
+        this.dynamicInputSize = dynamicInputSize;
+        this.stride = stride;
+        this.numClasses = numClasses;
+        this.numAnchors = numAnchors;
+        this.labels = labels;
+        this.labelSource = labelSource;
+    }
+
+    /**
+     * Reads the geometry and labels of a model.
+     *
+     * @param session The session of the model.
+     * @param input The model's image input.
+     * @param output The model's detection output.
+     * @param labelPath The label file, only read if the model has no {@code names} property; may be {@code null}.
+     * @return The model's metadata.
+     */
+    public static ModelMetadata read(OrtSession session, TensorInfo input, TensorInfo output, String labelPath)
+            throws OrtException, IOException {
+        Map<String, String> properties = session.getMetadata().getCustomMetadata();
+        long[] inputShape = input.getShape();
+        long[] outputShape = output.getShape();
+        if (inputShape.length != 4) {
+            throw new IllegalArgumentException("Expected a [N, 3, H, W] model input, got " + Arrays.toString(inputShape));
+        }
+        if (outputShape.length != 3) {
+            throw new IllegalArgumentException("Expected a [N, 4 + C, A] model output, got " + Arrays.toString(outputShape));
+        }
+
+        // Input geometry: the tensor shape, then the export size for dynamic shapes
+        int channels = inputShape[1] > 0 ? (int) inputShape[1] : 3;
+        int height = (int) inputShape[2], width = (int) inputShape[3];
+        boolean dynamicInputSize = height <= 0 || width <= 0;
+        if (dynamicInputSize) {
+            int[] imageSize = parseImageSize(properties.get("imgsz"));
+            height = imageSize != null ? imageSize[0] : DEFAULT_INPUT_SIZE;
+            width = imageSize != null ? imageSize[1] : DEFAULT_INPUT_SIZE;
+            if (imageSize == null) {
+                System.err.println("⚠️ The model's input size is dynamic and it has no imgsz metadata, assuming " + DEFAULT_INPUT_SIZE);
+            }
+        }
+
+        // Labels: the model's own names, then the label file
+        List<String> labels;
+        String labelSource;
+        String names = properties.get("names");
+        if (names != null && !(labels = parseNames(names)).isEmpty()) {
+            labelSource = "model metadata";
+        } else if (labelPath != null) {
+            labels = readLabelFile(labelPath);
+            labelSource = labelPath;
+        } else {
+            labels = List.of();
+            labelSource = "none";
+        }
+
+        int numClasses = outputShape[1] > 4 ? (int) outputShape[1] - 4 : labels.size();
+        int numAnchors = outputShape[2] > 0 ? (int) outputShape[2] : -1;
+        if (labels.size() != numClasses) {
+            System.err.println("⚠️ The model outputs " + numClasses + " classes but " + labels.size() + " labels were found in "
+                    + labelSource + "; classes without a label are shown by id.");
+        }
+
+        int stride = parseStride(properties.get("stride"));
+
+        ModelMetadata metadata = new ModelMetadata(channels, width, height, dynamicInputSize, stride, numClasses, numAnchors,
+                List.copyOf(labels), labelSource);
+        System.out.println("📐 Model input " + width + "x" + height + (dynamicInputSize ? " (dynamic, stride " + stride + ")" : "")
+                + ", " + numClasses + " classes"
+                + (numAnchors > 0 ? ", " + numAnchors + " anchors" : "") + ", labels from " + labelSource);
+        return metadata;
+    }
+
+    /**
+     * Parses the {@code names} property of an Ultralytics model.
+     *
+     * @param names A Python dict literal mapping class ids to names, e.g. {@code {0: 'person', 1: 'bicycle'}}.
+     * @return The names in class id order; missing ids get a "class N" placeholder.
+     */
+    static List<String> parseNames(String names) {
+        TreeMap<Integer, String> byId = new TreeMap<>();
+        Matcher matcher = NAME_ENTRY.matcher(names);
+        while (matcher.find()) {
+            String name = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            byId.put(Integer.parseInt(matcher.group(1)), name.replaceAll("\\\\(.)", "$1"));
+        }
+        if (byId.isEmpty()) return List.of();
+
+        List<String> labels = new ArrayList<>(byId.lastKey() + 1);
+        for (int id = 0; id <= byId.lastKey(); id++) {
+            labels.add(byId.getOrDefault(id, "class " + id));
+        }
+        return labels;
+    }
+
+    /**
+     * Parses the {@code imgsz} property of an Ultralytics model.
+     *
+     * @param imageSize The export size, e.g. {@code [640, 640]} as height and width, or a single {@code 640}.
+     * @return The height and width, or {@code null} if absent or unreadable.
+     */
+    static int[] parseImageSize(String imageSize) {
+        if (imageSize == null) return null;
+        Matcher matcher = Pattern.compile("\\d+").matcher(imageSize);
+        List<Integer> sizes = new ArrayList<>(2);
+        while (matcher.find() && sizes.size() < 2) {
+            sizes.add(Integer.parseInt(matcher.group()));
+        }
+        if (sizes.isEmpty()) return null;
+        return new int[]{sizes.get(0), sizes.get(sizes.size() - 1)};
+    }
+
+    /**
+     * Parses the {@code stride} property of an Ultralytics model.
+     *
+     * @param stride The largest stride, e.g. {@code 32}.
+     * @return The stride, or 32 if absent or unreadable.
+     */
+    static int parseStride(String stride) {
+        if (stride == null) return DEFAULT_STRIDE;
+        Matcher matcher = Pattern.compile("\\d+").matcher(stride);
+        int largest = 0;
+        while (matcher.find()) {
+            largest = Math.max(largest, Integer.parseInt(matcher.group()));
+        }
+        return largest > 0 ? largest : DEFAULT_STRIDE;
+    }
+
+    /**
+     * Returns the input size for a frame in rectangular mode: the frame scaled to fit within the model's input size,
+     * with each side rounded up to a multiple of the stride. A 1280x720 frame and a 640x640 model give 640x384, so
+     * only 24 rows are padding instead of 280.
+     *
+     * @param frameW The width of the frame.
+     * @param frameH The height of the frame.
+     * @return The width and height of the input, at most the model's input size.
+     */
+    public int[] rectangularInputSize(int frameW, int frameH) {
+        double r = Math.min((double) inputWidth / frameW, (double) inputHeight / frameH);
+        int width = (int) Math.round(frameW * r), height = (int) Math.round(frameH * r);
+        return new int[]{
+                Math.min(inputWidth, (width + stride - 1) / stride * stride),
+                Math.min(inputHeight, (height + stride - 1) / stride * stride)
+        };
+    }
+
+    private static List<String> readLabelFile(String labelPath) throws IOException {
+        List<String> labels = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(labelPath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                labels.add(line);
+            }
+        }
+        return labels;
+    }
+}
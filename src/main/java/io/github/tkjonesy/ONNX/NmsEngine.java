@@ -0,0 +1,182 @@
+package io.github.tkjonesy.ONNX;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+
+/**
+ * The {@code NmsEngine} class performs non-maximum suppression on flat primitive arrays, such as the candidate
+ * arrays filled by {@link YoloOutputDecoder}.
+ * <p>
+ * Candidates are ordered with a single primitive sort of packed (score, index) keys, and suppressed candidates are
+ * tracked in a bitset, so a pass allocates nothing once the engine has grown to the largest candidate count.
+ * All classes are handled in one pass with the coordinate-offset trick: every box is shifted by
+ * {@code classId * (maxCoordinate + 1)}, so boxes of different classes can never overlap and a single class-agnostic
+ * suppression pass behaves like per-class suppression.
+ * <p>
+ * With {@link #setSoftNms(boolean) Soft-NMS} enabled, overlapping candidates are not discarded but have their score
+ * decayed by {@code exp(-iou^2 / sigma)}, and are dropped once their score falls below the score threshold.
+ */
+public class NmsEngine {
+
+    /** Whether overlapping candidates are decayed (Soft-NMS) instead of discarded. */
+    @Getter
+    @Setter
+    private boolean softNms = false;
+
+    /** The Gaussian spread used by Soft-NMS; smaller values decay overlapping candidates faster. */
+    @Getter
+    @Setter
+    private float softNmsSigma = 0.5f;
+
+    /** The number of candidates kept by the last pass. */
+    @Getter
+    private int count = 0;
+
+    /** Indices into the input arrays of the kept candidates, best first. */
+    @Getter
+    private int[] keep = new int[0];
+
+    /** The scores of the kept candidates, decayed if Soft-NMS is enabled. */
+    @Getter
+    private float[] keptScores = new float[0];
+
+    // Class-offset boxes and their areas
+    private float[] offsetBoxes = new float[0];
+    private float[] areas = new float[0];
+
+    // Packed (score bits << 32 | index) sort keys, ascending
+    private long[] order = new long[0];
+
+    // One bit per candidate
+    private long[] suppressed = new long[0];
+
+    // Working copy of the scores for Soft-NMS
+    private float[] working = new float[0];
+
+    /**
+     * Runs one suppression pass.
+     *
+     * @param boxes Candidate boxes as (x1, y1, x2, y2), 4 floats per candidate.
+     * @param scores The score of each candidate; must not be negative.
+     * @param classIds The class of each candidate, or {@code null} for class-agnostic suppression.
+     * @param n The number of candidates.
+     * @param iouThreshold Candidates overlapping a kept candidate by at least this IoU are suppressed.
+     * @param scoreThreshold Soft-NMS drops candidates whose decayed score falls below this value.
+     * @param maxDetections The maximum number of candidates to keep, or 0 for no limit.
+     * @return The number of kept candidates, see {@link #getKeep()}.
+     */
+    public int suppress(float[] boxes, float[] scores, int[] classIds, int n, float iouThreshold, float scoreThreshold, int maxDetections) {
+        ensureCapacity(n);
+        count = 0;
+        if (n == 0) return 0;
+        int limit = maxDetections > 0 ? Math.min(maxDetections, n) : n;
+
+        offsetBoxes(boxes, classIds, n);
+        Arrays.fill(suppressed, 0, (n + 63) >>> 6, 0L);
+
+        if (softNms) {
+            return suppressSoft(scores, n, iouThreshold, scoreThreshold, limit);
+        }
+
+        // Non-negative floats order the same way as their bit patterns, and ties resolve to the higher index
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) Float.floatToIntBits(scores[i]) << 32) | i;
+        }
+        Arrays.sort(order, 0, n);
+
+        for (int k = n - 1; k >= 0 && count < limit; k--) {
+            int i = (int) order[k];
+            if (isSuppressed(i)) continue;
+            keep[count] = i;
+            keptScores[count] = scores[i];
+            count++;
+
+            for (int m = k - 1; m >= 0; m--) {
+                int j = (int) order[m];
+                if (!isSuppressed(j) && !(iou(i, j) < iouThreshold)) {
+                    suppressed[j >>> 6] |= 1L << j;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Gaussian Soft-NMS: repeatedly keep the best remaining candidate and decay the rest by their overlap with it
+    private int suppressSoft(float[] scores, int n, float iouThreshold, float scoreThreshold, int limit) {
+        System.arraycopy(scores, 0, working, 0, n);
+        while (count < limit) {
+            int best = -1;
+            for (int j = 0; j < n; j++) {
+                if (!isSuppressed(j) && (best < 0 || working[j] >= working[best])) best = j;
+            }
+            if (best < 0) break;
+
+            suppressed[best >>> 6] |= 1L << best;
+            keep[count] = best;
+            keptScores[count] = working[best];
+            count++;
+
+            for (int j = 0; j < n; j++) {
+                if (isSuppressed(j)) continue;
+                float iou = iou(best, j);
+                if (iou < iouThreshold) continue;
+                working[j] *= (float) Math.exp(-(iou * iou) / softNmsSigma);
+                if (working[j] < scoreThreshold) {
+                    suppressed[j >>> 6] |= 1L << j;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Shift every box by a per-class offset larger than any coordinate, so different classes never overlap
+    private void offsetBoxes(float[] boxes, int[] classIds, int n) {
+        float maxCoordinate = 0;
+        for (int i = 0; i < 4 * n; i++) {
+            maxCoordinate = Math.max(maxCoordinate, boxes[i]);
+        }
+        float stride = maxCoordinate + 1;
+
+        for (int i = 0; i < n; i++) {
+            float offset = classIds == null ? 0 : classIds[i] * stride;
+            int o = 4 * i;
+            offsetBoxes[o] = boxes[o] + offset;
+            offsetBoxes[o + 1] = boxes[o + 1] + offset;
+            offsetBoxes[o + 2] = boxes[o + 2] + offset;
+            offsetBoxes[o + 3] = boxes[o + 3] + offset;
+            areas[i] = (boxes[o + 2] - boxes[o]) * (boxes[o + 3] - boxes[o + 1]);
+        }
+    }
+
+    // Intersection over Union of two offset boxes
+    private float iou(int a, int b) {
+        int oa = 4 * a, ob = 4 * b;
+        float left = Math.max(offsetBoxes[oa], offsetBoxes[ob]);
+        float top = Math.max(offsetBoxes[oa + 1], offsetBoxes[ob + 1]);
+        float right = Math.min(offsetBoxes[oa + 2], offsetBoxes[ob + 2]);
+        float bottom = Math.min(offsetBoxes[oa + 3], offsetBoxes[ob + 3]);
+
+        float interArea = Math.max(right - left, 0) * Math.max(bottom - top, 0);
+        // Two zero-area boxes would give 0 / 0; a NaN overlap would turn Soft-NMS scores into NaN
+        float union = areas[a] + areas[b] - interArea;
+        return union > 0 ? interArea / union : 0;
+    }
+
+    private boolean isSuppressed(int i) {
+        return (suppressed[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private void ensureCapacity(int n) {
+        if (order.length < n) {
+            offsetBoxes = new float[n * 4];
+            areas = new float[n];
+            order = new long[n];
+            suppressed = new long[(n + 63) >>> 6];
+            working = new float[n];
+            keep = new int[n];
+            keptScores = new float[n];
+        }
+    }
+}
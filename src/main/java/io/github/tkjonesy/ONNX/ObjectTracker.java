@@ -0,0 +1,317 @@
+package io.github.tkjonesy.ONNX;
+
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code ObjectTracker} class gives detections a persistent identity across inferences. Each inference result is
+ * associated with the tracks of the previous ones in the ByteTrack manner:
+ * <ol>
+ *     <li>detections scoring at least {@link #setHighScoreThreshold(float) highScoreThreshold} are matched with the
+ *     tracks first,</li>
+ *     <li>the remaining, weaker detections are matched with the tracks left over, with a stricter overlap, so an
+ *     instrument that is partly covered keeps its track instead of losing it,</li>
+ *     <li>strong detections left over start new tracks; weak ones are dropped as likely false positives,</li>
+ *     <li>tracks left over stop and coast where they were predicted, and are only dropped once they have gone
+ *     unmatched for longer than {@link #setMaxCoastNanos(long) maxCoastNanos}.</li>
+ * </ol>
+ * A detection only matches a track of the same class. Candidate pairs are ranked by their IoU times the detection's
+ * score and accepted greedily, best first, each track and detection at most once.
+ * <p>
+ * Every track carries a constant-velocity {@link BoxKalmanFilter}. Tracks are predicted to the time of each new
+ * inference before matching, so a moving instrument still overlaps its track. Overlap is measured after moving
+ * the predicted box towards the detection by up to one standard deviation of its center, so a track whose velocity
+ * is not known yet still catches an instrument that moved. Matched detections correct the filter instead of replacing the box, which smooths detection jitter. Between inferences,
+ * {@link #predict(long, DetectionBatch)} extrapolates the boxes to the capture time of any frame, so the overlay
+ * follows instruments being moved instead of lagging up to one inference behind.
+ * <p>
+ * Like {@link NmsEngine}, the tracker works on flat primitive arrays: tracks are kept as parallel arrays, candidate
+ * pairs are ordered with a single primitive sort of packed (cost, index) keys, and an update allocates nothing once
+ * the arrays have grown to the largest track and detection counts. A tracker is used by one thread at a time.
+ */
+public class ObjectTracker {
+
+    /** Weak detections must overlap a track at least this much to extend it. */
+    private static final float LOW_SCORE_MIN_IOU = 0.5f;
+
+    /** Boxes are never extrapolated further than this past the last inference, in nanoseconds. */
+    private static final long MAX_EXTRAPOLATION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** The minimum IoU between a strong detection and a track for them to match. */
+    @Getter
+    @Setter
+    private float iouThreshold = 0.3f;
+
+    /** Detections scoring at least this start tracks and are matched first; weaker ones can only extend tracks. */
+    @Getter
+    @Setter
+    private float highScoreThreshold = 0.6f;
+
+    /** How long a track may go unmatched before it is dropped, in nanoseconds of capture time. */
+    @Getter
+    @Setter
+    private long maxCoastNanos = 1_500_000_000L;
+
+    /** Whether {@link #predict(long, DetectionBatch)} extrapolates boxes, or returns them as of the last inference. */
+    @Getter
+    @Setter
+    private boolean extrapolating = true;
+
+    /** The number of live tracks. */
+    @Getter
+    private int trackCount = 0;
+
+    /** The number of tracks started since the tracker was created. */
+    @Getter
+    private long tracksStarted = 0;
+
+    // Tracks as parallel arrays, in the order they were started. The boxes are derived from the filter states
+    private int[] trackIds = new int[0];
+    private int[] trackClassIds = new int[0];
+    private float[] trackStates = new float[0];
+    private float[] trackCovariances = new float[0];
+    private float[] trackBoxes = new float[0];
+    private float[] trackSpreads = new float[0];
+    private float[] trackScores = new float[0];
+    private long[] trackLastSeen = new long[0];
+    private int nextTrackId = 1;
+
+    // The capture time every filter state refers to, and what the last update was given
+    private long stateTime = 0;
+    private long lastFrameSequence = -1;
+    private List<String> labels = Collections.emptyList();
+
+    // The detection matched with each track and the track matched with each detection, or -1
+    private int[] trackMatch = new int[0];
+    private int[] detectionMatch = new int[0];
+
+    // Candidate pairs and their packed (cost bits << 32 | pair index) sort keys, ascending
+    private int pairCount = 0;
+    private int[] pairTracks = new int[0];
+    private int[] pairDetections = new int[0];
+    private long[] pairOrder = new long[0];
+
+    /**
+     * Applies the tracking thresholds of the settings.
+     *
+     * @param settings The settings to read.
+     */
+    public void configure(ProgramSettings settings) {
+        iouThreshold = settings.getTrackIouThreshold();
+        highScoreThreshold = settings.getTrackHighScoreThreshold();
+        maxCoastNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settings.getTrackMaxCoastMs()));
+        extrapolating = settings.isBoxPrediction();
+    }
+
+    /**
+     * Associates the detections of a new inference with the tracks and writes every live track to {@code tracked}:
+     * the matched ones at their corrected box and new score, the coasting ones where they were predicted.
+     *
+     * @param detections The detections of one frame; its capture timestamp is the time of the update.
+     * @param tracked Receives the tracks, with their ids in {@link DetectionBatch#getTrackIds()}. Its previous
+     * contents are replaced; it must not be {@code detections}.
+     * @return The number of live tracks.
+     */
+    public int update(DetectionBatch detections, DetectionBatch tracked) {
+        int n = detections.getCount();
+        long now = detections.getCaptureTimestamp();
+        ensureDetectionCapacity(n);
+
+        // Bring every track to the time of the detections
+        float dt = Math.max(0, now - stateTime) / 1e9f;
+        for (int t = 0; t < trackCount; t++) {
+            BoxKalmanFilter.predict(trackStates, trackCovariances, t, dt);
+            BoxKalmanFilter.extrapolate(trackStates, t, 0, trackBoxes, 4 * t);
+            BoxKalmanFilter.spread(trackCovariances, t, trackSpreads, 2 * t);
+        }
+        stateTime = now;
+        lastFrameSequence = detections.getFrameSequence();
+        labels = detections.getLabels();
+
+        Arrays.fill(trackMatch, 0, trackCount, -1);
+        Arrays.fill(detectionMatch, 0, n, -1);
+
+        associate(detections, true, iouThreshold);
+        associate(detections, false, Math.max(iouThreshold, LOW_SCORE_MIN_IOU));
+
+        // Matched tracks are corrected by their detection; the others stop and coast until they expire
+        float[] boxes = detections.getBoxes();
+        float[] scores = detections.getScores();
+        int live = 0;
+        for (int t = 0; t < trackCount; t++) {
+            int d = trackMatch[t];
+            if (d >= 0) {
+                BoxKalmanFilter.update(trackStates, trackCovariances, t, boxes, 4 * d);
+                BoxKalmanFilter.extrapolate(trackStates, t, 0, trackBoxes, 4 * t);
+                trackScores[t] = scores[d];
+                trackLastSeen[t] = now;
+            } else if (now - trackLastSeen[t] > maxCoastNanos) {
+                continue;
+            } else {
+                BoxKalmanFilter.stop(trackStates, t);
+            }
+            moveTrack(t, live++);
+        }
+        trackCount = live;
+
+        // Strong detections nobody claimed start new tracks
+        int[] classIds = detections.getClassIds();
+        for (int d = 0; d < n; d++) {
+            if (detectionMatch[d] < 0 && scores[d] >= highScoreThreshold) {
+                ensureTrackCapacity(trackCount + 1);
+                trackIds[trackCount] = nextTrackId++;
+                trackClassIds[trackCount] = classIds[d];
+                BoxKalmanFilter.init(trackStates, trackCovariances, trackCount, boxes, 4 * d);
+                System.arraycopy(boxes, 4 * d, trackBoxes, 4 * trackCount, 4);
+                trackScores[trackCount] = scores[d];
+                trackLastSeen[trackCount] = now;
+                trackCount++;
+                tracksStarted++;
+            }
+        }
+
+        tracked.clear();
+        tracked.setLabels(detections.getLabels());
+        tracked.setFrameSequence(detections.getFrameSequence());
+        tracked.setCaptureTimestamp(now);
+        for (int t = 0; t < trackCount; t++) {
+            int o = 4 * t;
+            tracked.add(trackClassIds[t], trackBoxes[o], trackBoxes[o + 1], trackBoxes[o + 2], trackBoxes[o + 3],
+                    trackScores[t], trackIds[t]);
+        }
+        return trackCount;
+    }
+
+    /**
+     * Writes every live track to {@code out} with its box extrapolated to a capture time, e.g. of a frame shown
+     * between two inferences. The tracks are not changed. Boxes are not moved backwards, nor further than one second
+     * past the last inference; with {@link #setExtrapolating(boolean) extrapolating} off, they are as of the last
+     * inference.
+     *
+     * @param timestamp The capture time to extrapolate to, on the clock of the detections' capture timestamps.
+     * @param out Receives the tracks. Its previous contents are replaced.
+     */
+    public void predict(long timestamp, DetectionBatch out) {
+        long ahead = extrapolating ? Math.max(0, Math.min(timestamp - stateTime, MAX_EXTRAPOLATION_NANOS)) : 0;
+        float dt = ahead / 1e9f;
+        out.clear();
+        out.setLabels(labels);
+        out.setFrameSequence(lastFrameSequence);
+        out.setCaptureTimestamp(timestamp);
+        for (int t = 0; t < trackCount; t++) {
+            out.add(trackClassIds[t], 0, 0, 0, 0, trackScores[t], trackIds[t]);
+            BoxKalmanFilter.extrapolate(trackStates, t, dt, out.getBoxes(), 4 * t);
+        }
+    }
+
+    /**
+     * Drops every track, e.g. when the frame source changes. Track ids keep counting up, so an id is never reused.
+     */
+    public void reset() {
+        trackCount = 0;
+    }
+
+    // Greedily matches the unmatched tracks with the unmatched detections of one score band, best pair first
+    private void associate(DetectionBatch detections, boolean strong, float minIou) {
+        int n = detections.getCount();
+        int[] classIds = detections.getClassIds();
+        float[] boxes = detections.getBoxes();
+        float[] scores = detections.getScores();
+
+        pairCount = 0;
+        for (int t = 0; t < trackCount; t++) {
+            if (trackMatch[t] >= 0) continue;
+            for (int d = 0; d < n; d++) {
+                if (detectionMatch[d] >= 0 || classIds[d] != trackClassIds[t]) continue;
+                if ((scores[d] >= highScoreThreshold) != strong) continue;
+                float iou = gatedIou(t, boxes, 4 * d);
+                if (iou < minIou) continue;
+
+                // Non-negative floats order the same way as their bit patterns
+                ensurePairCapacity(pairCount + 1);
+                pairTracks[pairCount] = t;
+                pairDetections[pairCount] = d;
+                pairOrder[pairCount] = ((long) Float.floatToIntBits(iou * Math.max(scores[d], 0)) << 32) | pairCount;
+                pairCount++;
+            }
+        }
+        Arrays.sort(pairOrder, 0, pairCount);
+
+        for (int k = pairCount - 1; k >= 0; k--) {
+            int pair = (int) pairOrder[k];
+            int t = pairTracks[pair], d = pairDetections[pair];
+            if (trackMatch[t] >= 0 || detectionMatch[d] >= 0) continue;
+            trackMatch[t] = d;
+            detectionMatch[d] = t;
+        }
+    }
+
+    // IoU of a track's predicted box, moved towards the detection by up to its spread, and the detection
+    private float gatedIou(int t, float[] b, int ob) {
+        int oa = 4 * t;
+        float[] a = trackBoxes;
+        float shiftX = clamp((b[ob] + b[ob + 2] - a[oa] - a[oa + 2]) / 2, trackSpreads[2 * t]);
+        float shiftY = clamp((b[ob + 1] + b[ob + 3] - a[oa + 1] - a[oa + 3]) / 2, trackSpreads[2 * t + 1]);
+        float left = Math.max(a[oa] + shiftX, b[ob]);
+        float top = Math.max(a[oa + 1] + shiftY, b[ob + 1]);
+        float right = Math.min(a[oa + 2] + shiftX, b[ob + 2]);
+        float bottom = Math.min(a[oa + 3] + shiftY, b[ob + 3]);
+        float interArea = Math.max(right - left, 0) * Math.max(bottom - top, 0);
+        float areaA = (a[oa + 2] - a[oa]) * (a[oa + 3] - a[oa + 1]);
+        float areaB = (b[ob + 2] - b[ob]) * (b[ob + 3] - b[ob + 1]);
+        float union = areaA + areaB - interArea;
+        return union > 0 ? interArea / union : 0;
+    }
+
+    private static float clamp(float value, float limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+
+    // Compacts the track arrays, keeping the order tracks were started in
+    private void moveTrack(int from, int to) {
+        if (from == to) return;
+        trackIds[to] = trackIds[from];
+        trackClassIds[to] = trackClassIds[from];
+        System.arraycopy(trackStates, BoxKalmanFilter.STATE_SIZE * from, trackStates, BoxKalmanFilter.STATE_SIZE * to, BoxKalmanFilter.STATE_SIZE);
+        System.arraycopy(trackCovariances, BoxKalmanFilter.COVARIANCE_SIZE * from, trackCovariances, BoxKalmanFilter.COVARIANCE_SIZE * to, BoxKalmanFilter.COVARIANCE_SIZE);
+        System.arraycopy(trackBoxes, 4 * from, trackBoxes, 4 * to, 4);
+        trackScores[to] = trackScores[from];
+        trackLastSeen[to] = trackLastSeen[from];
+    }
+
+    private void ensureTrackCapacity(int capacity) {
+        if (capacity > trackIds.length) {
+            int newCapacity = Math.max(capacity, Math.max(16, trackIds.length * 2));
+            trackIds = Arrays.copyOf(trackIds, newCapacity);
+            trackClassIds = Arrays.copyOf(trackClassIds, newCapacity);
+            trackStates = Arrays.copyOf(trackStates, newCapacity * BoxKalmanFilter.STATE_SIZE);
+            trackCovariances = Arrays.copyOf(trackCovariances, newCapacity * BoxKalmanFilter.COVARIANCE_SIZE);
+            trackBoxes = Arrays.copyOf(trackBoxes, newCapacity * 4);
+            trackSpreads = Arrays.copyOf(trackSpreads, newCapacity * 2);
+            trackScores = Arrays.copyOf(trackScores, newCapacity);
+            trackLastSeen = Arrays.copyOf(trackLastSeen, newCapacity);
+            trackMatch = Arrays.copyOf(trackMatch, newCapacity);
+        }
+    }
+
+    private void ensureDetectionCapacity(int capacity) {
+        if (capacity > detectionMatch.length) {
+            detectionMatch = new int[Math.max(capacity, Math.max(16, detectionMatch.length * 2))];
+        }
+    }
+
+    private void ensurePairCapacity(int capacity) {
+        if (capacity > pairOrder.length) {
+            int newCapacity = Math.max(capacity, Math.max(64, pairOrder.length * 2));
+            pairTracks = Arrays.copyOf(pairTracks, newCapacity);
+            pairDetections = Arrays.copyOf(pairDetections, newCapacity);
+            pairOrder = Arrays.copyOf(pairOrder, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.tkjonesy.ONNX;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The {@code OptimizedModelCache} class keeps the graphs ONNX Runtime produces when it optimizes a model, so later
+ * sessions of the same model load the optimized graph instead of optimizing the {@code .onnx} file again.
+ * <p>
+ * A cache entry is keyed by the SHA-256 of the model file, the optimization level, the ONNX Runtime version and the
+ * CPU architecture, all part of its file name. Changing any of them simply misses the cache; the outdated entries of
+ * the same model are deleted when the new one is written.
+ */
+public class OptimizedModelCache {
+
+    private static final String SUFFIX = ".opt.onnx";
+
+    private final Path directory;
+
+    // Model hashes by path, size and modification time, so a pool of sessions hashes the file only once
+    private static final Map<String, String> HASHES = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory The directory holding the optimized models; created when the first one is written.
+     */
+    public OptimizedModelCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a session for the model, loading its optimized graph from the cache if present. Otherwise the model is
+     * optimized as usual and the result is written to the cache for the next time.
+     *
+     * @param env The environment to create the session in.
+     * @param modelPath The {@code .onnx} file to load.
+     * @param options The session options; the optimization level is read from, and changed on, these options.
+     * @param level The optimization level set on {@code options}.
+     * @return The new session.
+     */
+    public OrtSession createSession(OrtEnvironment env, String modelPath, OrtSession.SessionOptions options,
+                                    OrtSession.SessionOptions.OptLevel level) throws OrtException {
+        long start = System.nanoTime();
+        Path model = Path.of(modelPath);
+        String baseName = baseName(model);
+        Path entry;
+        try {
+            entry = directory.resolve(baseName + "-" + key(model, level) + SUFFIX);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not hash " + modelPath + ", loading it without the optimized model cache: " + e.getMessage());
+            return env.createSession(modelPath, options);
+        }
+
+        // Cache hit: the graph is already optimized, so running the optimizers again would only cost time
+        if (Files.isRegularFile(entry)) {
+            try {
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+                OrtSession session = env.createSession(entry.toString(), options);
+                System.out.printf("⚡ Loaded %s from the optimized model cache in %.0f ms%n", model.getFileName(), (System.nanoTime() - start) / 1e6);
+                return session;
+            } catch (OrtException e) {
+                System.err.println("⚠️ Discarding unreadable optimized model " + entry + ": " + e.getMessage());
+                deleteQuietly(entry);
+                options.setOptimizationLevel(level);
+            }
+        }
+
+        // Cache miss: optimize the model and let ONNX Runtime write the result next to the final entry
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, baseName + "-", ".tmp");
+            options.setOptimizedModelFilePath(temporary.toString());
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not write to the optimized model cache " + directory + ": " + e.getMessage());
+        }
+        OrtSession session;
+        try {
+            session = env.createSession(modelPath, options);
+        } catch (OrtException e) {
+            if (temporary != null) deleteQuietly(temporary);
+            throw e;
+        }
+        System.out.printf("🛠 Optimized %s (%s) in %.0f ms%n", model.getFileName(), level, (System.nanoTime() - start) / 1e6);
+
+        if (temporary != null) {
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                deleteOutdated(baseName, entry);
+                System.out.println("💾 Cached the optimized model as " + entry);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not cache the optimized model: " + e.getMessage());
+                deleteQuietly(temporary);
+            }
+        }
+        return session;
+    }
+
+    // The cache key: model contents, optimization level, runtime version and CPU architecture
+    private static String key(Path model, OrtSession.SessionOptions.OptLevel level) throws IOException {
+        String version = OrtEnvironment.getEnvironment().getVersion();
+        return hash(model).substring(0, 16) + "-" + level.name().toLowerCase() + "-ort" + version + "-" + System.getProperty("os.arch");
+    }
+
+    private static String hash(Path model) throws IOException {
+        String id = model.toAbsolutePath() + ":" + Files.size(model) + ":" + Files.getLastModifiedTime(model).toMillis();
+        String cached = HASHES.get(id);
+        if (cached != null) return cached;
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(model), digest)) {
+            byte[] buffer = new byte[1 << 16];
+            while (in.read(buffer) != -1) {
+                // Reading updates the digest
+            }
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        HASHES.put(id, hash);
+        return hash;
+    }
+
+    // Removes entries of the same model written for another key, and temporary files left by an interrupted run
+    private void deleteOutdated(String baseName, Path current) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> !file.equals(current))
+                    .filter(file -> file.getFileName().toString().startsWith(baseName + "-"))
+                    .filter(file -> file.getFileName().toString().endsWith(SUFFIX) || file.getFileName().toString().endsWith(".tmp"))
+                    .filter(file -> isKeyOf(baseName, file))
+                    .forEach(OptimizedModelCache::deleteQuietly);
+        }
+    }
+
+    // True if the rest of the name after "<baseName>-" is a key, so "yolo11m-..." never matches "yolo11m-seg-..."
+    private static boolean isKeyOf(String baseName, Path file) {
+        String rest = file.getFileName().toString().substring(baseName.length() + 1);
+        return rest.matches("[0-9a-f]{16}-.*" + Pattern.quote(SUFFIX)) || rest.matches("\\d+\\.tmp");
+    }
+
+    private static String baseName(Path model) {
+        String name = model.getFileName().toString();
+        return name.endsWith(".onnx") ? name.substring(0, name.length() - ".onnx".length()) : name;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.tkjonesy.ONNX;
+
+import ai.onnxruntime.OrtException;
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code SessionPool} class keeps K {@link Yolo} sessions of the same model, so up to K frames can be inferred
+ * at once. Each session gets its own intra-op thread budget, by default an equal share of the cores, so the sessions
+ * run side by side instead of competing for one ONNX Runtime thread pool. A session is used by one caller at a time:
+ * callers {@link #acquire()} one, run it and {@link #release(Yolo)} it.
+ */
+public class SessionPool implements AutoCloseable {
+
+    /** How long {@link #acquire()} waits between checks for a closed pool, in milliseconds. */
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final List<Yolo> sessions;
+    private final LinkedBlockingQueue<Yolo> idle;
+
+    /** The number of intra-op threads each session may use, or 0 for ONNX Runtime's default. */
+    @Getter
+    private final int threadsPerSession;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a pool of {@code size} sessions.
+     *
+     * @param modelPath The ONNX model to load.
+     * @param labelPath The file with one label per line.
+     * @param size The number of sessions.
+     * @param threadsPerSession The number of intra-op threads of each session, or 0 for ONNX Runtime's default.
+     */
+    public SessionPool(String modelPath, String labelPath, int size, int threadsPerSession) throws OrtException, IOException {
+        this.threadsPerSession = threadsPerSession;
+        this.sessions = new ArrayList<>(Math.max(1, size));
+        try {
+            for (int i = 0; i < Math.max(1, size); i++) {
+                sessions.add(new YoloV8(modelPath, labelPath, threadsPerSession));
+            }
+        } catch (OrtException | IOException | RuntimeException e) {
+            closeSessions(sessions);
+            throw e;
+        }
+        this.idle = new LinkedBlockingQueue<>(sessions);
+        System.out.println("🧵 Session pool: " + sessions.size() + " session(s), "
+                + (threadsPerSession > 0 ? threadsPerSession : "default") + " intra-op thread(s) each");
+    }
+
+    /**
+     * Creates a pool of the model, size and threading set in the settings.
+     *
+     * @param settings The settings to read.
+     * @return A new pool.
+     */
+    public static SessionPool fromSettings(ProgramSettings settings) throws OrtException, IOException {
+        int size = Math.max(1, settings.getSessionPoolSize());
+        return new SessionPool(settings.getModelPath(), settings.getLabelPath(), size, threadsPerSession(settings, size));
+    }
+
+    /**
+     * @param settings The settings to read.
+     * @param size The number of sessions sharing the cores.
+     * @return The configured intra-op thread count if set; otherwise 0 for a single session, which lets ONNX Runtime
+     * use every core, or an equal share of the cores for several sessions.
+     */
+    public static int threadsPerSession(ProgramSettings settings, int size) {
+        if (settings.getIntraOpThreads() > 0) return settings.getIntraOpThreads();
+        if (size <= 1) return 0;
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / size);
+    }
+
+    /**
+     * Warms up every session, see {@link Yolo#warmUp(int)}. Only call this before the pool is shared.
+     *
+     * @param runs The number of inferences per session.
+     */
+    public void warmUp(int runs) throws OrtException {
+        for (Yolo session : sessions) {
+            session.warmUp(runs);
+        }
+    }
+
+    /**
+     * Takes an idle session, waiting for one to be released if all are in use.
+     *
+     * @return A session for the caller's exclusive use, or {@code null} if the pool was closed meanwhile.
+     */
+    public Yolo acquire() throws InterruptedException {
+        while (!closed) {
+            Yolo session = idle.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (session != null) return session;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a session taken with {@link #acquire()}.
+     *
+     * @param session The session to return.
+     */
+    public void release(Yolo session) {
+        idle.offer(session);
+    }
+
+    /**
+     * @return The first session, for information shared by all of them, such as labels or the preferred batch size.
+     * Running inference on it directly bypasses the pool.
+     */
+    public Yolo getPrimary() {
+        return sessions.get(0);
+    }
+
+    /**
+     * @return The number of sessions in the pool.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops handing out sessions, waits for the ones in use to be released and closes them. A session still in use
+     * after 10 seconds is left open rather than closed under its caller.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<Yolo> returned = new ArrayList<>(sessions.size());
+        try {
+            while (returned.size() < sessions.size()) {
+                Yolo session = idle.poll(10, TimeUnit.SECONDS);
+                if (session == null) {
+                    System.err.println("⚠️ Closing the session pool with " + (sessions.size() - returned.size()) + " session(s) still in use");
+                    break;
+                }
+                returned.add(session);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeSessions(returned);
+    }
+
+    private static void closeSessions(List<Yolo> sessions) {
+        for (Yolo session : sessions) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                System.err.println("Failed to close an inference session: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package io.github.tkjonesy.ONNX;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import lombok.Getter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * The {@code TensorPool} class keeps a set of long-lived input and output tensors backed by direct buffers.
+ * Preprocessing writes straight into a slot's input buffer, and ONNX Runtime reads that same memory when the
+ * slot's tensor is passed to {@code OrtSession.run}. When the model's output shape is fixed, each slot also owns
+ * a pinned output tensor that ONNX Runtime writes into, so the decoder can read the results in place. A
+ * steady-state frame therefore neither copies the tensors nor allocates new native memory.
+ * <p>
+ * Slots are handed out with {@link #acquire()} and must be returned with {@link #release(Slot)} once the
+ * inference call that used them has returned. Concurrent callers simply receive different slots.
+ * <p>
+ * For models with a dynamic batch dimension, {@link #acquire(int)} hands out slots holding a whole batch: one
+ * {@code [N, 3, H, W]} input tensor, with a view per image so each frame is preprocessed straight into its place.
+ * Slots are pooled per batch size.
+ * <p>
+ * For models with a dynamic height and width, {@link #acquire(int, int, int)} hands out slots whose input has another
+ * size than the pool's, e.g. {@code [1, 3, 384, 640]} for rectangular inference. Slots are pooled per size as well,
+ * and only slots of the pool's own size carry a pinned output.
+ */
+public class TensorPool implements AutoCloseable {
+
+    private final OrtEnvironment env;
+    private final String inputName;
+    private final OnnxJavaType type;
+    private final long[] shape;
+    private final String outputName;
+    private final long[] outputShape;
+
+    /** The number of elements in the input of one image, e.g. 3 * 640 * 640. */
+    @Getter
+    private final int numElements;
+
+    /** The number of elements in the output of one image, or -1 if the output shape is not known ahead of time. */
+    @Getter
+    private final int numOutputElements;
+
+    /** Slots that are currently free by batch size and input size, most recently used first so their memory stays warm. */
+    private final Map<SlotShape, ConcurrentLinkedDeque<Slot>> freeSlots = new ConcurrentHashMap<>();
+
+    /** Every slot ever created, so they can all be freed when the pool is closed. */
+    private final List<Slot> allSlots = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile boolean closed = false;
+
+    // The key slots are pooled by
+    private record SlotShape(int batchSize, int height, int width) {}
+
+    /**
+     * Creates an empty pool. Slots are created lazily, one per concurrent caller.
+     *
+     * @param env The ONNX Runtime environment the tensors belong to.
+     * @param inputName The name of the model input the tensors are bound to.
+     * @param type The element type of the model input (FLOAT or UINT8).
+     * @param shape The shape of the model input, e.g. [1, 3, 640, 640]. The first dimension is the batch size and
+     *              is replaced by the size requested from {@link #acquire(int)}.
+     * @param outputName The name of the model output to pin, or {@code null} to let ONNX Runtime allocate outputs.
+     * @param outputShape The shape of the FLOAT model output, e.g. [1, 84, 8400]. Ignored if any dimension other
+     *                    than the batch dimension is dynamic.
+     */
+    public TensorPool(OrtEnvironment env, String inputName, OnnxJavaType type, long[] shape, String outputName, long[] outputShape) {
+        this.env = env;
+        this.inputName = inputName;
+        this.type = type;
+        this.shape = withBatchSize(shape, 1);
+        this.numElements = Math.toIntExact(elementCount(this.shape));
+
+        long outputElements = outputName == null || outputShape == null ? -1 : elementCount(withBatchSize(outputShape, 1));
+        this.outputName = outputElements > 0 ? outputName : null;
+        this.outputShape = outputElements > 0 ? withBatchSize(outputShape, 1) : null;
+        this.numOutputElements = outputElements > 0 ? Math.toIntExact(outputElements) : -1;
+    }
+
+    // The product of the dimensions, or -1 if any dimension is dynamic
+    private static long elementCount(long[] shape) {
+        long elements = 1;
+        for (long dim : shape) {
+            if (dim <= 0) return -1;
+            elements *= dim;
+        }
+        return elements;
+    }
+
+    // A copy of the shape with its first (batch) dimension replaced
+    private static long[] withBatchSize(long[] shape, int batchSize) {
+        long[] batched = shape.clone();
+        batched[0] = batchSize;
+        return batched;
+    }
+
+    // A copy of the [N, C, H, W] shape with its height and width replaced
+    private static long[] withImageSize(long[] shape, int height, int width) {
+        long[] resized = shape.clone();
+        resized[2] = height;
+        resized[3] = width;
+        return resized;
+    }
+
+    /**
+     * @return {@code true} if slots carry a pinned output tensor that {@code OrtSession.run} writes into.
+     */
+    public boolean hasPinnedOutput() {
+        return outputName != null;
+    }
+
+    /**
+     * Takes a free single-image slot from the pool, creating a new one if every slot is in use.
+     *
+     * @return A slot whose buffer may be written and whose tensor may be passed to the session.
+     * @throws OrtException if a new tensor could not be created.
+     */
+    public Slot acquire() throws OrtException {
+        return acquire(1);
+    }
+
+    /**
+     * Takes a free slot holding {@code batchSize} images, creating a new one if every such slot is in use. Only
+     * valid for models whose batch dimension is dynamic or equal to {@code batchSize}.
+     *
+     * @param batchSize The number of images the slot's tensors hold.
+     * @return A slot whose buffers may be written and whose tensors may be passed to the session.
+     * @throws OrtException if a new tensor could not be created.
+     */
+    public Slot acquire(int batchSize) throws OrtException {
+        return acquire(batchSize, (int) shape[2], (int) shape[3]);
+    }
+
+    /**
+     * Takes a free slot holding {@code batchSize} images of {@code width} x {@code height}, creating a new one if
+     * every such slot is in use. Sizes other than the pool's are only valid for models whose height and width are
+     * dynamic; their slots never carry a pinned output, as the output shape depends on the input size.
+     *
+     * @param batchSize The number of images the slot's tensors hold.
+     * @param height The height of each image in the input tensor.
+     * @param width The width of each image in the input tensor.
+     * @return A slot whose buffers may be written and whose tensors may be passed to the session.
+     * @throws OrtException if a new tensor could not be created.
+     */
+    public Slot acquire(int batchSize, int height, int width) throws OrtException {
+        if (closed) {
+            throw new IllegalStateException("TensorPool has been closed");
+        }
+        SlotShape key = new SlotShape(batchSize, height, width);
+        ConcurrentLinkedDeque<Slot> free = freeSlots.get(key);
+        Slot slot = free == null ? null : free.pollFirst();
+        return slot != null ? slot : createSlot(key);
+    }
+
+    /**
+     * Returns a slot to the pool. If the pool has been closed in the meantime the slot is freed instead.
+     *
+     * @param slot The slot previously obtained from {@link #acquire()}.
+     */
+    public void release(Slot slot) {
+        if (slot == null) return;
+        if (closed) {
+            slot.close();
+            return;
+        }
+        freeSlots.computeIfAbsent(new SlotShape(slot.batchSize, slot.height, slot.width), k -> new ConcurrentLinkedDeque<>())
+                .offerFirst(slot);
+    }
+
+    private Slot createSlot(SlotShape key) throws OrtException {
+        Slot slot = new Slot(key.batchSize(), key.height(), key.width());
+        allSlots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Frees every tensor owned by the pool. Slots that are still in use are freed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ConcurrentLinkedDeque<Slot> free : freeSlots.values()) {
+            Slot slot;
+            while ((slot = free.pollFirst()) != null) {
+                slot.close();
+            }
+        }
+        allSlots.clear();
+    }
+
+    /**
+     * A single reusable set of buffers for one inference call: the input buffer and tensor, the pinned output
+     * buffer and tensor, the scratch images used while preprocessing, and the decoder and NMS state for the output.
+     * A batch slot also has a view of its input and pinned output buffers for every image in the batch.
+     */
+    @Getter
+    public final class Slot implements AutoCloseable {
+
+        /** The number of images the slot's tensors hold. */
+        private final int batchSize;
+
+        /** The height of each image in the input tensor. */
+        private final int height;
+
+        /** The width of each image in the input tensor. */
+        private final int width;
+
+        /** The direct buffer for FLOAT inputs, or {@code null} for UINT8 inputs. */
+        private final FloatBuffer floatBuffer;
+
+        /** The direct buffer for UINT8 inputs, or {@code null} for FLOAT inputs. */
+        private final ByteBuffer byteBuffer;
+
+        /** The tensor sharing memory with this slot's buffer. */
+        private final OnnxTensor tensor;
+
+        /** The input map passed to {@code OrtSession.run}, built once per slot. */
+        private final Map<String, OnnxTensor> inputs;
+
+        /** The direct buffer ONNX Runtime writes the output into, or {@code null} if outputs are not pinned. */
+        private final FloatBuffer outputBuffer;
+
+        /** The pinned output tensor sharing memory with {@link #outputBuffer}, or {@code null}. */
+        private final OnnxTensor outputTensor;
+
+        /** The pinned output map passed to {@code OrtSession.run}, empty if outputs are not pinned. */
+        private final Map<String, OnnxTensor> outputs;
+
+        /** Reusable decoder for this slot's output. */
+        private final YoloOutputDecoder decoder = new YoloOutputDecoder();
+
+        /** Reusable non-maximum suppression state for this slot's candidates. */
+        private final NmsEngine nms = new NmsEngine();
+
+        /** Scratch image holding the letterboxed frame. */
+        private final Mat resized = new Mat();
+
+        /** Scratch image holding the frame after type conversion. */
+        private final Mat converted = new Mat();
+
+        // Per-image views of the input and pinned output buffers; views of unused types are null
+        private final FloatBuffer[] floatInputs;
+        private final ByteBuffer[] byteInputs;
+        private final FloatBuffer[] imageOutputs;
+
+        private Slot(int batchSize, int height, int width) throws OrtException {
+            this.batchSize = batchSize;
+            this.height = height;
+            this.width = width;
+            long[] batchShape = withBatchSize(withImageSize(shape, height, width), batchSize);
+            int numElements = Math.toIntExact(elementCount(batchShape) / batchSize);
+            boolean pinned = outputName != null && height == shape[2] && width == shape[3];
+            this.floatInputs = new FloatBuffer[batchSize];
+            this.byteInputs = new ByteBuffer[batchSize];
+            if (type.equals(OnnxJavaType.UINT8)) {
+                this.byteBuffer = ByteBuffer.allocateDirect(numElements * batchSize).order(ByteOrder.nativeOrder());
+                this.floatBuffer = null;
+                this.tensor = OnnxTensor.createTensor(env, byteBuffer, batchShape, type);
+                for (int i = 0; i < batchSize; i++) {
+                    byteInputs[i] = byteBuffer.slice(i * numElements, numElements).order(ByteOrder.nativeOrder());
+                }
+            } else {
+                this.floatBuffer = ByteBuffer.allocateDirect(numElements * batchSize * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+                this.byteBuffer = null;
+                this.tensor = OnnxTensor.createTensor(env, floatBuffer, batchShape);
+                for (int i = 0; i < batchSize; i++) {
+                    floatInputs[i] = floatBuffer.slice(i * numElements, numElements);
+                }
+            }
+            this.inputs = Collections.singletonMap(inputName, tensor);
+
+            // Size the decoder for the model's anchors now rather than on the first frame
+            if (pinned && outputShape != null && outputShape.length == 3 && outputShape[2] > 0) {
+                decoder.reserve((int) outputShape[2]);
+            }
+
+            this.imageOutputs = new FloatBuffer[batchSize];
+            if (pinned) {
+                this.outputBuffer = ByteBuffer.allocateDirect(numOutputElements * batchSize * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+                this.outputTensor = OnnxTensor.createTensor(env, outputBuffer, withBatchSize(outputShape, batchSize));
+                this.outputs = Collections.singletonMap(outputName, outputTensor);
+                for (int i = 0; i < batchSize; i++) {
+                    imageOutputs[i] = outputBuffer.slice(i * numOutputElements, numOutputElements);
+                }
+            } else {
+                this.outputBuffer = null;
+                this.outputTensor = null;
+                this.outputs = Collections.emptyMap();
+            }
+        }
+
+        /**
+         * @return {@code true} if the slot carries a pinned output tensor that {@code OrtSession.run} writes into.
+         */
+        public boolean hasPinnedOutput() {
+            return outputTensor != null;
+        }
+
+        /**
+         * @param i The index of an image in the batch.
+         * @return The part of the FLOAT input buffer holding image {@code i}.
+         */
+        public FloatBuffer getFloatInput(int i) {
+            return floatInputs[i];
+        }
+
+        /**
+         * @param i The index of an image in the batch.
+         * @return The part of the UINT8 input buffer holding image {@code i}.
+         */
+        public ByteBuffer getByteInput(int i) {
+            return byteInputs[i];
+        }
+
+        /**
+         * @param i The index of an image in the batch.
+         * @return The part of the pinned output buffer holding the results for image {@code i}, or {@code null} if
+         * outputs are not pinned.
+         */
+        public FloatBuffer getImageOutput(int i) {
+            return imageOutputs[i];
+        }
+
+        @Override
+        public void close() {
+            tensor.close();
+            if (outputTensor != null) outputTensor.close();
+            resized.release();
+            converted.release();
+        }
+    }
+}
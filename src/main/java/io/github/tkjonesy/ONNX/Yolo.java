@@ -2,25 +2,25 @@ package io.github.tkjonesy.ONNX;
 
 import ai.onnxruntime.NodeInfo;
 import ai.onnxruntime.OnnxJavaType;
-import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 import ai.onnxruntime.TensorInfo;
 
+import io.github.tkjonesy.utils.Paths;
 import io.github.tkjonesy.utils.settings.ProgramSettings;
+import org.bytedeco.opencv.global.opencv_core;
 import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
-public abstract class Yolo {
+public abstract class Yolo implements AutoCloseable {
 
     public OnnxJavaType inputType;
     protected final OrtEnvironment env;
@@ -28,104 +28,201 @@ public abstract class Yolo {
     protected final String inputName;
     public ArrayList<String> labelNames;
 
-    OnnxTensor inputTensor;
+    // Reusable direct-buffer input and output tensors, one set per concurrent caller of run()
+    protected final TensorPool tensorPool;
+
+    // The first model output and its declared shape, e.g. [1, 84, 8400]
+    protected final String outputName;
+    protected final long[] outputShape;
+
+    // The batch dimension of the model input: -1 if dynamic, otherwise the fixed number of images per call
+    protected final long modelBatchSize;
+
+    // Input size, class count and labels, read from the model
+    protected final ModelMetadata metadata;
+
+    // Chooses the size of batches for models with a dynamic batch dimension
+    protected final BatchSizer batchSizer;
+
+    // Optimized graphs of the models loaded before, shared by every session
+    private static final OptimizedModelCache OPTIMIZED_MODEL_CACHE = new OptimizedModelCache(Path.of(Paths.AIMS_OPTIMIZED_MODELS_DIRECTORY));
 
     // Yolo constructor, taking in the modelPath, file with labels, confidence threshold, non-maximum suppression threshold, and GPU device ID
     // gpuDevice omitted from this example
     public Yolo(String modelPath, String labelPath) throws OrtException, IOException {
+        this(modelPath, labelPath, ProgramSettings.getCurrentSettings().getIntraOpThreads());
+    }
 
-        // Create the Onnx Runtime Environment and Session
-        this.env = OrtEnvironment.getEnvironment();
-        var sessionOptions = new OrtSession.SessionOptions();
-        sessionOptions.addCPU(false);
-        sessionOptions.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+    /**
+     * @param modelPath The ONNX model to load.
+     * @param labelPath The file with one label per line, only read if the model does not carry its own labels.
+     * @param intraOpThreads The number of threads ONNX Runtime may use inside one operator, or 0 for its default.
+     */
+    public Yolo(String modelPath, String labelPath, int intraOpThreads) throws OrtException, IOException {
 
-        // Set the session
-        this.session = this.env.createSession(modelPath, sessionOptions);
+        // Create the Onnx Runtime Environment and Session, reusing the optimized graph of an earlier run if cached
+        this.env = OrtEnvironment.getEnvironment();
+        ProgramSettings sessionSettings = ProgramSettings.getCurrentSettings();
+        try (var sessionOptions = createSessionOptions(sessionSettings, intraOpThreads)) {
+            OrtSession.SessionOptions.OptLevel level = optLevel(sessionSettings);
+            if (sessionSettings.isOptimizedModelCache() && level != OrtSession.SessionOptions.OptLevel.NO_OPT) {
+                this.session = OPTIMIZED_MODEL_CACHE.createSession(this.env, modelPath, sessionOptions, level);
+            } else {
+                this.session = this.env.createSession(modelPath, sessionOptions);
+            }
+        }
 
         // Get the input information
         Map<String, NodeInfo> inputMetaMap = this.session.getInputInfo();
         this.inputName = this.session.getInputNames().iterator().next();
-        NodeInfo inputMeta = inputMetaMap.get(this.inputName);
-        this.inputType = ((TensorInfo) inputMeta.getInfo()).type;
-
-
-        // Use a buffered reader to read the labels from the file
-        BufferedReader br = new BufferedReader(new FileReader(labelPath));
-        String line;
-        this.labelNames = new ArrayList<>();
-        while ((line = br.readLine()) != null) {
-            this.labelNames.add(line);
-        }
-    }
-    public abstract List<Detection> run(Mat img) throws OrtException;
+        TensorInfo inputInfo = (TensorInfo) inputMetaMap.get(this.inputName).getInfo();
+        this.inputType = inputInfo.type;
+        this.modelBatchSize = inputInfo.getShape()[0];
 
-    // Compute the Intersection over Union (IoU) of two bounding boxes
-    private float computeIOU(float[] box1, float[] box2) {
+        // Get the output information
+        this.outputName = this.session.getOutputNames().iterator().next();
+        TensorInfo outputInfo = (TensorInfo) this.session.getOutputInfo().get(this.outputName).getInfo();
+        this.outputShape = outputInfo.getShape();
 
-        float area1 = (box1[2] - box1[0]) * (box1[3] - box1[1]);
-        float area2 = (box2[2] - box2[0]) * (box2[3] - box2[1]);
+        // Derive the tensor geometry and labels from the model, so every buffer below is sized for it
+        this.metadata = ModelMetadata.read(this.session, inputInfo, outputInfo, labelPath);
+        this.labelNames = new ArrayList<>(metadata.getLabels());
 
-        float left = Math.max(box1[0], box2[0]);
-        float top = Math.max(box1[1], box2[1]);
-        float right = Math.min(box1[2], box2[2]);
-        float bottom = Math.min(box1[3], box2[3]);
+        ProgramSettings settings = ProgramSettings.getCurrentSettings();
+        this.batchSizer = new BatchSizer(settings.getMaxBatchSize(), TimeUnit.MILLISECONDS.toNanos(settings.getBatchLatencyBudgetMs()));
 
-        float interArea = Math.max(right - left, 0) * Math.max(bottom - top, 0);
-        float unionArea = area1 + area2 - interArea;
-        return Math.max(interArea / unionArea, 1e-8f);
+        long[] inputShape = {Math.max(1, modelBatchSize), metadata.getInputChannels(), metadata.getInputHeight(), metadata.getInputWidth()};
+        this.tensorPool = new TensorPool(this.env, this.inputName, this.inputType, inputShape, this.outputName, this.outputShape);
     }
 
-    protected List<float[]> nonMaxSuppression(List<float[]> bboxes) {
+    /**
+     * @return The input size, class count and labels of the model.
+     */
+    public ModelMetadata getMetadata() {
+        return metadata;
+    }
 
-        // output boxes
-        List<float[]> bestBboxes = new ArrayList<>();
+    /**
+     * Runs inference on a frame, replacing the contents of {@code out} with the detections found.
+     *
+     * @param img The frame to process.
+     * @param out The batch to fill; its frame sequence and capture timestamp are left untouched.
+     */
+    public abstract void run(Mat img, DetectionBatch out) throws OrtException;
+
+    /**
+     * Runs inference on a frame and returns the detections as records.
+     *
+     * @param img The frame to process.
+     * @return A new list of detections.
+     */
+    public List<Detection> run(Mat img) throws OrtException {
+        DetectionBatch batch = new DetectionBatch();
+        run(img, batch);
+        return batch.toDetections();
+    }
 
-        // confidence
-        bboxes.sort(Comparator.comparing(a -> a[4]));
+    /**
+     * Runs inference on several frames, replacing the contents of {@code out.get(i)} with the detections found in
+     * {@code imgs.get(i)}. Models with a dynamic batch dimension infer the frames in batches sized by the latency
+     * budget; other models infer them one call per fixed-size batch, or one at a time.
+     *
+     * @param imgs The frames to process.
+     * @param out One batch per frame to fill; frame sequences and capture timestamps are left untouched.
+     */
+    public abstract void run(List<Mat> imgs, List<DetectionBatch> out) throws OrtException;
+
+    /**
+     * Runs inference on several frames and returns the detections of each as records.
+     *
+     * @param imgs The frames to process.
+     * @return A new list of detections per frame, in the order of {@code imgs}.
+     */
+    public List<List<Detection>> run(List<Mat> imgs) throws OrtException {
+        List<DetectionBatch> batches = new ArrayList<>(imgs.size());
+        for (int i = 0; i < imgs.size(); i++) {
+            batches.add(new DetectionBatch());
+        }
+        run(imgs, batches);
+        List<List<Detection>> detections = new ArrayList<>(imgs.size());
+        for (DetectionBatch batch : batches) {
+            detections.add(batch.toDetections());
+        }
+        return detections;
+    }
 
-        // standard nms
-        while (!bboxes.isEmpty()) {
-//            float[] bestBbox = bboxes.removeLast();
-            float [] bestBbox = bboxes.remove(bboxes.size() - 1);
-            bestBboxes.add(bestBbox);
-            bboxes = bboxes.stream().filter(a -> computeIOU(a, bestBbox) < ProgramSettings.getCurrentSettings().getNmsThreshold()).collect(Collectors.toList());
+    /**
+     * Runs a few inferences on a blank frame of the model's input size, so that tensors, buffers and ONNX Runtime's
+     * lazily initialized kernels are ready before the first real frame arrives.
+     *
+     * @param runs The number of inferences to run.
+     */
+    public void warmUp(int runs) throws OrtException {
+        DetectionBatch batch = new DetectionBatch();
+        try (Scalar gray = Scalar.all(114);
+             Mat blank = new Mat(metadata.getInputHeight(), metadata.getInputWidth(), opencv_core.CV_8UC3, gray)) {
+            for (int i = 0; i < runs; i++) {
+                run(blank, batch);
+            }
         }
+    }
 
-        return bestBboxes;
+    /**
+     * Returns the size a frame is letterboxed to. In rectangular mode, for models with a dynamic height and width, the
+     * frame is only padded up to a multiple of the model's stride, e.g. 640x384 for a 16:9 frame, so less of the input
+     * is padding. Otherwise it is padded to the model's full input size.
+     *
+     * @param frameW The width of the frame.
+     * @param frameH The height of the frame.
+     * @return The width and height of the model input for the frame.
+     */
+    public int[] inputSizeFor(int frameW, int frameH) {
+        if (ProgramSettings.getCurrentSettings().isRectangularInference() && metadata.isDynamicInputSize()) {
+            return metadata.rectangularInputSize(frameW, frameH);
+        }
+        return new int[]{metadata.getInputWidth(), metadata.getInputHeight()};
     }
 
-    protected void xywh2xyxy(float[] bbox) {
-        float x = bbox[0];
-        float y = bbox[1];
-        float w = bbox[2];
-        float h = bbox[3];
+    /**
+     * @return The number of frames worth collecting for one call to {@link #run(List, List)}: the size chosen by
+     * the latency budget for models with a dynamic batch dimension, the fixed batch size otherwise.
+     */
+    public int getPreferredBatchSize() {
+        return modelBatchSize > 0 ? (int) modelBatchSize : batchSizer.getBatchSize();
+    }
 
-        bbox[0] = x - w * 0.5f;
-        bbox[1] = y - h * 0.5f;
-        bbox[2] = x + w * 0.5f;
-        bbox[3] = y + h * 0.5f;
+    /**
+     * Builds the session options from the settings: optimization level, thread counts, execution mode, memory
+     * pattern and CPU arena.
+     *
+     * @param settings The settings to read.
+     * @param intraOpThreads The number of intra-op threads, or 0 to leave ONNX Runtime's default.
+     * @return New session options, to be closed once the session is created.
+     */
+    public static OrtSession.SessionOptions createSessionOptions(ProgramSettings settings, int intraOpThreads) throws OrtException {
+        var sessionOptions = new OrtSession.SessionOptions();
+        sessionOptions.addCPU(settings.isCpuArenaAllocator());
+        sessionOptions.setCPUArenaAllocator(settings.isCpuArenaAllocator());
+        sessionOptions.setOptimizationLevel(optLevel(settings));
+        sessionOptions.setExecutionMode(settings.getExecutionMode());
+        sessionOptions.setMemoryPatternOptimization(settings.isMemoryPatternOptimization());
+        if (intraOpThreads > 0) {
+            sessionOptions.setIntraOpNumThreads(intraOpThreads);
+        }
+        if (settings.getInterOpThreads() > 0) {
+            sessionOptions.setInterOpNumThreads(settings.getInterOpThreads());
+        }
+        return sessionOptions;
     }
 
-    // Scale the coordinates of the bounding box
-    protected void scaleCoords(float[] bbox, float orgW, float orgH, float padW, float padH, float gain) {
-        // xmin, ymin, xmax, ymax -> (xmin_org, ymin_org, xmax_org, ymax_org)
-        bbox[0] = Math.max(0, Math.min(orgW - 1, (bbox[0] - padW) / gain));
-        bbox[1] = Math.max(0, Math.min(orgH - 1, (bbox[1] - padH) / gain));
-        bbox[2] = Math.max(0, Math.min(orgW - 1, (bbox[2] - padW) / gain));
-        bbox[3] = Math.max(0, Math.min(orgH - 1, (bbox[3] - padH) / gain));
+    private static OrtSession.SessionOptions.OptLevel optLevel(ProgramSettings settings) {
+        return settings.getOptimizationLevel() != null ? settings.getOptimizationLevel() : OrtSession.SessionOptions.OptLevel.ALL_OPT;
     }
 
-    // Find the index of the maximum value in an array
-    static int argmax(float[] a) {
-        float re = -Float.MAX_VALUE;
-        int arg = -1;
-        for (int i = 0; i < a.length; i++) {
-            if (a[i] >= re) {
-                re = a[i];
-                arg = i;
-            }
-        }
-        return arg;
+    // Free the pooled tensors and the native session
+    @Override
+    public void close() throws OrtException {
+        this.tensorPool.close();
+        this.session.close();
     }
-}
\ No newline at end of file
+}
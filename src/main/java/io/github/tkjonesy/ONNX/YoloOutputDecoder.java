@@ -0,0 +1,138 @@
+package io.github.tkjonesy.ONNX;
+
+import io.github.tkjonesy.ONNX.kernels.Kernels;
+import lombok.Getter;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * The {@code YoloOutputDecoder} class turns the raw YOLOv8+ output tensor into a list of candidate boxes without
+ * materializing the tensor as nested Java arrays.
+ * <p>
+ * The output has the layout {@code [1, 4 + C, N]}: rows 0-3 hold the box center x, center y, width and height of
+ * each of the N anchors, and rows 4 to 4 + C hold the per-class scores. The decoder first scans the class-score rows
+ * one row at a time (sequential memory access) to find each anchor's best class, rejects anchors whose best score is
+ * below the confidence threshold, and only then reads the box fields of the survivors with strided indexing.
+ * Survivors are written into reusable primitive arrays, so decoding a frame allocates nothing once the decoder has
+ * grown to the model's size.
+ */
+public class YoloOutputDecoder {
+
+    /** The number of classes in the last decoded output. */
+    @Getter
+    private int numClasses = 0;
+
+    /** The number of anchors in the last decoded output. */
+    @Getter
+    private int numAnchors = 0;
+
+    /** The number of candidates that survived the confidence threshold. */
+    @Getter
+    private int count = 0;
+
+    /** Candidate boxes as (x1, y1, x2, y2) in frame coordinates, 4 floats per candidate. */
+    @Getter
+    private float[] boxes = new float[0];
+
+    /** The best class score of each candidate. */
+    @Getter
+    private float[] scores = new float[0];
+
+    /** The best class id of each candidate. */
+    @Getter
+    private int[] classIds = new int[0];
+
+    // Per-anchor running maximum over the class rows
+    private float[] bestScore = new float[0];
+    private int[] bestClass = new int[0];
+
+    // One class-score row copied out of the output buffer
+    private float[] row = new float[0];
+
+    private final Kernels kernels = Kernels.get();
+
+    /**
+     * Decodes one output tensor.
+     *
+     * @param output The output buffer in {@code [1, 4 + C, N]} layout, read with absolute indexing.
+     * @param numClasses The number of classes C.
+     * @param numAnchors The number of anchors N.
+     * @param confThreshold Anchors whose best class score is below this value are discarded.
+     * @param orgW The width of the original frame.
+     * @param orgH The height of the original frame.
+     * @param padW The horizontal letterbox padding in model input pixels.
+     * @param padH The vertical letterbox padding in model input pixels.
+     * @param gain The scale factor from frame to model input coordinates.
+     * @return The number of candidates written to the candidate arrays.
+     */
+    public int decode(FloatBuffer output, int numClasses, int numAnchors, float confThreshold,
+                      float orgW, float orgH, float padW, float padH, float gain) {
+        ensureCapacity(numClasses, numAnchors);
+        this.numClasses = numClasses;
+        this.numAnchors = numAnchors;
+        this.count = 0;
+
+        // Best class per anchor, scanning the class rows in memory order
+        output.get(4 * numAnchors, bestScore, 0, numAnchors);
+        Arrays.fill(bestClass, 0, numAnchors, 0);
+        for (int c = 1; c < numClasses; c++) {
+            output.get((4 + c) * numAnchors, row, 0, numAnchors);
+            kernels.maxArgmax(row, numAnchors, c, bestScore, bestClass);
+        }
+
+        // Only anchors above the threshold have their box fields read
+        for (int a = 0; a < numAnchors; a++) {
+            float conf = bestScore[a];
+            if (conf < confThreshold) continue;
+
+            float x = output.get(a);
+            float y = output.get(numAnchors + a);
+            float w = output.get(2 * numAnchors + a);
+            float h = output.get(3 * numAnchors + a);
+
+            // xywh to (x1, y1, x2, y2)
+            float x1 = x - w * 0.5f;
+            float y1 = y - h * 0.5f;
+            float x2 = x + w * 0.5f;
+            float y2 = y + h * 0.5f;
+
+            // skip invalid predictions
+            if (x1 >= x2 || y1 >= y2) continue;
+
+            // (x1, y1, x2, y2) in model input -> frame coordinates
+            int o = count * 4;
+            boxes[o] = Math.max(0, Math.min(orgW - 1, (x1 - padW) / gain));
+            boxes[o + 1] = Math.max(0, Math.min(orgH - 1, (y1 - padH) / gain));
+            boxes[o + 2] = Math.max(0, Math.min(orgW - 1, (x2 - padW) / gain));
+            boxes[o + 3] = Math.max(0, Math.min(orgH - 1, (y2 - padH) / gain));
+            scores[count] = conf;
+            classIds[count] = bestClass[a];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Allocates the per-anchor buffers ahead of the first decode, for outputs whose anchor count is known.
+     *
+     * @param numAnchors The number of anchors N of the model's output.
+     */
+    public void reserve(int numAnchors) {
+        ensureCapacity(1, numAnchors);
+    }
+
+    private void ensureCapacity(int numClasses, int numAnchors) {
+        if (numClasses < 1) {
+            throw new IllegalArgumentException("YOLO output must contain at least one class row");
+        }
+        if (bestScore.length < numAnchors) {
+            bestScore = new float[numAnchors];
+            bestClass = new int[numAnchors];
+            row = new float[numAnchors];
+            boxes = new float[numAnchors * 4];
+            scores = new float[numAnchors];
+            classIds = new int[numAnchors];
+        }
+    }
+}
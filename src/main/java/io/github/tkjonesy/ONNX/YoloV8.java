@@ -5,19 +5,16 @@ import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 
+import io.github.tkjonesy.ONNX.enums.PreprocessMode;
+import io.github.tkjonesy.utils.StageTimer;
 import io.github.tkjonesy.utils.settings.ProgramSettings;
-import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.javacpp.FloatPointer;
 import org.bytedeco.opencv.opencv_core.Mat;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
 import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2RGB;
@@ -27,130 +24,194 @@ public class YoloV8 extends Yolo {
 
     private static final ProgramSettings settings = ProgramSettings.getCurrentSettings();
 
+    // Single-pass letterbox kernel and per-mode preprocessing timers
+    private final LetterboxPreprocessor letterbox = new LetterboxPreprocessor();
+    private final EnumMap<PreprocessMode, StageTimer> preprocessTimers = new EnumMap<>(PreprocessMode.class);
+
     public YoloV8(String modelPath, String labelPath) throws OrtException, IOException {
-        super(modelPath, labelPath);
+        this(modelPath, labelPath, settings.getIntraOpThreads());
+    }
+
+    public YoloV8(String modelPath, String labelPath, int intraOpThreads) throws OrtException, IOException {
+        super(modelPath, labelPath, intraOpThreads);
+        for (PreprocessMode mode : PreprocessMode.values()) {
+            preprocessTimers.put(mode, new StageTimer("Preprocess (" + mode + ")", 100));
+        }
     }
 
     // Run inference on the image
-    public List<Detection> run(Mat img) throws OrtException {
+    @Override
+    public void run(Mat img, DetectionBatch out) throws OrtException {
+
+        // Borrow a pooled set of tensors for the duration of this call; a fixed batch dimension needs a full batch
+        int[] size = inputSizeFor(img.cols(), img.rows());
+        TensorPool.Slot slot = this.tensorPool.acquire(modelBatchSize > 1 ? (int) modelBatchSize : 1, size[1], size[0]);
+        try {
+            // preprocessing
+            this.preprocess(img, slot, 0);
+
+            // Run inference, closing the result so any runtime-allocated output is freed
+            if (slot.hasPinnedOutput()) {
+                // The output is written straight into the slot's pinned buffer, which closing the result leaves alone
+                this.session.run(slot.getInputs(), slot.getOutputs()).close();
+                decodeAndSuppress(img, slot.getImageOutput(0), outputShape, slot, out);
+            } else {
+                // Dynamic output shape: read the shape and data from the tensor ONNX Runtime allocated
+                try (OrtSession.Result results = this.session.run(slot.getInputs())) {
+                    OnnxTensor output = (OnnxTensor) results.get(0);
+                    decodeAndSuppress(img, output.getFloatBuffer(), output.getInfo().getShape(), slot, out);
+                }
+            }
+        } finally {
+            this.tensorPool.release(slot);
+        }
+    }
 
-        float orgW = (float) img.size().width();
-        float orgH = (float) img.size().height();
+    // Run inference on several images, in as few calls as the model's batch dimension allows
+    @Override
+    public void run(List<Mat> imgs, List<DetectionBatch> out) throws OrtException {
+        if (imgs.size() != out.size()) {
+            throw new IllegalArgumentException("Expected one output batch per image, got " + out.size() + " for " + imgs.size());
+        }
+        int start = 0;
+        while (start < imgs.size()) {
+            int remaining = imgs.size() - start;
+            // A fixed batch dimension always takes a full tensor; unused entries are ignored
+            int slotSize = modelBatchSize > 0 ? (int) modelBatchSize : Math.min(remaining, batchSizer.getBatchSize());
+            int count = Math.min(remaining, slotSize);
+
+            long began = System.nanoTime();
+            if (slotSize == 1) {
+                run(imgs.get(start), out.get(start));
+            } else {
+                runBatch(imgs, out, start, count, slotSize);
+            }
+            // Single images are timed too, so the batch size can grow from 1
+            if (modelBatchSize < 0) batchSizer.record(count, System.nanoTime() - began);
+            start += count;
+        }
+    }
 
-        float INPUT_SIZE = settings.getInputSize();
+    // Preprocess count images into one batch tensor, infer them in one call and decode every image's output
+    private void runBatch(List<Mat> imgs, List<DetectionBatch> out, int start, int count, int slotSize) throws OrtException {
+        // One tensor holds every image, so frames of different sizes share the model's full input size
+        Mat first = imgs.get(start);
+        int[] size = inputSizeFor(first.cols(), first.rows());
+        for (int i = 1; i < count; i++) {
+            Mat img = imgs.get(start + i);
+            if (img.cols() != first.cols() || img.rows() != first.rows()) {
+                size = new int[]{metadata.getInputWidth(), metadata.getInputHeight()};
+                break;
+            }
+        }
 
-        float gain = Math.min((float) INPUT_SIZE / orgW, (float) INPUT_SIZE / orgH);
-        float padW = (INPUT_SIZE - orgW * gain) * 0.5f;
-        float padH = (INPUT_SIZE - orgH * gain) * 0.5f;
+        TensorPool.Slot slot = this.tensorPool.acquire(slotSize, size[1], size[0]);
+        try {
+            for (int i = 0; i < count; i++) {
+                this.preprocess(imgs.get(start + i), slot, i);
+            }
 
-        // preprocessing
-        Map<String, OnnxTensor> inputContainer = this.preprocess(img);
+            if (slot.hasPinnedOutput()) {
+                this.session.run(slot.getInputs(), slot.getOutputs()).close();
+                for (int i = 0; i < count; i++) {
+                    decodeAndSuppress(imgs.get(start + i), slot.getImageOutput(i), outputShape, slot, out.get(start + i));
+                }
+            } else {
+                try (OrtSession.Result results = this.session.run(slot.getInputs())) {
+                    OnnxTensor output = (OnnxTensor) results.get(0);
+                    long[] shape = output.getInfo().getShape();
+                    FloatBuffer all = output.getFloatBuffer();
+                    int perImage = (int) (shape[1] * shape[2]);
+                    for (int i = 0; i < count; i++) {
+                        decodeAndSuppress(imgs.get(start + i), all.slice(i * perImage, perImage), shape, slot, out.get(start + i));
+                    }
+                }
+            }
+        } finally {
+            this.tensorPool.release(slot);
+        }
+    }
 
-        // Run inference
-        float[][] predictions;
+    // Decode one image's output, mapping boxes back through its letterbox, and keep the survivors of NMS
+    private void decodeAndSuppress(Mat img, FloatBuffer output, long[] shape, TensorPool.Slot slot, DetectionBatch out) {
+        // Scale and padding are computed analytically, the same way the image was letterboxed into the slot
+        LetterboxPreprocessor.Geometry geometry = letterbox.geometryFor(img.cols(), img.rows(), slot.getWidth(), slot.getHeight());
 
-        OrtSession.Result results = this.session.run(inputContainer);
-        predictions = ((float[][][]) results.get(0).getValue())[0];
+        YoloOutputDecoder decoder = slot.getDecoder();
+        decoder.decode(output, (int) shape[1] - 4, (int) shape[2], settings.getConfThreshold(),
+                (float) img.cols(), (float) img.rows(), geometry.getLeft(), geometry.getTop(), geometry.getGain());
 
         // postprocessing
-        return postprocess(predictions, orgW, orgH, padW, padH, gain);
+        postprocess(decoder, slot.getNms(), out);
     }
 
-    // Preprocess the image. Returns a map of the input tensor name to the input tensor
-    public Map<String, OnnxTensor> preprocess(Mat img) throws OrtException {
+    // Preprocess the image, writing it straight into the slot's direct input buffer at the given batch index
+    public void preprocess(Mat img, TensorPool.Slot slot, int index) {
+        PreprocessMode mode = settings.getPreprocessMode() == null ? PreprocessMode.FUSED : settings.getPreprocessMode();
+        if (mode != PreprocessMode.LEGACY && !LetterboxPreprocessor.supports(img)) {
+            mode = PreprocessMode.LEGACY;
+        }
+
+        long start = System.nanoTime();
+        int width = slot.getWidth(), height = slot.getHeight();
+        switch (mode) {
+            case FUSED, FUSED_PARALLEL -> {
+                boolean parallel = mode == PreprocessMode.FUSED_PARALLEL;
+                if (this.inputType.equals(OnnxJavaType.UINT8)) {
+                    letterbox.process(img, slot.getByteInput(index), width, height, parallel);
+                } else {
+                    letterbox.process(img, slot.getFloatInput(index), width, height, parallel);
+                }
+            }
+            default -> preprocessLegacy(img, slot, index);
+        }
+        preprocessTimers.get(mode).record(System.nanoTime() - start);
+    }
+
+    // The original multi-pass OpenCV preprocessing, kept for comparison and for non-BGR inputs
+    private void preprocessLegacy(Mat img, TensorPool.Slot slot, int index) {
 
         // Resizing with padding
-        Mat resizedImg = new Mat();
-        int INPUT_SIZE = settings.getInputSize();
-        ImageUtil.resizeWithPadding(img, resizedImg, INPUT_SIZE, INPUT_SIZE);
+        Mat resizedImg = slot.getResized();
+        ImageUtil.resizeWithPadding(img, resizedImg, slot.getWidth(), slot.getHeight());
 
         // BGR -> RGB
         cvtColor(resizedImg, resizedImg, COLOR_BGR2RGB);
 
-        // Create input tensor container
-        Map<String, OnnxTensor> container = new HashMap<>();
-
-        int NUM_INPUT_ELEMENTS = settings.getNumInputElements();
-        long[] INPUT_SHAPE = settings.getInputShape();
-
         if (this.inputType.equals(OnnxJavaType.UINT8)) {
-            byte[] whc = new byte[NUM_INPUT_ELEMENTS];
-            BytePointer bp = resizedImg.data();
-            bp.get(whc);
-
-            // Reorder W-H-C to C-W-H
-            byte[] chw = ImageUtil.whc2cwh(whc);
-            ByteBuffer inputBuffer = ByteBuffer.wrap(chw);
-            inputTensor = OnnxTensor.createTensor(this.env, inputBuffer, INPUT_SHAPE, this.inputType);
+            // Reorder W-H-C to C-W-H directly from the image memory into the tensor buffer
+            ByteBuffer whc = resizedImg.createBuffer();
+            ImageUtil.whc2cwh(whc, slot.getByteInput(index));
 
         } else {
-            resizedImg.convertTo(resizedImg, CV_32F, 1.0 / 255.0 , 0);
-            float[] whc = new float[NUM_INPUT_ELEMENTS];
-            FloatPointer fp = new FloatPointer(resizedImg.data());
-            fp.get(whc);
-
-            // Reorder W-H-C to C-W-H
-            float[] chw = ImageUtil.whc2cwh(whc);
+            Mat floatImg = slot.getConverted();
+            resizedImg.convertTo(floatImg, CV_32F, 1.0 / 255.0 , 0);
 
-            // Wrap in FloatBuffer for ONNX
-            FloatBuffer inputBuffer = FloatBuffer.wrap(chw);
-            inputTensor = OnnxTensor.createTensor(this.env, inputBuffer, INPUT_SHAPE);
+            // Reorder W-H-C to C-W-H directly from the image memory into the tensor buffer
+            FloatBuffer whc = floatImg.createBuffer();
+            ImageUtil.whc2cwh(whc, slot.getFloatInput(index));
         }
-
-        // Add the tensor to the container
-        container.put(this.inputName, inputTensor);
-
-        return container;
     }
 
-    public List<Detection> postprocess(float[][] outputs, float orgW, float orgH, float padW, float padH, float gain) {
-
-        // predictions
-        outputs = transposeMatrix(outputs);
-        Map<Integer, List<float[]>> class2Bbox = new HashMap<>();
-
-        for (float[] bbox : outputs) {
-
-
-            float[] conditionalProbabilities = Arrays.copyOfRange(bbox, 4, 84);
-            int label = argmax(conditionalProbabilities);
-            float conf = conditionalProbabilities[label];
-            if (conf < settings.getConfThreshold()) continue;
-
-            bbox[4] = conf;
-
-            // xywh to (x1, y1, x2, y2)
-            xywh2xyxy(bbox);
-
-            // skip invalid predictions
-            if (bbox[0] >= bbox[2] || bbox[1] >= bbox[3]) continue;
-
-            // xmin, ymin, xmax, ymax -> (xmin_org, ymin_org, xmax_org, ymax_org)
-            scaleCoords(bbox, orgW, orgH, padW, padH, gain);
-            class2Bbox.putIfAbsent(label, new ArrayList<>());
-            class2Bbox.get(label).add(bbox);
-        }
-
-        // Apply Non-max suppression for each class
-        List<Detection> detections = new ArrayList<>();
-        for (Map.Entry<Integer, List<float[]>> entry : class2Bbox.entrySet()) {
-            int label = entry.getKey();
-            List<float[]> bboxes = entry.getValue();
-            bboxes = nonMaxSuppression(bboxes);
-            for (float[] bbox : bboxes) {
-                String labelString = this.labelNames.get(label);
-                detections.add(new Detection(labelString, Arrays.copyOfRange(bbox, 0, 4), bbox[4]));
-            }
+    // Apply class-aware non-max suppression to the decoded candidates in a single pass
+    public void postprocess(YoloOutputDecoder decoder, NmsEngine nms, DetectionBatch out) {
+
+        float[] boxes = decoder.getBoxes();
+        float[] scores = decoder.getScores();
+        int[] classIds = decoder.getClassIds();
+
+        nms.setSoftNms(settings.isSoftNms());
+        int kept = nms.suppress(boxes, scores, classIds, decoder.getCount(), settings.getNmsThreshold(),
+                settings.getConfThreshold(), settings.getMaxDetections());
+
+        out.clear();
+        out.setLabels(this.labelNames);
+        int[] keep = nms.getKeep();
+        float[] keptScores = nms.getKeptScores();
+        for (int k = 0; k < kept; k++) {
+            int i = keep[k];
+            int o = i * 4;
+            out.add(classIds[i], boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3], keptScores[k]);
         }
-
-        return detections;
-    }
-
-    public static float[][] transposeMatrix(float [][] m){
-        float[][] temp = new float[m[0].length][m.length];
-        for (int i = 0; i < m.length; i++)
-            for (int j = 0; j < m[0].length; j++)
-                temp[j][i] = m[i][j];
-        return temp;
     }
-}
\ No newline at end of file
+}
@@ -3,28 +3,39 @@ package io.github.tkjonesy.ONNX.enums;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
-import java.awt.Color;
-
 /**
  * The {@code LogEnum} enum represents different log levels, each associated with a specific color.
  * It is used to classify log entries by type, such as errors, informational messages, and successes.
+ * <p>
+ * Colors are stored as plain 0xRRGGBB values rather than {@code java.awt.Color}, so logging does not load any AWT
+ * classes in headless mode.
  */
 @Getter
 @AllArgsConstructor
 public enum LogEnum {
 
     /** Log type for error messages, displayed in red. */
-    ERROR(Color.RED),
+    ERROR(0xFF0000, "\u001B[31m"),
 
     /** Log type for informational messages, displayed in yellow. */
-    INFO(Color.YELLOW),
+    INFO(0xFFFF00, "\u001B[33m"),
 
     /** Log type for success messages, displayed in green. */
-    SUCCESS(Color.GREEN),
+    SUCCESS(0x00FF00, "\u001B[32m"),
 
     /** Default log type, displayed in dark gray. */
-    DEFAULT(Color.DARK_GRAY);
+    DEFAULT(0x404040, "\u001B[90m");
+
+    /** The color associated with the log type, as 0xRRGGBB. */
+    private final int rgb;
+
+    /** The ANSI escape sequence used to show the log type in a terminal. */
+    private final String ansiColor;
 
-    /** The color associated with the log type. */
-    private final Color color;
+    /**
+     * @return The color as an HTML hex code, e.g. "#FF0000".
+     */
+    public String getHexColor() {
+        return String.format("#%06X", rgb);
+    }
 }
@@ -0,0 +1,16 @@
+package io.github.tkjonesy.ONNX.enums;
+
+/**
+ * The {@code PreprocessMode} enum selects how a camera frame is turned into the model's input tensor.
+ */
+public enum PreprocessMode {
+
+    /** The original OpenCV path: resize, pad, swap channels, normalize, then reorder to CHW in separate passes. */
+    LEGACY,
+
+    /** A single pass from the source frame to the CHW tensor on the calling thread. */
+    FUSED,
+
+    /** The single-pass kernel with bands of rows processed in parallel on a ForkJoin pool. */
+    FUSED_PARALLEL
+}
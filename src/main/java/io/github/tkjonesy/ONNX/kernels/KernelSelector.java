@@ -0,0 +1,25 @@
+package io.github.tkjonesy.ONNX.kernels;
+
+/**
+ * Picks the {@link Kernels} implementation once, when first used. The SIMD class is only loaded by name after the
+ * incubator module is known to be present, so JVMs without it never try to link against the Vector API.
+ */
+final class KernelSelector {
+
+    static final Kernels KERNELS = select();
+
+    private KernelSelector() {}
+
+    private static Kernels select() {
+        Kernels kernels = new ScalarKernels();
+        if (!Boolean.getBoolean("aims.disableSimd") && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                kernels = (Kernels) Class.forName("io.github.tkjonesy.ONNX.kernels.SimdKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Failed to load SIMD kernels, using scalar kernels: " + e.getMessage());
+            }
+        }
+        System.out.println("Using " + kernels.name() + " kernels for pre/postprocessing.");
+        return kernels;
+    }
+}
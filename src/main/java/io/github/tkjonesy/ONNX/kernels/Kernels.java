@@ -0,0 +1,59 @@
+package io.github.tkjonesy.ONNX.kernels;
+
+/**
+ * The {@code Kernels} interface groups the small numeric loops that dominate CPU time outside ONNX Runtime:
+ * the class-score max/argmax scan, the HWC to CHW de-interleave, and the /255 normalization.
+ * <p>
+ * {@link #get()} returns a SIMD implementation built on {@code jdk.incubator.vector} when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and a scalar implementation otherwise. Both produce bit-identical
+ * results. Setting the system property {@code aims.disableSimd=true} forces the scalar implementation.
+ */
+public interface Kernels {
+
+    /**
+     * Folds one class-score row into the running per-anchor maximum. An anchor's best class is replaced when the
+     * new score is greater than or equal to the current best, so ties resolve to the highest class id.
+     *
+     * @param row The scores of class {@code classId} for each anchor.
+     * @param n The number of anchors.
+     * @param classId The class the row belongs to.
+     * @param bestScore The running best score of each anchor, updated in place.
+     * @param bestClass The running best class of each anchor, updated in place.
+     */
+    void maxArgmax(float[] row, int n, int classId, float[] bestScore, int[] bestClass);
+
+    /**
+     * Splits interleaved 3-channel pixels into three planar arrays.
+     *
+     * @param hwc The interleaved source.
+     * @param srcOffset The index of the first channel of the first pixel in {@code hwc}.
+     * @param pixels The number of pixels to split.
+     * @param c0 Receives channel 0.
+     * @param c1 Receives channel 1.
+     * @param c2 Receives channel 2.
+     * @param dstOffset The index in each plane the first pixel is written to.
+     */
+    void deinterleave(float[] hwc, int srcOffset, int pixels, float[] c0, float[] c1, float[] c2, int dstOffset);
+
+    /**
+     * Converts integer samples to floats and multiplies them by a constant, e.g. 1/255 for normalization.
+     *
+     * @param in The integer samples.
+     * @param out Receives {@code in[i] * scale}.
+     * @param n The number of samples.
+     * @param scale The factor applied to each sample.
+     */
+    void scale(int[] in, float[] out, int n, float scale);
+
+    /**
+     * @return A short name for log messages, e.g. "SIMD (256-bit)".
+     */
+    String name();
+
+    /**
+     * @return The implementation selected for this JVM.
+     */
+    static Kernels get() {
+        return KernelSelector.KERNELS;
+    }
+}
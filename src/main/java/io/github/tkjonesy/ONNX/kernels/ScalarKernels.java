@@ -0,0 +1,38 @@
+package io.github.tkjonesy.ONNX.kernels;
+
+/**
+ * Plain Java implementation of {@link Kernels}, used when the Vector API is not available.
+ */
+public class ScalarKernels implements Kernels {
+
+    @Override
+    public void maxArgmax(float[] row, int n, int classId, float[] bestScore, int[] bestClass) {
+        for (int i = 0; i < n; i++) {
+            if (row[i] >= bestScore[i]) {
+                bestScore[i] = row[i];
+                bestClass[i] = classId;
+            }
+        }
+    }
+
+    @Override
+    public void deinterleave(float[] hwc, int srcOffset, int pixels, float[] c0, float[] c1, float[] c2, int dstOffset) {
+        for (int p = 0, i = srcOffset; p < pixels; p++, i += 3) {
+            c0[dstOffset + p] = hwc[i];
+            c1[dstOffset + p] = hwc[i + 1];
+            c2[dstOffset + p] = hwc[i + 2];
+        }
+    }
+
+    @Override
+    public void scale(int[] in, float[] out, int n, float scale) {
+        for (int i = 0; i < n; i++) {
+            out[i] = in[i] * scale;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
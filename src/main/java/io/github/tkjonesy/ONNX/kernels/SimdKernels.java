@@ -0,0 +1,82 @@
+package io.github.tkjonesy.ONNX.kernels;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Kernels} implemented with the incubating Vector API. Only loaded by {@link KernelSelector} when the
+ * {@code jdk.incubator.vector} module is present. Each loop handles whole vectors and finishes the remainder
+ * with the same scalar code as {@link ScalarKernels}, so results are identical to the scalar path.
+ */
+public class SimdKernels implements Kernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    // Gather map picking every third element, for one vector of floats
+    private static final int[] FLOAT_STRIDE3 = stride3(FLOATS.length());
+
+    private final ScalarKernels tail = new ScalarKernels();
+
+    private static int[] stride3(int lanes) {
+        int[] map = new int[lanes];
+        for (int i = 0; i < lanes; i++) map[i] = 3 * i;
+        return map;
+    }
+
+    @Override
+    public void maxArgmax(float[] row, int n, int classId, float[] bestScore, int[] bestClass) {
+        IntVector cls = IntVector.broadcast(INTS, classId);
+        int upper = FLOATS.loopBound(n);
+        int i = 0;
+        for (; i < upper; i += FLOATS.length()) {
+            FloatVector scores = FloatVector.fromArray(FLOATS, row, i);
+            FloatVector best = FloatVector.fromArray(FLOATS, bestScore, i);
+            VectorMask<Float> better = scores.compare(VectorOperators.GE, best);
+            best.blend(scores, better).intoArray(bestScore, i);
+            IntVector.fromArray(INTS, bestClass, i).blend(cls, better.cast(INTS)).intoArray(bestClass, i);
+        }
+        for (; i < n; i++) {
+            if (row[i] >= bestScore[i]) {
+                bestScore[i] = row[i];
+                bestClass[i] = classId;
+            }
+        }
+    }
+
+    @Override
+    public void deinterleave(float[] hwc, int srcOffset, int pixels, float[] c0, float[] c1, float[] c2, int dstOffset) {
+        int lanes = FLOATS.length();
+        // The gather for the last channel of a vector reaches 3 * lanes - 1 elements past its start
+        int upper = pixels - lanes;
+        int p = 0;
+        for (; p <= upper; p += lanes) {
+            int i = srcOffset + 3 * p;
+            FloatVector.fromArray(FLOATS, hwc, i, FLOAT_STRIDE3, 0).intoArray(c0, dstOffset + p);
+            FloatVector.fromArray(FLOATS, hwc, i + 1, FLOAT_STRIDE3, 0).intoArray(c1, dstOffset + p);
+            FloatVector.fromArray(FLOATS, hwc, i + 2, FLOAT_STRIDE3, 0).intoArray(c2, dstOffset + p);
+        }
+        tail.deinterleave(hwc, srcOffset + 3 * p, pixels - p, c0, c1, c2, dstOffset + p);
+    }
+
+    @Override
+    public void scale(int[] in, float[] out, int n, float scale) {
+        int upper = INTS.loopBound(n);
+        int i = 0;
+        for (; i < upper; i += INTS.length()) {
+            FloatVector samples = (FloatVector) IntVector.fromArray(INTS, in, i).convert(VectorOperators.I2F, 0);
+            samples.mul(scale).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = in[i] * scale;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "SIMD (" + FLOATS.vectorBitSize() + "-bit)";
+    }
+}
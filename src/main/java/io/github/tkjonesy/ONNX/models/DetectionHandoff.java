@@ -0,0 +1,81 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands inference results from the worker threads to the capture thread. Each result is copied into a
+ * {@link DetectionSnapshot} before it is published, so the workers can reuse their batches right away. Snapshots are
+ * reference counted and come back to a small pool once the handoff and every reader are done with them, so after
+ * warming up, publishing allocates nothing.
+ */
+final class DetectionHandoff {
+
+    /** The number of free snapshots kept for reuse; more are only needed while readers hold on to old ones. */
+    private static final int POOL_SIZE = 8;
+
+    // The snapshot of the newest frame inferred so far
+    private final AtomicReference<DetectionSnapshot> latest = new AtomicReference<>();
+
+    // Snapshots no longer referenced by anyone, ready to be refilled
+    private final ArrayBlockingQueue<DetectionSnapshot> free = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * Publishes a copy of the detections, unless a newer frame was published already: with several threads, a newer
+     * frame can finish first and an older result never replaces it.
+     *
+     * @param detections The detections of one frame; the caller may reuse the batch once this returns.
+     */
+    void publish(DetectionBatch detections) {
+        DetectionSnapshot next = free.poll();
+        if (next == null) next = new DetectionSnapshot(this);
+
+        while (true) {
+            // Held while comparing, so the current snapshot cannot be recycled and republished meanwhile
+            DetectionSnapshot current = acquire();
+            try {
+                if (current != null && detections.getFrameSequence() < current.detections().getFrameSequence()) {
+                    recycle(next);
+                    return;
+                }
+                next.fill(detections, current == null ? 1 : current.version() + 1);
+                if (latest.compareAndSet(current, next)) {
+                    // The handoff's reference moves to the new snapshot
+                    if (current != null) current.release();
+                    return;
+                }
+                // Lost to another publisher: take the handoff's reference back and compare again
+                next.release();
+                next = free.poll();
+                if (next == null) next = new DetectionSnapshot(this);
+            } finally {
+                if (current != null) current.release();
+            }
+        }
+    }
+
+    /**
+     * Takes a reference to the newest snapshot, which stays unchanged until it is {@link DetectionSnapshot#release()
+     * released}.
+     *
+     * @return The newest published snapshot, or {@code null} if nothing was published yet.
+     */
+    DetectionSnapshot acquire() {
+        while (true) {
+            DetectionSnapshot snapshot = latest.get();
+            if (snapshot == null) return null;
+            // A snapshot that was replaced may be refilled at any time, so it only counts while it is still the latest
+            if (snapshot.retain()) {
+                if (latest.get() == snapshot) return snapshot;
+                snapshot.release();
+            }
+        }
+    }
+
+    // Called when the last reference to a snapshot is released
+    void recycle(DetectionSnapshot snapshot) {
+        free.offer(snapshot);
+    }
+}
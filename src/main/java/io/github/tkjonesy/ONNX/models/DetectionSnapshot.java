@@ -0,0 +1,69 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code DetectionSnapshot} class is a frozen copy of one inference result, published by the
+ * {@link InferenceWorker} for other threads. The worker keeps writing into its own scratch batch, never into a
+ * snapshot it has handed out, so a reader always sees every detection of the same frame.
+ * <p>
+ * Snapshots are reused so publishing allocates nothing: a reader {@link InferenceWorker#acquireLatestDetections()
+ * acquires} the latest one and must {@link #release()} it when done, after which the snapshot may be refilled with a
+ * later frame. Its batch is {@link DetectionBatch#setReadOnly read-only} while it is shared.
+ */
+public final class DetectionSnapshot {
+
+    private final DetectionHandoff handoff;
+    private final DetectionBatch detections = new DetectionBatch();
+    private long version;
+
+    // One reference for the handoff while this is the latest snapshot, plus one per reader; 0 once it is free for reuse
+    private final AtomicInteger references = new AtomicInteger();
+
+    DetectionSnapshot(DetectionHandoff handoff) {
+        this.handoff = handoff;
+    }
+
+    /**
+     * @return The number of results published before this one; a newer snapshot always has a higher version.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return The detections of the frame, read-only. Only valid until the snapshot is released.
+     */
+    public DetectionBatch detections() {
+        return detections;
+    }
+
+    /**
+     * Gives back a reference taken by {@link DetectionHandoff#acquire()}. The snapshot must not be used afterwards.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            handoff.recycle(this);
+        }
+    }
+
+    // Copies a result in and holds the handoff's reference; only called on a snapshot nobody else references
+    void fill(DetectionBatch source, long version) {
+        detections.setReadOnly(false);
+        detections.copyFrom(source);
+        detections.setReadOnly(true);
+        this.version = version;
+        references.set(1);
+    }
+
+    // Takes a reference unless the snapshot was already freed for reuse
+    boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) return false;
+            if (references.compareAndSet(count, count + 1)) return true;
+        }
+    }
+}
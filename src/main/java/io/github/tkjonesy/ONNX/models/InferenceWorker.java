@@ -0,0 +1,204 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import io.github.tkjonesy.utils.MatPool.PooledMat;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * The {@code InferenceWorker} class runs inference on dedicated threads, one per session of the
+ * {@link OnnxRunner}'s session pool, so at most one inference per session is in flight and the sessions' thread
+ * budgets are never competing with extra inference threads.
+ * <p>
+ * Frames are handed over through a single-slot mailbox: submitting a frame while another is still waiting replaces
+ * the stale one, which is counted as dropped. An idle thread always takes the newest frame. Each thread infers into
+ * its own scratch batch and publishes a frozen {@link DetectionSnapshot} of the newest frame inferred so far, which the
+ * capture thread can read at any time.
+ * <p>
+ * When a reload changes the size of the session pool, {@link #setThreadCount} matches the threads to it: extra threads
+ * are started, and threads beyond the new size stop taking frames and wait until the pool grows again.
+ */
+public class InferenceWorker implements AutoCloseable {
+
+    /** The number of completed inferences between two statistics reports. */
+    private static final int REPORT_EVERY = 100;
+
+    private final OnnxRunner onnxRunner;
+    private final LongConsumer latencyListener;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile int activeThreads = 0;
+    private volatile boolean running = true;
+
+    // The pending frame, replaced by newer submissions until the worker takes it
+    private final AtomicReference<FrameRequest> mailbox = new AtomicReference<>();
+
+    // The most recent inference result
+    private final DetectionHandoff handoff = new DetectionHandoff();
+
+    /** The number of frames handed to {@link #submit}. */
+    @Getter
+    private final AtomicLong submitted = new AtomicLong();
+
+    /** The number of frames replaced in the mailbox before the worker reached them. */
+    @Getter
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** The number of frames inference has completed on. */
+    @Getter
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * A frame waiting for inference. The worker holds a reference to the image and releases it once processed or dropped.
+     */
+    private record FrameRequest(PooledMat frame, long frameSequence, long captureTimestamp) {}
+
+    /**
+     * Creates and starts one worker thread per session of the runner's pool.
+     *
+     * @param onnxRunner The runner used to run inference on each frame.
+     */
+    public InferenceWorker(OnnxRunner onnxRunner) {
+        this(onnxRunner, null);
+    }
+
+    /**
+     * Creates and starts one worker thread per session of the runner's pool.
+     *
+     * @param onnxRunner The runner used to run inference on each frame.
+     * @param latencyListener Told how many nanoseconds each inference took, on the worker thread; may be {@code null}.
+     */
+    public InferenceWorker(OnnxRunner onnxRunner, LongConsumer latencyListener) {
+        this.onnxRunner = onnxRunner;
+        this.latencyListener = latencyListener;
+        setThreadCount(onnxRunner.getSessionPool().size());
+    }
+
+    /**
+     * Sets the number of threads taking frames, e.g. after the session pool was resized. Threads are started as
+     * needed; threads beyond the count finish their current inference and then wait. Must be called from the thread
+     * that submits frames.
+     *
+     * @param count The number of inferences that may run at once, at least 1.
+     */
+    public void setThreadCount(int count) {
+        count = Math.max(1, count);
+        while (threads.size() < count) {
+            int index = threads.size();
+            Thread thread = new Thread(() -> workLoop(index), "inference-worker-" + index);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        activeThreads = count;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return The number of threads taking frames.
+     */
+    public int getThreadCount() {
+        return activeThreads;
+    }
+
+    /**
+     * Queues a frame for inference, replacing any frame that is still waiting. The worker takes over the caller's
+     * reference to {@code frame} and releases it, so callers must pass an image nobody modifies meanwhile.
+     *
+     * @param frame The frame to process.
+     * @param frameSequence The sequence number of the frame.
+     * @param captureTimestamp The {@link System#nanoTime()} at which the frame was captured.
+     */
+    public void submit(PooledMat frame, long frameSequence, long captureTimestamp) {
+        if (!running) {
+            frame.release();
+            return;
+        }
+        submitted.incrementAndGet();
+        FrameRequest stale = mailbox.getAndSet(new FrameRequest(frame, frameSequence, captureTimestamp));
+        if (stale != null) {
+            dropped.incrementAndGet();
+            stale.frame().release();
+        }
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Takes the result of the newest frame inferred so far. The caller must {@link DetectionSnapshot#release() release}
+     * it when done, so the snapshot can be reused.
+     *
+     * @return The newest result, or {@code null} if no inference has completed yet.
+     */
+    public DetectionSnapshot acquireLatestDetections() {
+        return handoff.acquire();
+    }
+
+    /**
+     * @return {@code true} if a frame is waiting in the mailbox.
+     */
+    public boolean hasPendingFrame() {
+        return mailbox.get() != null;
+    }
+
+    private void workLoop(int index) {
+        DetectionBatch scratch = new DetectionBatch();
+        while (running) {
+            if (index >= activeThreads) {
+                LockSupport.park(this);
+                continue;
+            }
+            FrameRequest request = mailbox.getAndSet(null);
+            if (request == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                long start = System.nanoTime();
+                onnxRunner.runInference(request.frame().getMat(), scratch, request.frameSequence(), request.captureTimestamp());
+                handoff.publish(scratch);
+                if (latencyListener != null) latencyListener.accept(System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                System.err.println("Inference worker failed on frame " + request.frameSequence() + ": " + e.getMessage());
+            } finally {
+                request.frame().release();
+            }
+
+            if (completed.incrementAndGet() % REPORT_EVERY == 0) {
+                System.out.println("🧠 Inference worker: " + submitted.get() + " submitted, "
+                        + completed.get() + " completed, " + dropped.get() + " dropped");
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads after their current inferences and releases any waiting frame.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        FrameRequest pending = mailbox.getAndSet(null);
+        if (pending != null) {
+            pending.frame().release();
+        }
+    }
+}
@@ -3,16 +3,19 @@ package io.github.tkjonesy.ONNX.models;
 import io.github.tkjonesy.ONNX.enums.LogEnum;
 import lombok.Getter;
 
-import java.awt.Component;
-import java.awt.Graphics;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * The {@code Log} class represents a log entry with a log type, message, and timestamp.
- * It provides methods for generating logs with a timestamp and displaying them in a UI component.
+ * It provides methods for generating logs with a timestamp.
  */
 @Getter
 public class Log {
 
+    /** The format of every log time, live or from a reprocessed recording, so log files can be compared line by line. */
+    public static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
     /** The type of the log, defining its level and color (e.g., ERROR, INFO, SUCCESS). */
     private final LogEnum logType;
 
@@ -34,12 +37,25 @@ public class Log {
         this.timeStamp = getCurrentTimestamp();
     }
 
+    /**
+     * Creates a {@code Log} with an explicit timestamp, e.g. a position in a recording that is being reprocessed.
+     *
+     * @param logType The type of the log, specifying the log level and color.
+     * @param message The message for the log entry.
+     * @param timeStamp The time to show, without brackets.
+     */
+    public Log(LogEnum logType, String message, String timeStamp) {
+        this.logType = logType;
+        this.message = message;
+        this.timeStamp = "[" + timeStamp + "]";
+    }
+
     /**
      * Generates the current timestamp in a formatted string.
      *
      * @return The formatted current timestamp.
      */
     private String getCurrentTimestamp(){
-        return "[" + java.time.LocalTime.now() + "]";
+        return "[" + LocalTime.now().format(TIME_FORMAT) + "]";
     }
 }
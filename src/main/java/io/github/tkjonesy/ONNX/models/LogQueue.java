@@ -2,13 +2,14 @@ package io.github.tkjonesy.ONNX.models;
 
 import io.github.tkjonesy.ONNX.enums.LogEnum;
 
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The {@code LogQueue} class represents a queue of logs that can be added to and
  * retrieved from. It supports adding logs with different log levels (error, info,
- * success) and retrieving logs in a first-in, first-out (FIFO) order.
+ * success) and retrieving logs in a first-in, first-out (FIFO) order. Logs are added by the pipeline threads and
+ * taken by the log handler's thread, so the queue is thread-safe.
  */
 public class LogQueue {
 
@@ -19,7 +20,7 @@ public class LogQueue {
      * Initializes a new {@code LogQueue} with an empty queue.
      */
     public LogQueue() {
-        this.logs = new LinkedList<>();
+        this.logs = new ConcurrentLinkedQueue<>();
     }
 
     /**
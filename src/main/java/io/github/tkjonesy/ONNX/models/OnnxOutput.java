@@ -1,6 +1,7 @@
 package io.github.tkjonesy.ONNX.models;
 
 import io.github.tkjonesy.ONNX.Detection;
+import io.github.tkjonesy.ONNX.DetectionBatch;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -8,14 +9,21 @@ import java.util.List;
 
 /**
  * The {@code OnnxOutput} class represents the output of the ONNX model,
- * containing a list of detected objects.
+ * containing the batch of detected objects.
  */
 @Getter
 @AllArgsConstructor
 public class OnnxOutput {
 
-    /** The list of detections produced by the ONNX model. Each detection represents
-     * an identified object along with its associated data (e.g., label, confidence).
+    /** The detections produced by the ONNX model. Each detection represents
+     * an identified object along with its associated data (e.g., class id, box, confidence).
      */
-    private List<Detection> detectionList;
-}
\ No newline at end of file
+    private final DetectionBatch detections;
+
+    /**
+     * @return The detections as a new list of {@link Detection} records.
+     */
+    public List<Detection> getDetectionList() {
+        return detections.toDetections();
+    }
+}
@@ -2,32 +2,38 @@ package io.github.tkjonesy.ONNX.models;
 
 import ai.onnxruntime.OrtException;
 import io.github.tkjonesy.ONNX.Detection;
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import io.github.tkjonesy.ONNX.SessionPool;
 import io.github.tkjonesy.ONNX.Yolo;
-import io.github.tkjonesy.ONNX.YoloV8;
 import io.github.tkjonesy.utils.settings.ProgramSettings;
 import lombok.*;
 
 import org.bytedeco.opencv.opencv_core.Mat;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@code OnnxRunner} class provides a wrapper for running YOLO-based inference
  * using ONNX models. It manages model inference sessions, logging, and tracking of
  * detected classes.
+ * <p>
+ * The tracking state is kept by a {@link ToolCounter}; other threads read it through the {@link TrackingSnapshot}
+ * returned by {@link #getTrackingSnapshot()}.
  */
 public class OnnxRunner {
 
-    private int logCounter = 1;
-    @Getter
-    private int peakObjectsSeen = 0; // Tracks the highest number of objects seen at once
-
     /**
-     * The YOLO inference session used to run the YOLO model.
+     * The YOLO inference sessions used to run the YOLO model, one per frame in flight.
      */
-    @Setter
-    private Yolo inferenceSession;
+    @Getter
+    private volatile SessionPool sessionPool;
 
     /**
      * A queue of logs to be displayed in the UI.
@@ -35,63 +41,144 @@ public class OnnxRunner {
     @Getter
     private final LogQueue logQueue;
 
-    /**
-     * A hashmap for tracking the currently active classes and their counts.
-     * Active means that these detections have passed through the buffer
-     */
-    @Getter
-    private final HashMap<String, Integer> activeDetections;
-    /**
-     * A hashmap to act as a buffer to filter out detection flickers
-     */
-    @Getter
-    private final HashMap<DetectionWithCount, Integer> detectionBuffer;
+    // The debounced tool counts and their logs
+    private final ToolCounter toolCounter;
+
+    // Inference ticks of the current session, and how many of them the motion gate answered with the last detections
+    private final AtomicLong gatedInferences = new AtomicLong();
+    private final AtomicLong skippedInferences = new AtomicLong();
 
-    // AAR - related maps
     /**
-     * A hashmap to track the start count of each class detected.
+     * Inference results are written into a small ring of reusable outputs, so a result handed out by
+     * {@link #runInference} stays valid until {@code OUTPUT_RING_SIZE - 1} further inferences have started.
+     * The ring grows by one output for every additional session, so concurrent inferences never share an output.
      */
-    @Getter
-    private HashMap<String, Integer> startCountPerClass;
-
-    @Getter
-    private final HashMap<String, Integer> totalInstancesAdded = new HashMap<>();
-
-    @Setter
-    private int bufferThreshold = 3;
-
-    private boolean sessionActive = false;
+    private static final int OUTPUT_RING_SIZE = 4;
+    private final Object outputLock = new Object();
+    private OnnxOutput[] outputRing = new OnnxOutput[0];
+    private int outputRingIndex = 0;
+    private long frameSequence = 0;
+
+    /** The number of inferences each new session runs on a blank frame before it is used. */
+    private static final int WARM_UP_RUNS = 3;
+
+    // Loads replacement sessions off the caller's thread, one reload at a time
+    private final ExecutorService sessionLoader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public OnnxRunner(LogQueue logQueue) {
 
         this.logQueue = logQueue;
-        this.activeDetections = new HashMap<>();
-        this.detectionBuffer = new HashMap<>();
-
-        this.startCountPerClass = new HashMap<>();
+        this.toolCounter = new ToolCounter(logQueue);
 
         try {
-            ProgramSettings settings = ProgramSettings.getCurrentSettings();
-            this.inferenceSession = new YoloV8(settings.getModelPath(), settings.getLabelPath());
+            this.sessionPool = SessionPool.fromSettings(ProgramSettings.getCurrentSettings());
         } catch (OrtException | IOException exception) {
             System.err.println("Error initializing YOLO model: " + exception.getMessage());
             System.exit(1);
         }
+        growOutputRing(sessionPool.size());
         printHeader();
     }
 
+    /**
+     * Rebuilds the inference sessions from the current settings in the background, e.g. after the model, the pool
+     * size or the threading options changed. The new sessions are loaded and warmed up while the old ones keep
+     * serving frames, then swapped in between two inferences. The old sessions are closed once their running
+     * inferences are done. If loading fails, the old sessions stay in use.
+     *
+     * @return A future completed once the new sessions are in use, or completed exceptionally if loading failed.
+     */
+    public CompletableFuture<Void> reloadSessionsAsync() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                reloadSessions();
+            } catch (OrtException | IOException | RuntimeException e) {
+                logQueue.addRedLog("Failed to load model " + ProgramSettings.getCurrentSettings().getModelPath() + ": " + e.getMessage());
+                System.err.println("❌ Failed to load the new model, keeping the current one: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        }, sessionLoader);
+    }
+
+    private void reloadSessions() throws OrtException, IOException {
+        long start = System.nanoTime();
+        ProgramSettings settings = ProgramSettings.getCurrentSettings();
+        SessionPool newPool = SessionPool.fromSettings(settings);
+        try {
+            newPool.warmUp(WARM_UP_RUNS);
+        } catch (OrtException | RuntimeException e) {
+            newPool.close();
+            throw e;
+        }
+        growOutputRing(newPool.size());
+
+        // Inferences started from now on use the new sessions
+        SessionPool oldPool = sessionPool;
+        sessionPool = newPool;
+        System.out.printf("🔁 Switched to %s after %.0f ms in the background%n", settings.getModelPath(), (System.nanoTime() - start) / 1e6);
+        logQueue.addGreenLog("---Model changed to " + new File(settings.getModelPath()).getName() + ".---");
+
+        oldPool.close();
+    }
+
+    /**
+     * @return The first session of the pool, for the model's labels and batch size.
+     */
+    public Yolo getInferenceSession() {
+        return sessionPool.getPrimary();
+    }
+
+    // Outputs are only ever added, so results handed out before stay valid
+    private void growOutputRing(int sessions) {
+        synchronized (outputLock) {
+            int size = OUTPUT_RING_SIZE + sessions - 1;
+            if (outputRing.length >= size) return;
+            OnnxOutput[] ring = Arrays.copyOf(outputRing, size);
+            for (int i = outputRing.length; i < size; i++) {
+                ring[i] = new OnnxOutput(new DetectionBatch());
+            }
+            outputRing = ring;
+        }
+    }
+
     public void startSession(){
        System.out.println("🔄 Starting new tracking session.");
+       gatedInferences.set(0);
+       skippedInferences.set(0);
+    }
+
+    /**
+     * Counts an inference tick checked by the motion gate, for the session's report.
+     *
+     * @param skipped Whether inference was skipped because the scene had not changed.
+     */
+    public void recordMotionGate(boolean skipped) {
+        gatedInferences.incrementAndGet();
+        if (skipped) skippedInferences.incrementAndGet();
+    }
+
+    /**
+     * @return The number of inference ticks of this session checked by the motion gate.
+     */
+    public long getGatedInferences() {
+        return gatedInferences.get();
+    }
+
+    /**
+     * @return The number of inference ticks of this session skipped by the motion gate.
+     */
+    public long getSkippedInferences() {
+        return skippedInferences.get();
     }
 
     public void endSession() {
-        sessionActive = false;
-        startCountPerClass.clear();
-        activeDetections.clear();
-        detectionBuffer.clear();
-        peakObjectsSeen = 0;      // Resets peak object count
-        totalInstancesAdded.clear();
-        logCounter = 1;
+        toolCounter.reset();
+        gatedInferences.set(0);
+        skippedInferences.set(0);
         System.out.println("🔄 Tracking data reset for new session.");
     }
 
@@ -99,32 +186,115 @@ public class OnnxRunner {
      * Runs inference on the given frame and returns the detected objects.
      *
      * @param frame The {@link Mat} object representing the image frame to be processed.
-     * @return An {@link OnnxOutput} object containing the list of detections.
+     * @return An {@link OnnxOutput} object containing the batch of detections.
      */
     public OnnxOutput runInference(Mat frame) {
-        List<Detection> detectionList = new ArrayList<>();
+        long sequence;
+        synchronized (outputLock) {
+            sequence = frameSequence++;
+        }
+        return runInference(frame, sequence, System.nanoTime());
+    }
+
+    /**
+     * Runs inference on the given frame and returns the detected objects. Can be called from as many threads as
+     * the pool has sessions; further callers wait for a session to be released.
+     *
+     * @param frame The {@link Mat} object representing the image frame to be processed.
+     * @param frameSequence The sequence number of the frame.
+     * @param captureTimestamp The {@link System#nanoTime()} at which the frame was captured.
+     * @return An {@link OnnxOutput} object containing the batch of detections. The output is reused by later
+     * calls, see {@link #OUTPUT_RING_SIZE}.
+     */
+    public OnnxOutput runInference(Mat frame, long frameSequence, long captureTimestamp) {
+        OnnxOutput output;
+        synchronized (outputLock) {
+            output = outputRing[outputRingIndex];
+            outputRingIndex = (outputRingIndex + 1) % outputRing.length;
+        }
+        runInference(frame, output.getDetections(), frameSequence, captureTimestamp);
+        return output;
+    }
 
+    /**
+     * Runs inference on the given frame and writes the detected objects into the caller's batch, for callers that
+     * keep their own scratch batch instead of sharing the output ring. Can be called from as many threads as the pool
+     * has sessions, each with its own batch.
+     *
+     * @param frame The {@link Mat} object representing the image frame to be processed.
+     * @param batch The batch to fill; cleared first, and left empty if inference fails.
+     * @param frameSequence The sequence number of the frame.
+     * @param captureTimestamp The {@link System#nanoTime()} at which the frame was captured.
+     */
+    public void runInference(Mat frame, DetectionBatch batch, long frameSequence, long captureTimestamp) {
         try {
-            detectionList = inferenceSession.run(frame);
+            runOnPooledSession(frame, batch);
 
         } catch (OrtException ortException) {
-
+            batch.clear();
             logQueue.addRedLog("Error running inference: " + ortException.getMessage());
             System.err.println("Error running inference: " + ortException.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.clear();
+        }
+        batch.setFrameSequence(frameSequence);
+        batch.setCaptureTimestamp(captureTimestamp);
+    }
+
+    // Borrows a session for the inference; a pool closed by a reload meanwhile is replaced by the current one, but a
+    // closed pool that was not replaced has nothing left to run on
+    private void runOnPooledSession(Mat frame, DetectionBatch batch) throws OrtException, InterruptedException {
+        while (true) {
+            SessionPool pool = sessionPool;
+            Yolo session = pool.acquire();
+            if (session == null) {
+                if (sessionPool == pool) throw new IllegalStateException("The session pool was closed");
+                continue;
+            }
+            try {
+                session.run(frame, batch);
+                return;
+            } finally {
+                pool.release(session);
+            }
         }
+    }
 
-        return new OnnxOutput(detectionList);
+    /**
+     * @return The tracking state as of the last processed frame that changed it. Safe to call from any thread; use
+     * one snapshot for values that must agree with each other.
+     */
+    public TrackingSnapshot getTrackingSnapshot() {
+        return toolCounter.getSnapshot();
     }
 
-    private HashMap<String, Integer> detectionsListToMap(List<Detection> detections) {
+    /**
+     * @return The highest number of objects active at once during the session.
+     */
+    public int getPeakObjectsSeen() {
+        return getTrackingSnapshot().peakObjectsSeen();
+    }
 
-        HashMap<String, Integer> currentDetections = new HashMap<>();
-        for (Detection detection : detections) {
-            int currentCount = currentDetections.getOrDefault(detection.label(), 0);
-            currentDetections.put(detection.label(), ++currentCount);
-        }
+    /**
+     * @return The active count of each label, i.e. the counts that have passed through the buffer.
+     */
+    public HashMap<String, Integer> getActiveDetections() {
+        return new HashMap<>(getTrackingSnapshot().activeDetections());
+    }
 
-        return currentDetections;
+    /**
+     * @return The active count of each label when the session's initial tool set was captured.
+     */
+    public HashMap<String, Integer> getStartCountPerClass() {
+        return new HashMap<>(getTrackingSnapshot().startCountPerClass());
+    }
+
+    /**
+     * @return The number of instances of each label added during the session.
+     */
+    public HashMap<String, Integer> getTotalInstancesAdded() {
+        return new HashMap<>(getTrackingSnapshot().totalInstancesAdded());
     }
 
 
@@ -136,14 +306,6 @@ public class OnnxRunner {
         System.out.println("=".repeat(header.length()));  // Underline the header with equals signs
     }
 
-    // Utility method to format log messages
-    private String formatLogMessage(int logIndex, String label, String action) {
-        return String.format(
-                "Log #%d    Object: %-15s    Action: %-25s",
-                logIndex, label, action
-        );
-    }
-
     /**
      * Processes the detected classes, logging any changes in classes, such as additions,
      * removals, or exits from view.
@@ -151,139 +313,23 @@ public class OnnxRunner {
      * @param detections A list of {@link Detection} objects representing the detected items.
      */
     public void processDetections(List<Detection> detections) {
-        final HashMap<String, Integer> currentDetections = detectionsListToMap(detections);
-
-        //  Update Peak Objects Seen at Once
-        int currentObjectsSeen = activeDetections.values().stream().mapToInt(Integer::intValue).sum(); // Count total objects seen
-        if (currentObjectsSeen > peakObjectsSeen) {
-            peakObjectsSeen = currentObjectsSeen; // Update if higher count found
-        }
-
-        // If the session is not active and the current detections are not empty, capture the initial tool set
-        if (!sessionActive && !activeDetections.isEmpty()) {
-            sessionActive = true;
-            startCountPerClass = new HashMap<>();
-            startCountPerClass.putAll(activeDetections);
-            System.out.println("✅ Initial tools captured: " + startCountPerClass);
-        }
-
-        // <String, Integer> activeDetections
-        // key = label
-        // value = count
-        // For labels that are in activeDetections but not in the current frame, add the label with count 0 to currentDetections
-        for (var detection : activeDetections.entrySet()) {
-            // If the label is in the current frame, skip
-            if (currentDetections.containsKey(detection.getKey())) {
-                continue;
-            }
-
-            // If the label is not in the current frame, add its removal to the buffer
-            currentDetections.put(detection.getKey(), 0);
-        }
-
-        /*
-         * <String, Integer> currentDetections
-         * key = label
-         * value = count
-         * Add the labels in currentDetections to the detectionBuffer
-         *     If the label is already in the buffer, increment its count
-         *     If the label is not in the buffer, add it with count 1
-         *     If the buffer value is greater than the buffer threshold, remove the label from the buffer and add it to activeDetections
-         */
-        for (var detection : currentDetections.entrySet()) {
-
-            // Create a DetectionWithCount object to use as a key for the detectionBuffer. example: "person3"
-            DetectionWithCount detectionWithCount = new DetectionWithCount(detection.getKey(), detection.getValue());
-
-            // currentBufferValue is the number of consecutive frames the detection has been in the buffer
-            int currentBufferValue = detectionBuffer.getOrDefault(detectionWithCount, 0);
-
-            // Increment the buffer value by 1. If the value is negative, default it to 0
-            currentBufferValue = Math.max(currentBufferValue, 0) + 1;
-
-            // If the buffer value is greater than or equal to the buffer threshold
-            if (currentBufferValue >= bufferThreshold) {
-
-                // Update the activeDetections
-                handleUpdate(detectionWithCount);
-
-                // Remove the detection from the buffer
-                detectionBuffer.remove(detectionWithCount);
-            } else {
-
-                // Update the bufferValue for the detection
-                detectionBuffer.put(detectionWithCount, currentBufferValue);
-            }
-        }
-
-        // Since you can't remove items from a hashmap while iterating through it, we need to store the items to be removed in a queue
-        Queue<DetectionWithCount> queueForBufferRemoval = new LinkedList<>();
-
-        // <DetectionWithCount, Integer> detectionBuffer
-        // key = label + count
-        // value = number of consecutive frames the detection has been in the buffer
-        // For labels that are in the buffer but not in the current frame, decrement. Aka decrement detection outliers/flickers
-        for (var detection : detectionBuffer.entrySet()) {
-
-            // Grab the count of the detection in the buffer and the current count of the detection
-            int detectionCountInBuffer = detection.getKey().count();
-            int detectionCountInCurrentDetections = currentDetections.getOrDefault(detection.getKey().label(), 0);
-
-            // If the label is in the current frame and the count is the same, skip
-            if (currentDetections.containsKey(detection.getKey().label()) && detectionCountInBuffer == detectionCountInCurrentDetections) {
-                continue;
-            }
-
-            queueForBufferRemoval.add(detection.getKey());
-        }
-
-        // Remove the detections from the buffer
-        while (!queueForBufferRemoval.isEmpty()) {
-            DetectionWithCount detection = queueForBufferRemoval.poll();
-            detectionBuffer.remove(detection);
-        }
+        toolCounter.processDetections(detections);
     }
 
-    private void handleUpdate(DetectionWithCount detectionWithCount) {
-        int originalValue = activeDetections.getOrDefault(detectionWithCount.label(), 0);
-        int newValue = detectionWithCount.count();
-        int difference = newValue - originalValue;
-
-        //  Green log - New object detected or class count increased
-        if (difference > 0) {
-            if(originalValue == 0){
-                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "New Object Detected: " + newValue);
-                logQueue.addGreenLog(logMessage);
-                System.out.println("🟢 DEBUG: Added to Log - " + logMessage);
-            }else{
-                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "Class count increased: " + newValue);
-                logQueue.addGreenLog(logMessage);
-                System.out.println("🟢 DEBUG: Count Increased - " + logMessage);
-            }
-
-            int totalAdded = totalInstancesAdded.getOrDefault(detectionWithCount.label(), 0);
-            totalInstancesAdded.put(detectionWithCount.label(), totalAdded + difference);
-
-        //  Red log - Object removed or class count decreased
-        } else if (difference < 0) {
-            if(newValue == 0) {
-                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "Object Removed");
-                logQueue.addRedLog(logMessage);
-                System.out.println("🔴 DEBUG: Removed from Log - " + logMessage);
-            } else{
-                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "Class count decreased: " + newValue);
-                logQueue.addRedLog(logMessage);
-                System.out.println("🔴 DEBUG: Count Decreased - " + logMessage);
-            }
-        }
+    /**
+     * Processes the detected classes, logging any changes in classes, such as additions,
+     * removals, or exits from view.
+     *
+     * @param detections The {@link DetectionBatch} holding the detected items.
+     */
+    public void processDetections(DetectionBatch detections) {
+        toolCounter.processDetections(detections);
+    }
 
-        // Update active detections
-        if(difference != 0 && newValue != 0){
-            activeDetections.put(detectionWithCount.label(), newValue);
-        }else if(newValue == 0){
-            activeDetections.remove(detectionWithCount.label());
-        }
+    /**
+     * @param bufferThreshold The number of consecutive frames a changed count must be seen in to become active.
+     */
+    public void setBufferThreshold(int bufferThreshold) {
+        toolCounter.setBufferThreshold(bufferThreshold);
     }
 }
-
-record DetectionWithCount(String label, int count) {}
\ No newline at end of file
@@ -0,0 +1,291 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.Detection;
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import lombok.Setter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@code ToolCounter} class is the tracking state of an {@link OnnxRunner}: it turns the detections of successive
+ * inferences into debounced tool counts, logs every change, and keeps the counts the After Action Report is made of.
+ * <p>
+ * The state is kept in {@code int} arrays indexed by label slot, one slot per distinct label, so processing a frame
+ * is a pass over the classes that allocates nothing. Slots are assigned in class id order when a model's label table
+ * is first seen, and stay with their label if the model changes. The changes of one frame are logged and numbered in
+ * slot order, so the same detections always give the same log.
+ * <p>
+ * The arrays belong to the thread processing detections; other threads read the state through the
+ * {@link TrackingSnapshot} published after every frame that changed it, so they never lock or see a half-processed
+ * frame. Processing a frame and resetting the counts exclude each other.
+ */
+final class ToolCounter {
+
+    private final LogQueue logQueue;
+
+    private int logCounter = 1;
+    private int peakObjectsSeen = 0; // Tracks the highest number of objects seen at once
+
+    // The label of each slot, and the slot of each label
+    private String[] slotLabels = new String[0];
+    private int slotCount = 0;
+    private final HashMap<String, Integer> slotOfLabel = new HashMap<>();
+
+    // The slot of each class id of the last label table seen, or -1 if not assigned yet
+    private List<String> slotTable = null;
+    private int[] slotOfClass = new int[0];
+
+    // Detections per slot in the frame being processed
+    private int[] frameCounts = new int[0];
+
+    /*
+     * The active count of each slot, i.e. the count that has passed through the buffer, and their total
+     */
+    private int[] activeCounts = new int[0];
+    private int activeTotal = 0;
+
+    /*
+     * The flicker buffer: the count a slot is changing to and for how many consecutive frames it has been seen,
+     * or a streak of 0 if the slot is not changing
+     */
+    private int[] bufferCounts = new int[0];
+    private int[] bufferStreaks = new int[0];
+
+    // AAR - related counts: the active counts when the session started and the instances added during it
+    private int[] startCounts = new int[0];
+    private int[] addedCounts = new int[0];
+
+    @Setter
+    private int bufferThreshold = 3;
+
+    // Guards the tracking state against a session ending on another thread while a frame is processed
+    private final Object trackingLock = new Object();
+
+    // The tracking state as of the last frame that changed it, for readers on other threads
+    private final AtomicReference<TrackingSnapshot> trackingSnapshot = new AtomicReference<>(TrackingSnapshot.EMPTY);
+    private boolean trackingChanged = false;
+
+    private boolean sessionActive = false;
+
+    ToolCounter(LogQueue logQueue) {
+        this.logQueue = logQueue;
+    }
+
+    /**
+     * @return The tracking state as of the last processed frame that changed it. Safe to call from any thread.
+     */
+    TrackingSnapshot getSnapshot() {
+        return trackingSnapshot.get();
+    }
+
+    /**
+     * Clears the counts for a new session and publishes the empty state.
+     */
+    void reset() {
+        synchronized (trackingLock) {
+            sessionActive = false;
+            Arrays.fill(startCounts, 0);
+            Arrays.fill(activeCounts, 0);
+            activeTotal = 0;
+            Arrays.fill(bufferStreaks, 0);
+            peakObjectsSeen = 0;      // Resets peak object count
+            Arrays.fill(addedCounts, 0);
+            logCounter = 1;
+            publishSnapshot();
+        }
+    }
+
+    // Publishes the current tracking state to other threads; called with the tracking lock held
+    private void publishSnapshot() {
+        trackingSnapshot.set(new TrackingSnapshot(trackingSnapshot.get().version() + 1, peakObjectsSeen,
+                countsByLabel(activeCounts), countsByLabel(startCounts), countsByLabel(addedCounts)));
+        trackingChanged = false;
+    }
+
+    // The labels with a non-zero count, for reports
+    private Map<String, Integer> countsByLabel(int[] counts) {
+        HashMap<String, Integer> byLabel = new HashMap<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (counts[slot] != 0) byLabel.put(slotLabels[slot], counts[slot]);
+        }
+        return Collections.unmodifiableMap(byLabel);
+    }
+
+    // Assigns slots to the labels of a label table, in class id order
+    private void mapLabels(List<String> labels) {
+        slotTable = labels;
+        slotOfClass = new int[labels.size()];
+        for (int classId = 0; classId < labels.size(); classId++) {
+            slotOfClass[classId] = slotOf(labels.get(classId));
+        }
+    }
+
+    // The slot of a class id; ids beyond the label table get the slot of their "class N" label
+    private int slotOf(int classId, DetectionBatch detections) {
+        if (classId < 0) return slotOf(detections.labelOf(classId));
+        if (classId >= slotOfClass.length) {
+            int known = slotOfClass.length;
+            slotOfClass = Arrays.copyOf(slotOfClass, classId + 1);
+            Arrays.fill(slotOfClass, known, classId + 1, -1);
+        }
+        if (slotOfClass[classId] < 0) {
+            slotOfClass[classId] = slotOf(detections.labelOf(classId));
+        }
+        return slotOfClass[classId];
+    }
+
+    // The slot of a label, adding one if the label is new
+    private int slotOf(String label) {
+        Integer slot = slotOfLabel.get(label);
+        if (slot != null) return slot;
+
+        if (slotCount == slotLabels.length) {
+            int capacity = Math.max(16, slotLabels.length * 2);
+            slotLabels = Arrays.copyOf(slotLabels, capacity);
+            frameCounts = Arrays.copyOf(frameCounts, capacity);
+            activeCounts = Arrays.copyOf(activeCounts, capacity);
+            bufferCounts = Arrays.copyOf(bufferCounts, capacity);
+            bufferStreaks = Arrays.copyOf(bufferStreaks, capacity);
+            startCounts = Arrays.copyOf(startCounts, capacity);
+            addedCounts = Arrays.copyOf(addedCounts, capacity);
+        }
+        slotLabels[slotCount] = label;
+        slotOfLabel.put(label, slotCount);
+        return slotCount++;
+    }
+
+
+    // Utility method to format log messages
+    private String formatLogMessage(int logIndex, String label, String action) {
+        return String.format(
+                "Log #%d    Object: %-15s    Action: %-25s",
+                logIndex, label, action
+        );
+    }
+
+    /**
+     * Processes the detected classes, logging any changes in classes, such as additions,
+     * removals, or exits from view.
+     *
+     * @param detections A list of {@link Detection} objects representing the detected items.
+     */
+    void processDetections(List<Detection> detections) {
+        synchronized (trackingLock) {
+            for (Detection detection : detections) {
+                int slot = slotOf(detection.label());
+                frameCounts[slot]++;
+            }
+            processFrameCounts();
+        }
+    }
+
+    /**
+     * Processes the detected classes, logging any changes in classes, such as additions,
+     * removals, or exits from view.
+     *
+     * @param detections The {@link DetectionBatch} holding the detected items.
+     */
+    void processDetections(DetectionBatch detections) {
+        synchronized (trackingLock) {
+            if (detections.getLabels() != slotTable) {
+                mapLabels(detections.getLabels());
+            }
+            int[] classIds = detections.getClassIds();
+            for (int i = 0; i < detections.getCount(); i++) {
+                // A new slot may grow the arrays, so look it up before indexing
+                int slot = slotOf(classIds[i], detections);
+                frameCounts[slot]++;
+            }
+            processFrameCounts();
+        }
+    }
+
+    // Runs the debounce state machine of every slot on the counts of one frame, then clears them and publishes the
+    // tracking state if it changed
+    private void processFrameCounts() {
+
+        //  Update Peak Objects Seen at Once
+        if (activeTotal > peakObjectsSeen) {
+            peakObjectsSeen = activeTotal; // Update if higher count found
+            trackingChanged = true;
+        }
+
+        // If the session is not active and there are active detections, capture the initial tool set
+        if (!sessionActive && activeTotal > 0) {
+            sessionActive = true;
+            System.arraycopy(activeCounts, 0, startCounts, 0, slotCount);
+            System.out.println("✅ Initial tools captured: " + countsByLabel(startCounts));
+            trackingChanged = true;
+        }
+
+        /*
+         * For every label that is detected in this frame or currently active (a label no longer detected counts 0):
+         *     If the buffer holds the same count, extend its streak; otherwise restart the buffer with this count
+         *     Once the streak reaches the buffer threshold, make the count active and clear the buffer
+         * Labels neither detected nor active have their buffer cleared, which filters out detection flickers
+         */
+        for (int slot = 0; slot < slotCount; slot++) {
+            int count = frameCounts[slot];
+            frameCounts[slot] = 0;
+            if (count == 0 && activeCounts[slot] == 0) {
+                bufferStreaks[slot] = 0;
+                continue;
+            }
+
+            int streak = bufferStreaks[slot] > 0 && bufferCounts[slot] == count ? bufferStreaks[slot] + 1 : 1;
+            if (streak >= bufferThreshold) {
+                handleUpdate(slot, count);
+                bufferStreaks[slot] = 0;
+            } else {
+                bufferCounts[slot] = count;
+                bufferStreaks[slot] = streak;
+            }
+        }
+        if (trackingChanged) {
+            publishSnapshot();
+        }
+    }
+
+    private void handleUpdate(int slot, int newValue) {
+        String label = slotLabels[slot];
+        int originalValue = activeCounts[slot];
+        int difference = newValue - originalValue;
+
+        //  Green log - New object detected or class count increased
+        if (difference > 0) {
+            if(originalValue == 0){
+                String logMessage = formatLogMessage(logCounter++, label, "New Object Detected: " + newValue);
+                logQueue.addGreenLog(logMessage);
+                System.out.println("🟢 DEBUG: Added to Log - " + logMessage);
+            }else{
+                String logMessage = formatLogMessage(logCounter++, label, "Class count increased: " + newValue);
+                logQueue.addGreenLog(logMessage);
+                System.out.println("🟢 DEBUG: Count Increased - " + logMessage);
+            }
+
+            addedCounts[slot] += difference;
+
+        //  Red log - Object removed or class count decreased
+        } else if (difference < 0) {
+            if(newValue == 0) {
+                String logMessage = formatLogMessage(logCounter++, label, "Object Removed");
+                logQueue.addRedLog(logMessage);
+                System.out.println("🔴 DEBUG: Removed from Log - " + logMessage);
+            } else{
+                String logMessage = formatLogMessage(logCounter++, label, "Class count decreased: " + newValue);
+                logQueue.addRedLog(logMessage);
+                System.out.println("🔴 DEBUG: Count Decreased - " + logMessage);
+            }
+        }
+
+        // Update active detections
+        activeCounts[slot] = newValue;
+        activeTotal += difference;
+        trackingChanged |= difference != 0;
+    }
+}
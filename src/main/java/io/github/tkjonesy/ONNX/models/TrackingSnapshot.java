@@ -0,0 +1,21 @@
+package io.github.tkjonesy.ONNX.models;
+
+import java.util.Map;
+
+/**
+ * The {@code TrackingSnapshot} record is an immutable copy of the {@link OnnxRunner}'s tracking state, published
+ * after every frame that changed it. Any thread can read the latest snapshot without locking and gets counts that
+ * were all taken after the same frame, e.g. for the After Action Report while the capture thread keeps counting.
+ *
+ * @param version The number of changes published before this one; a newer snapshot always has a higher version.
+ * @param peakObjectsSeen The highest number of objects active at once during the session.
+ * @param activeDetections The active count of each label, i.e. the counts that have passed through the buffer.
+ * @param startCountPerClass The active count of each label when the session's initial tool set was captured.
+ * @param totalInstancesAdded The number of instances of each label added during the session.
+ */
+public record TrackingSnapshot(long version, int peakObjectsSeen, Map<String, Integer> activeDetections,
+                               Map<String, Integer> startCountPerClass, Map<String, Integer> totalInstancesAdded) {
+
+    /** The state before any frame was processed. */
+    static final TrackingSnapshot EMPTY = new TrackingSnapshot(0, 0, Map.of(), Map.of(), Map.of());
+}
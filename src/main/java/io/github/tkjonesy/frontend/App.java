@@ -16,13 +16,16 @@ import io.github.tkjonesy.frontend.models.*;
 import io.github.tkjonesy.frontend.models.cameraGrabber.CameraGrabber;
 import io.github.tkjonesy.frontend.models.cameraGrabber.MacOSCameraGrabber;
 import io.github.tkjonesy.frontend.models.cameraGrabber.WindowsCameraGrabber;
+import io.github.tkjonesy.frontend.models.frameSource.CameraFrameSource;
+import io.github.tkjonesy.frontend.models.frameSource.FrameSource;
+import io.github.tkjonesy.frontend.models.frameSource.FrameSources;
+import io.github.tkjonesy.frontend.models.pipeline.FrameSkipScheduler;
 import io.github.tkjonesy.frontend.settingsGUI.SettingsWindow;
 import io.github.tkjonesy.utils.settings.ProgramSettings;
 import io.github.tkjonesy.utils.settings.SettingsLoader;
 import lombok.Getter;
 import lombok.Setter;
 
-import org.bytedeco.opencv.opencv_videoio.VideoCapture;
 import org.bytedeco.opencv.global.opencv_core;
 import org.bytedeco.javacpp.Loader;
 
@@ -59,12 +62,13 @@ public class App extends JFrame {
 
     @Getter
     @Setter
-    private static VideoCapture camera;
+    private static FrameSource frameSource;
     private final Thread cameraFetcherThread;
     @Getter
-    private JLabel cameraFeed;
+    private VideoPanel cameraFeed;
     private JToggleButton startSessionButton;
     private JButton settingsButton;
+    private JLabel inferenceStatusLabel;
     @Getter
     @Setter
     private JTextPane logTextPane;
@@ -84,20 +88,21 @@ public class App extends JFrame {
         initComponents();
         initListeners();
         this.setVisible(true);
-        camera = new VideoCapture(settings.getCameraDeviceId());
-        if (!camera.isOpened()) {
-            System.err.println("Error: Camera could not be opened. Exiting...");
+        frameSource = FrameSources.fromSettings(settings);
+        if (!frameSource.isOpened()) {
+            System.err.println("Error: Frame source " + frameSource.describe() + " could not be opened. Exiting...");
             System.exit(-1);
         }
 
 
-        LogHandler logHandler = new LogHandler(logTextPane);
+        LogHandler logHandler = new SwingLogHandler(logTextPane);
         this.sessionHandler = new SessionHandler(logHandler);
 
         onnxRunner = new OnnxRunner(logHandler.getLogQueue());
 
         // Camera fetcher thread task
-        CameraFetcher cameraFetcher = new CameraFetcher(this.cameraFeed, camera, onnxRunner, sessionHandler);
+        CameraFetcher cameraFetcher = new CameraFetcher(this.cameraFeed, App::getFrameSource, onnxRunner, sessionHandler);
+        cameraFetcher.setCadenceListener(cadence -> SwingUtilities.invokeLater(() -> showCadence(cadence)));
         cameraFetcherThread = new Thread(cameraFetcher);
         cameraFetcherThread.start();
     }
@@ -120,7 +125,7 @@ public class App extends JFrame {
         // Camera Panel
         JPanel cameraPanel = new JPanel(new BorderLayout());
         cameraPanel.setBorder(BorderFactory.createTitledBorder("Camera"));
-        cameraFeed = new JLabel("");
+        cameraFeed = new VideoPanel();
         cameraFeed.setMinimumSize(new Dimension(320, 240));
         cameraPanel.add(cameraFeed, BorderLayout.CENTER);
 
@@ -157,6 +162,8 @@ public class App extends JFrame {
         startSessionButton = new JToggleButton("Start Session");
         startSessionButton.setBackground(OCEAN);
         settingsButton = new JButton("Settings");
+        inferenceStatusLabel = new JLabel(" ");
+        inferenceStatusLabel.setForeground(Color.GRAY);
 
         GroupLayout bottomPanelLayout = new GroupLayout(bottomPanel);
         bottomPanelLayout.setAutoCreateContainerGaps(true);
@@ -165,6 +172,8 @@ public class App extends JFrame {
                         .addComponent(startSessionButton)
                         .addPreferredGap(ComponentPlacement.UNRELATED)
                         .addComponent(settingsButton)
+                        .addPreferredGap(ComponentPlacement.UNRELATED)
+                        .addComponent(inferenceStatusLabel)
         );
         bottomPanelLayout.setVerticalGroup(
                 bottomPanelLayout.createSequentialGroup()
@@ -172,6 +181,7 @@ public class App extends JFrame {
                                 bottomPanelLayout.createParallelGroup(GroupLayout.Alignment.CENTER)
                                         .addComponent(startSessionButton)
                                         .addComponent(settingsButton)
+                                        .addComponent(inferenceStatusLabel)
                         )
         );
         bottomPanel.setLayout(bottomPanelLayout);
@@ -188,6 +198,18 @@ public class App extends JFrame {
         this.setLocationRelativeTo(null); // Center application
     }
 
+    // Shows how often frames are inferred next to the buttons
+    private void showCadence(FrameSkipScheduler.Cadence cadence) {
+        String text = "Inference: every " + cadence.everyNthFrame() + (cadence.everyNthFrame() == 1 ? " frame" : " frames");
+        if (cadence.detectionsPerSecond() > 0) {
+            text += String.format(" (%.1f/s)", cadence.detectionsPerSecond());
+        }
+        inferenceStatusLabel.setText(text);
+        inferenceStatusLabel.setToolTipText(cadence.adaptive()
+                ? String.format("Chosen from the inference time (%.0f ms) and the CPU load", cadence.latencyMs())
+                : "Fixed in the settings");
+    }
+
     private GridBagConstraints createConstraints(int gridX, int gridY, double weightX, double weightY) {
         GridBagConstraints c = new GridBagConstraints();
         c.gridx = gridX;
@@ -263,10 +285,18 @@ public class App extends JFrame {
 
                     System.out.println("Beginning cleanup Process...");
                     System.out.println("Stopping camera feed thread...");
-                    if(cameraFetcherThread != null) cameraFetcherThread.interrupt();
+                    if(cameraFetcherThread != null) {
+                        cameraFetcherThread.interrupt();
+                        // Let the pipeline drain and release its frames before the camera is closed
+                        try {
+                            cameraFetcherThread.join(2000);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
                     System.out.println("Closing camera access...");
-                    if (camera != null && camera.isOpened())
-                        camera.release();
+                    if (frameSource != null)
+                        frameSource.close();
                     System.out.println("Done cleanup process.");
 
                     App.this.dispose();
@@ -289,12 +319,22 @@ public class App extends JFrame {
 
     public static void updateCamera(int id) {
         System.out.println("Swapping to camera device number " + id);
-        VideoCapture newCamera = new VideoCapture(id);
+        FrameSource newCamera = new CameraFrameSource(id);
         if(!newCamera.isOpened()){
             System.out.println("Could not swap over to new camera device :/");
         }
 
-        App.setCamera(newCamera);
+        App.setFrameSource(newCamera);
+    }
+
+    public static void updateFrameSource(ProgramSettings settings) {
+        System.out.println("Swapping to frame source " + settings.getFrameSource());
+        FrameSource newSource = FrameSources.fromSettings(settings);
+        if(!newSource.isOpened()){
+            System.out.println("Could not open frame source " + newSource.describe());
+        }
+
+        App.setFrameSource(newSource);
     }
 
     public static void main(String[] args) {
@@ -1,153 +1,389 @@
 package io.github.tkjonesy.frontend.models;
 
-import io.github.tkjonesy.ONNX.Detection;
+import io.github.tkjonesy.ONNX.DetectionBatch;
 import io.github.tkjonesy.ONNX.ImageUtil;
-import io.github.tkjonesy.ONNX.models.OnnxOutput;
+import io.github.tkjonesy.ONNX.ObjectTracker;
+import io.github.tkjonesy.ONNX.models.InferenceWorker;
+import io.github.tkjonesy.ONNX.models.DetectionSnapshot;
 import io.github.tkjonesy.ONNX.models.OnnxRunner;
+import io.github.tkjonesy.frontend.models.frameSource.FrameSource;
 
-import io.github.tkjonesy.frontend.App;
+import io.github.tkjonesy.frontend.models.pipeline.FramePacket;
+import io.github.tkjonesy.frontend.models.pipeline.FramePipeline;
+import io.github.tkjonesy.frontend.models.pipeline.FrameSkipScheduler;
+import io.github.tkjonesy.frontend.models.pipeline.FrameRing;
+import io.github.tkjonesy.frontend.models.pipeline.MotionGate;
+import io.github.tkjonesy.frontend.models.pipeline.OverflowPolicy;
+import io.github.tkjonesy.frontend.models.pipeline.PipelineStage;
+import io.github.tkjonesy.frontend.models.pipeline.StageQueue;
+import io.github.tkjonesy.frontend.models.pipeline.TickCounter;
+import io.github.tkjonesy.utils.MatPool;
 import io.github.tkjonesy.utils.settings.ProgramSettings;
-import org.bytedeco.javacpp.BytePointer;
 
+import lombok.Setter;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.Size;
-import org.bytedeco.opencv.opencv_videoio.VideoCapture;
 import org.bytedeco.opencv.opencv_videoio.VideoWriter;
 
 import static org.bytedeco.opencv.global.opencv_imgproc.resize;
-import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_WIDTH;
-import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_HEIGHT;
 
 import org.bytedeco.opencv.global.opencv_core;
 
 
-import javax.swing.*;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
+/**
+ * The {@code CameraFetcher} class drives the frame pipeline. Its own thread only reads frames from the
+ * {@link FrameSource} at the source's frame rate and hands them on; the other work runs in separate stages connected
+ * by bounded queues:
+ * <ul>
+ *     <li>inference, on the {@link InferenceWorker} (every Nth frame, latest frame wins, one frame per session),
+ *     skipped while the {@link MotionGate} sees a static scene. N is chosen by the {@link FrameSkipScheduler} from the
+ *     measured inference latency. Each new result passes through the {@link ObjectTracker} on the capture thread,
+ *     and every frame gets the tracks predicted to its capture time, so boxes follow moving instruments between
+ *     inferences. The tool counts are updated on the capture thread as well, once per inference tick of an active
+ *     session, so frames dropped by a downstream queue are still counted,</li>
+ *     <li>render, which draws the detections, resizes and rotates the frame and shows it in the {@link VideoPanel},</li>
+ *     <li>record, which encodes the shown frame while a session is active.</li>
+ * </ul>
+ * A stall in encoding or painting fills that stage's queue and is absorbed by its overflow policy instead of
+ * delaying the next capture. Frames of recorded sources are never skipped: capture waits for the render queue and
+ * for a free slot instead, and at the end of the recording the queued frames are finished before the pipeline stops.
+ */
 public class CameraFetcher implements Runnable {
 
-    private final JLabel cameraFeed;
-    private VideoCapture camera;
-    private final Timer timer;
+    private final FrameDisplay cameraFeed;
+    private final Supplier<FrameSource> sourceSupplier;
+    private FrameSource source;
     private final SessionHandler sessionHandler;
     private final OnnxRunner onnxRunner;
+    private final InferenceWorker inferenceWorker;
 
     private final ProgramSettings settings = ProgramSettings.getCurrentSettings();
 
-    public CameraFetcher(JLabel cameraFeed, VideoCapture camera, OnnxRunner onnxRunner, SessionHandler sessionHandler) {
-        this.cameraFeed = cameraFeed;
-        this.camera = camera;
-        this.timer = new Timer();
-        this.onnxRunner = onnxRunner;
-        this.sessionHandler = sessionHandler;
-    }
+    // Downstream stages and the queues feeding them
+    private final StageQueue<FramePacket> renderQueue;
+    private final StageQueue<FramePacket> recordQueue;
+    private final FramePipeline pipeline;
 
-    /**
-     * Convert Bytedeco Mat to BufferedImage
-     */
-    private static BufferedImage cvt2bi(Mat frame) {
-        // Dimensions
-        int width = frame.cols();
-        int height = frame.rows();
-        int channels = frame.channels();
+    // Reused capture slots and the pool the inference copies are taken from
+    private final FrameRing frameRing;
+    private final MatPool matPool;
+
+    // The session pool size the inference threads and copies are sized for; a reload may change it
+    private int sessions;
+
+    // Skips inference on frames that look like the last inferred one
+    private final MotionGate motionGate = new MotionGate();
 
-        BytePointer dataPtr = frame.data();
-        byte[] b = new byte[width * height * channels];
-        dataPtr.get(b);
+    // Chooses the number of frames between two inferences
+    private final FrameSkipScheduler frameSkipScheduler;
 
-        // Determine the correct BufferedImage type
-        int type = (channels > 1) ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_BYTE_GRAY;
-        BufferedImage image = new BufferedImage(width, height, type);
+    // Gives the detections of successive inferences persistent ids; only used by the capture thread
+    private final ObjectTracker objectTracker = new ObjectTracker();
+    private final DetectionBatch trackedDetections = new DetectionBatch();
+    private long lastTrackedVersion = 0;
+
+    // Updates the tool counts on every inference tick of a session, whatever happens to the frame downstream
+    private final TickCounter tickCounter;
+
+    /** Told about every change of the inference cadence, on the capture thread. */
+    @Setter
+    private volatile Consumer<FrameSkipScheduler.Cadence> cadenceListener;
+
+    // Display size of the last rendered frame, only rebuilt when the feed is resized
+    private Size displaySize = new Size(0, 0);
+
+    /**
+     * @param cameraFeed Where rendered frames are shown, or {@code null} to run without a display.
+     * @param sourceSupplier Supplies the current frame source; checked every frame so the source can be swapped.
+     * @param onnxRunner The runner used for inference and tracking.
+     * @param sessionHandler The session handler deciding whether frames are recorded.
+     */
+    public CameraFetcher(FrameDisplay cameraFeed, Supplier<FrameSource> sourceSupplier, OnnxRunner onnxRunner, SessionHandler sessionHandler) {
+        this.cameraFeed = cameraFeed;
+        this.sourceSupplier = sourceSupplier;
+        this.source = sourceSupplier.get();
+        this.onnxRunner = onnxRunner;
+        this.sessionHandler = sessionHandler;
+        this.frameSkipScheduler = new FrameSkipScheduler(() -> onnxRunner.getSessionPool().size(), this::onCadenceChange);
+        this.inferenceWorker = new InferenceWorker(onnxRunner, frameSkipScheduler::recordLatency);
+        this.tickCounter = new TickCounter(onnxRunner::processDetections);
 
-        // Copy the raw bytes into the BufferedImage
-        byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-        System.arraycopy(b, 0, targetPixels, 0, b.length);
+        // Frames of a recording are all rendered and recorded, however fast they are read
+        OverflowPolicy renderPolicy = source.isLive() ? settings.getRenderOverflowPolicy() : OverflowPolicy.BLOCK;
+        this.renderQueue = new StageQueue<>("render", settings.getRenderQueueCapacity(), renderPolicy, FramePacket::release);
+        this.recordQueue = new StageQueue<>("record", settings.getRecordQueueCapacity(), settings.getRecordOverflowPolicy(), FramePacket::release);
+        this.pipeline = new FramePipeline()
+                .addStage(new PipelineStage<>("render", renderQueue, this::render))
+                .addStage(new PipelineStage<>("record", recordQueue, this::record));
 
-        return image;
+        // One slot for every place a frame can wait: capture, each queue and each stage
+        boolean trackLeaks = settings.isDebugLeakDetection();
+        this.frameRing = new FrameRing(renderQueue.getCapacity() + recordQueue.getCapacity() + 3, trackLeaks);
+        // One inference copy per session in flight, plus the one waiting in the mailbox
+        this.sessions = onnxRunner.getSessionPool().size();
+        this.matPool = new MatPool("inference", sessions + 1, trackLeaks);
     }
 
     @Override
     public void run() {
         // Configure camera resolution
-        camera.set(CAP_PROP_FRAME_WIDTH, cameraFeed.getWidth());
-        camera.set(CAP_PROP_FRAME_HEIGHT, cameraFeed.getHeight());
-
-        TimerTask task = new TimerTask() {
-
-            // Required objects for detections & display
-            private static final Mat frame = new Mat();
-            private static int currentFrame = 0;
-            private static OnnxOutput onnxOutput;
-            private static List<Detection> detections = new ArrayList<>();
-
-            @Override
-            public void run() {
-                if(camera != App.getCamera()) {
-                    System.out.println("Camera has been updated, changing to new camera");
-                    camera = App.getCamera();
+        if (cameraFeed != null) {
+            source.setResolution(cameraFeed.getWidth(), cameraFeed.getHeight());
+        }
+        System.out.println("Reading frames from " + source.describe());
+
+        pipeline.start();
+        Consumer<FrameSkipScheduler.Cadence> initialListener = cadenceListener;
+        if (initialListener != null) initialListener.accept(frameSkipScheduler.getCadence());
+
+        long frameSequence = 0;
+        int currentFrame = 0;
+        long nextCapture = System.nanoTime();
+        boolean sessionWasActive = false;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (source != sourceSupplier.get()) {
+                    System.out.println("Frame source has been updated, changing to " + sourceSupplier.get().describe());
+                    source.close();
+                    source = sourceSupplier.get();
+                    motionGate.reset();
+                    objectTracker.reset();
+                    trackedDetections.clear();
+                }
+                long period = source.getFrameIntervalNanos();
+
+                // Read straight into a reusable capture slot; if every slot is still downstream, skip this frame,
+                // unless it comes from a recording, which waits for the pipeline instead
+                FramePacket packet = frameRing.acquire(frameSequence, System.nanoTime());
+                if (packet == null) {
+                    if (source.isLive()) {
+                        source.skip();
+                        nextCapture = pace(nextCapture, period);
+                    } else {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                    continue;
                 }
-                if (!Thread.currentThread().isInterrupted()) {
-                    camera.read(frame);
-                    Mat inferenceFrame = frame.clone();
-
-                    // Every Nth frame, run object detection
-                    if (++currentFrame % settings.getProcessEveryNthFrame() == 0) {
-                        new Thread(() -> {
-                            onnxOutput = onnxRunner.runInference(inferenceFrame);
-                            detections = onnxOutput.getDetectionList();
-                            inferenceFrame.deallocate();
-                        }).start();
-                        currentFrame = 0;
+                Mat frame = packet.getFrame();
+                if (!source.read(frame)) {
+                    packet.release();
+                    if (source.isEndOfStream()) {
+                        System.out.println("Reached the end of " + source.describe() + " after " + frameSequence + " frames.");
+                        awaitPipelineIdle();
+                        break;
                     }
+                    nextCapture = pace(nextCapture, period);
+                    continue;
+                }
+                packet.setCaptureTimestamp(source.getLastTimestamp());
+                frameSequence++;
+                int everyNthFrame = frameSkipScheduler.onFrame(System.nanoTime());
+
+                // A new session's log starts with the cadence in use
+                boolean sessionActive = sessionHandler.isSessionActive();
+                if (sessionActive && !sessionWasActive) {
+                    logCadence(frameSkipScheduler.getCadence());
+                }
+                sessionWasActive = sessionActive;
 
-                    // Overlay predictions & resize
-                    if(settings.isShowBoundingBoxes())
-                        ImageUtil.drawPredictions(frame, detections);
+                // Every Nth frame, hand a copy to the inference worker, replacing any frame it has not started yet.
+                // On a static scene the tick keeps the last detections instead, so tracking still advances
+                boolean inferenceTick = ++currentFrame >= everyNthFrame;
+                if (inferenceTick) {
+                    boolean infer = true;
+                    if (settings.isMotionGating()) {
+                        infer = motionGate.shouldInfer(frame, System.nanoTime());
+                        onnxRunner.recordMotionGate(!infer);
+                    }
+                    if (infer) {
+                        matchSessionPool();
+                        inferenceWorker.submit(matPool.copyOf(frame), packet.getFrameSequence(), packet.getCaptureTimestamp());
+                    }
+                    currentFrame = 0;
+                }
+                DetectionSnapshot latest = inferenceWorker.acquireLatestDetections();
+                if (latest != null) {
                     try {
-                        resize(frame, frame, new Size(cameraFeed.getWidth(), cameraFeed.getHeight()));
-
-                        int settingsRotation = settings.getCameraRotation();
-                        int ROTA = 3;
-                        switch (settingsRotation) {
-                            case 90 -> ROTA = opencv_core.ROTATE_90_CLOCKWISE;
-                            case 180 -> ROTA = opencv_core.ROTATE_180;
-                            case 270 -> ROTA = opencv_core.ROTATE_90_COUNTERCLOCKWISE;
+                        attachDetections(packet, latest);
+                        if (inferenceTick) {
+                            // Coasting tracks only stand in for the counts when asked to
+                            boolean fromTracks = settings.isObjectTracking() && settings.isCountFromTracks();
+                            tickCounter.count(fromTracks ? packet.getDetections() : latest.detections(), sessionActive);
                         }
+                    } finally {
+                        latest.release();
+                    }
+                }
 
-                        opencv_core.rotate(frame, frame, ROTA);
-                        // Show frame in label
-                        BufferedImage biFrame = cvt2bi(frame);
+                packet.setOwner("render queue");
+                renderQueue.offer(packet);
+                nextCapture = pace(nextCapture, period);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            System.out.println("Camera Fetcher had to stop! If you are closing the program, this is expected.");
+            pipeline.stop();
+            inferenceWorker.close();
 
-                        cameraFeed.setIcon(new ImageIcon(biFrame));
-                    } catch (Exception e ){
-                        System.out.println("Camera Fetcher had to stop! If you are closing the program, this is expected.");
-                        this.cancel();
-                    }
-                    // Write the frame to the video file if the session is active
-                    if (sessionHandler.isSessionActive()) {
-                        FileSession fileSession = sessionHandler.getFileSession();
-                        VideoWriter writer = fileSession.getVideoWriter();
-                        // Initializes the video writer
-                        if ((writer == null || !writer.isOpened())) {
-                            fileSession.initVideoWriter(frame);
-                            onnxRunner.getLogQueue().addGreenLog("---Video recording started.---");
-                        }
-                        fileSession.writeVideoFrame(frame);
-                        if (currentFrame % settings.getProcessEveryNthFrame() == 0)
-                            onnxRunner.processDetections(detections);
+            // Every frame should be back in the ring and every inference copy back in the pool by now
+            frameRing.reportLeaks();
+            matPool.reportLeaks();
+            frameRing.close();
+            matPool.close();
+            motionGate.close();
+            System.out.println("🧷 " + objectTracker.getTracksStarted() + " track(s) started");
+        }
+    }
 
+    // Runs each new inference result through the tracker once, then gives the frame the tracks as of its capture time
+    private void attachDetections(FramePacket packet, DetectionSnapshot latest) {
+        if (!settings.isObjectTracking()) {
+            packet.getDetections().copyFrom(latest.detections());
+            return;
+        }
+        objectTracker.configure(settings);
+        if (latest.version() != lastTrackedVersion) {
+            lastTrackedVersion = latest.version();
+            objectTracker.update(latest.detections(), trackedDetections);
+        }
+        objectTracker.predict(packet.getCaptureTimestamp(), packet.getDetections());
+    }
 
-                    }
-                }
+    // Follows a reload that resized the session pool, so every session gets frames and the copies are reused
+    private void matchSessionPool() {
+        int size = onnxRunner.getSessionPool().size();
+        if (size == sessions) return;
+        sessions = size;
+        inferenceWorker.setThreadCount(size);
+        matPool.setMaxIdlePerKey(size + 1);
+        System.out.println("🧵 Inference now runs on " + size + " thread(s) to match the session pool");
+    }
+
+    // Reports a new cadence in the tracking log and to the listener
+    private void onCadenceChange(FrameSkipScheduler.Cadence cadence) {
+        logCadence(cadence);
+        Consumer<FrameSkipScheduler.Cadence> listener = cadenceListener;
+        if (listener != null) listener.accept(cadence);
+    }
+
+    private void logCadence(FrameSkipScheduler.Cadence cadence) {
+        String message = String.format("Inference every %d frame(s)%s", cadence.everyNthFrame(),
+                cadence.detectionsPerSecond() > 0 ? String.format(", %.1f detections/s", cadence.detectionsPerSecond()) : "");
+        if (cadence.latencyMs() > 0) {
+            message += String.format(", %.0f ms per inference", cadence.latencyMs());
+        }
+        System.out.println("🎚 " + message + (cadence.adaptive() ? " (adaptive)" : ""));
+        onnxRunner.getLogQueue().addYellowLog("---" + message + ".---");
+    }
+
+    // Lets the frames still in the pipeline be shown and recorded; every slot is back in the ring once they are done
+    private void awaitPipelineIdle() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (frameRing.inUse() > 0 && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+
+    // Fixed-rate pacing; if capture fell behind, start counting again from now. A period of 0 never waits
+    private static long pace(long nextCapture, long period) {
+        nextCapture += period;
+        long wait = nextCapture - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+            return nextCapture;
+        }
+        return System.nanoTime();
+    }
+
+    // Render stage: overlay predictions, resize, rotate and show the frame, then pass it on for recording
+    private void render(FramePacket packet) throws InterruptedException {
+        boolean forwarded = false;
+        try {
+            forwarded = renderFrame(packet);
+        } finally {
+            if (!forwarded) packet.release();
+        }
+    }
+
+    private boolean renderFrame(FramePacket packet) throws InterruptedException {
+        packet.setOwner("render");
+        Mat frame = packet.getFrame();
+
+        // Nothing to show or record: skip the overlay, resize and copy entirely
+        boolean recording = sessionHandler.isSessionActive();
+        boolean displayed = cameraFeed != null && cameraFeed.isVisibleOnScreen();
+        if (!recording && !displayed) {
+            return false;
+        }
+
+        // Overlay predictions & resize
+        if(settings.isShowBoundingBoxes())
+            ImageUtil.drawPredictions(frame, packet.getDetections());
+
+        // Without a display, frames are recorded at the camera's resolution
+        Mat display = frame;
+        if (cameraFeed != null) {
+            if (displaySize.width() != cameraFeed.getWidth() || displaySize.height() != cameraFeed.getHeight()) {
+                displaySize.close();
+                displaySize = new Size(cameraFeed.getWidth(), cameraFeed.getHeight());
+            }
+            resize(frame, packet.getDisplay(), displaySize);
+            display = packet.getDisplay();
+        }
+
+        int settingsRotation = settings.getCameraRotation();
+        int ROTA = 3;
+        switch (settingsRotation) {
+            case 90 -> ROTA = opencv_core.ROTATE_90_CLOCKWISE;
+            case 180 -> ROTA = opencv_core.ROTATE_180;
+            case 270 -> ROTA = opencv_core.ROTATE_90_COUNTERCLOCKWISE;
+        }
+
+        // Rotate into the slot's second image so neither image is reallocated between frames
+        if (ROTA == 3) {
+            packet.setOutput(display);
+        } else {
+            opencv_core.rotate(display, packet.getRotated(), ROTA);
+            packet.setOutput(packet.getRotated());
+        }
+        // Show frame in the video panel; skipped while the window is minimized or hidden
+        if (displayed) {
+            cameraFeed.present(packet.getOutput());
+        }
+
+        // Only frames of an active session continue to the record stage
+        if (recording) {
+            packet.setOwner("record queue");
+            recordQueue.offer(packet);
+            return true;
+        }
+        return false;
+    }
+
+    // Record stage: write the frame to the video file
+    private void record(FramePacket packet) {
+        packet.setOwner("record");
+        try {
+            FileSession fileSession = sessionHandler.getFileSession();
+            if (fileSession == null || fileSession.isEnded()) return;
+
+            VideoWriter writer = fileSession.getVideoWriter();
+            // Initializes the video writer
+            if ((writer == null || !writer.isOpened())) {
+                fileSession.initVideoWriter(packet.getOutput());
+                onnxRunner.getLogQueue().addGreenLog("---Video recording started.---");
             }
-        };
-        // Schedule the capture task
-        timer.schedule(task,0,1000/settings.getCameraFps());
+            fileSession.writeVideoFrame(packet.getOutput());
+        } finally {
+            packet.release();
+        }
     }
 }
@@ -0,0 +1,22 @@
+package io.github.tkjonesy.frontend.models;
+
+import io.github.tkjonesy.ONNX.models.Log;
+
+/**
+ * The {@code ConsoleLogHandler} class prints logs to standard output with ANSI colors, for headless mode where there
+ * is no log pane.
+ */
+public class ConsoleLogHandler extends LogHandler {
+
+    private static final String ANSI_RESET = "\u001B[0m";
+
+    @Override
+    protected void displayLog(Log log) {
+        System.out.println(log.getLogType().getAnsiColor() + log.getTimeStamp() + " - " + log.getMessage() + ANSI_RESET);
+    }
+
+    @Override
+    public void clearLogPane() {
+        // Nothing to clear on a terminal
+    }
+}
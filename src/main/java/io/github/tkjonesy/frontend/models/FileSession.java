@@ -2,6 +2,7 @@ package io.github.tkjonesy.frontend.models;
 
 import io.github.tkjonesy.ONNX.models.Log;
 import io.github.tkjonesy.ONNX.models.OnnxRunner;
+import io.github.tkjonesy.ONNX.models.TrackingSnapshot;
 import lombok.Getter;
 
 import org.bytedeco.opencv.opencv_core.Mat;
@@ -13,6 +14,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
 import java.time.Duration;
 import java.time.Instant;
 
@@ -33,7 +35,26 @@ public class FileSession {
     // Field to store the intended frame size for the video
     private Size videoFrameSize;
 
+    // Scratch images reused by writeVideoFrame for type conversion and resizing, closed when the session ends
+    private final Mat formattedFrame = new Mat();
+    private final Mat resizedFrame = new Mat();
+
+    /** Whether the session has ended; the record thread stops writing frames once it has. */
+    @Getter
+    private volatile boolean ended = false;
+
     public FileSession(OnnxRunner onnxRunner, String title, LogHandler logHandler)  {
+        this(onnxRunner, title, logHandler, null);
+    }
+
+    /**
+     * Creates a session that writes its files to the given directory instead of a new directory under the sessions
+     * directory, e.g. next to the recording being reprocessed.
+     *
+     * @param sessionDirectory The directory to create, or {@code null} to use {@code <sessions>/<title>_<date>}.
+     */
+    public FileSession(OnnxRunner onnxRunner, String title, LogHandler logHandler, String sessionDirectory)  {
+        this.sessionDirectory = sessionDirectory;
         this.onnxRunner = onnxRunner;
         this.title = title;
         this.logHandler = logHandler;
@@ -71,8 +92,10 @@ public class FileSession {
 
         startTime = Instant.now();
 
-        String dateTime = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmm"));
-        this.sessionDirectory = AIMS_SESSIONS_DIRECTORY + "/" + this.title + "_" + dateTime;
+        if (this.sessionDirectory == null) {
+            String dateTime = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmm"));
+            this.sessionDirectory = AIMS_SESSIONS_DIRECTORY + "/" + this.title + "_" + dateTime;
+        }
 
         // Create the session directory
         if (!new java.io.File(sessionDirectory).mkdir()) {
@@ -96,8 +119,12 @@ public class FileSession {
      * @param frame The first frame, used to determine video properties such as size and format.
      * @throws IllegalStateException if the session is not active.
      */
-    protected void initVideoWriter(Mat frame) throws IllegalStateException {
+    protected synchronized void initVideoWriter(Mat frame) throws IllegalStateException {
+        if (ended) {
+            throw new IllegalStateException("The session has already ended");
+        }
         // Set the intended video frame size based on the first frame
+        if (videoFrameSize != null) videoFrameSize.close();
         videoFrameSize = new Size(frame.cols(), frame.rows());
         String videoPath = sessionDirectory + "/recording.mp4";
         int codec = VideoWriter.fourcc((byte) 'a', (byte) 'v', (byte) 'c', (byte) '1');
@@ -109,7 +136,7 @@ public class FileSession {
         }
     }
 
-    public void destroyVideoWriter(){
+    public synchronized void destroyVideoWriter(){
         if(videoWriter != null){
             videoWriter.release();
             videoWriter = null;
@@ -123,19 +150,21 @@ public class FileSession {
      *
      * @param frame The video frame to write.
      */
-    protected void writeVideoFrame(Mat frame) {
+    protected synchronized void writeVideoFrame(Mat frame) {
         if (videoWriter != null && videoWriter.isOpened()) {
-            Mat formattedFrame = new Mat();
-            frame.convertTo(formattedFrame, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            // Camera frames are already 8-bit BGR, so only convert other types
+            Mat formatted = frame;
+            if (frame.type() != org.bytedeco.opencv.global.opencv_core.CV_8UC3) {
+                frame.convertTo(formattedFrame, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+                formatted = formattedFrame;
+            }
             // Check if the frame dimensions match the expected videoFrameSize
-            if(formattedFrame.cols() != videoFrameSize.width() || formattedFrame.rows() != videoFrameSize.height()){
+            if(formatted.cols() != videoFrameSize.width() || formatted.rows() != videoFrameSize.height()){
                 // Resize frame if dimensions do not match
-                Mat resizedFrame = new Mat();
-                resize(formattedFrame, resizedFrame, videoFrameSize);
+                resize(formatted, resizedFrame, videoFrameSize);
                 videoWriter.write(resizedFrame);
-                resizedFrame.release();
             } else {
-                videoWriter.write(formattedFrame);
+                videoWriter.write(formatted);
             }
         }
     }
@@ -145,7 +174,7 @@ public class FileSession {
      *
      * @param log The log entry to write.
      */
-    protected void writeLogToFile(Log log) {
+    public void writeLogToFile(Log log) {
         if (logBufferedWriter != null) {
             try {
                 String fullMessage = log.getTimeStamp() + " - " + log.getMessage();
@@ -183,15 +212,24 @@ public class FileSession {
      * Ends the current session by releasing resources such as the VideoWriter and BufferedWriter.
      */
     public void endSession() {
+        endSession(Duration.between(startTime, Instant.now()));
+    }
+
+    /**
+     * Ends the current session, reporting the given recording duration in the AAR instead of the time since the
+     * session started.
+     *
+     * @param recordDuration The duration of the recording, e.g. of a reprocessed video.
+     */
+    public void endSession(Duration recordDuration) {
         System.out.println("\u001B[33m☐ Ending current FileSession...\u001B[0m");
 
         destroyVideoWriter();
+        releaseFrames();
 
         closeLogWriter();
         closeCsvWriter();
 
-        Duration recordDuration = Duration.between(startTime, Instant.now());
-
         generateAAR(recordDuration);
 
         if(logBufferedWriter == null) {
@@ -201,6 +239,17 @@ public class FileSession {
         onnxRunner.endSession();
     }
 
+    // Frees the scratch images; the record thread may still be writing a frame, so this waits for it
+    private synchronized void releaseFrames() {
+        ended = true;
+        formattedFrame.close();
+        resizedFrame.close();
+        if (videoFrameSize != null) {
+            videoFrameSize.close();
+            videoFrameSize = null;
+        }
+    }
+
     private String formatDuration(Duration duration) {
         long hours = duration.toHours();
         long minutes = duration.toMinutes() % 60;
@@ -218,13 +267,21 @@ public class FileSession {
     }
 
     private void generateAAR(Duration recordDuration) {
-        int peakObjects = onnxRunner.getPeakObjectsSeen();
+        // One snapshot, so the counts agree even while the capture thread is still counting frames
+        TrackingSnapshot tracking = onnxRunner.getTrackingSnapshot();
+        int peakObjects = tracking.peakObjectsSeen();
+        long gatedInferences = onnxRunner.getGatedInferences();
+        long skippedInferences = onnxRunner.getSkippedInferences();
+        if (gatedInferences > 0) {
+            System.out.printf("🏃 Motion gating skipped %d of %d inferences (%.1f%%) this session%n",
+                    skippedInferences, gatedInferences, 100.0 * skippedInferences / gatedInferences);
+        }
 
         // Get correct start and end counts
-        HashMap<String, Integer> initialToolCounts = onnxRunner.getStartCountPerClass();
+        Map<String, Integer> initialToolCounts = tracking.startCountPerClass();
 
-        HashMap<String, Integer> finalToolCounts = new HashMap<>(onnxRunner.getActiveDetections());
-        HashMap<String, Integer> totalToolsAdded = new HashMap<>(onnxRunner.getTotalInstancesAdded());
+        Map<String, Integer> finalToolCounts = tracking.activeDetections();
+        Map<String, Integer> totalToolsAdded = tracking.totalInstancesAdded();
 
         // Compute "New Tools Introduced"
         HashMap<String, Integer> newToolsIntroduced = new HashMap<>();
@@ -266,6 +323,10 @@ public class FileSession {
             writer.write("Recording Duration: " + formatDuration(recordDuration) + "\n\n");
             writer.write("Session Time: " + formattedSessionTime + "\n\n");
             writer.write("Peak Objects Seen at Once: " + peakObjects + "\n\n");
+            if (gatedInferences > 0) {
+                writer.write(String.format("Inferences Skipped on a Static Scene: %d of %d (%.1f%%)%n%n",
+                        skippedInferences, gatedInferences, 100.0 * skippedInferences / gatedInferences));
+            }
 
             writer.write("Total Instances of Each Tool Ever Added:\n");
             writer.write("-----------------------------------------------------\n");
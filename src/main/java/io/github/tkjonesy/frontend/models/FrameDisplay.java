@@ -0,0 +1,33 @@
+package io.github.tkjonesy.frontend.models;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * The {@code FrameDisplay} interface is where {@link CameraFetcher} shows rendered frames. It keeps the capture
+ * pipeline free of Swing types, so headless mode can run it without a display.
+ */
+public interface FrameDisplay {
+
+    /**
+     * Shows a frame. May be called from any thread.
+     *
+     * @param frame An 8-bit BGR or grayscale frame.
+     * @return {@code false} if the frame was skipped.
+     */
+    boolean present(Mat frame);
+
+    /**
+     * @return {@code true} if presented frames can currently be seen, so rendering them is worthwhile.
+     */
+    boolean isVisibleOnScreen();
+
+    /**
+     * @return The width frames are resized to before being presented.
+     */
+    int getWidth();
+
+    /**
+     * @return The height frames are resized to before being presented.
+     */
+    int getHeight();
+}
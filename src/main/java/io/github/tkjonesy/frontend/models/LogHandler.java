@@ -6,100 +6,73 @@ import io.github.tkjonesy.ONNX.models.LogQueue;
 import lombok.Getter;
 import lombok.Setter;
 
-import javax.swing.*;
+import java.util.Timer;
+import java.util.TimerTask;
 
-public class LogHandler {
+/**
+ * The {@code LogHandler} class drains the {@link LogQueue} once per second while a session is active, writing each
+ * log to the session's files and handing it to {@link #displayLog(Log)}. Subclasses decide where logs are shown:
+ * {@link SwingLogHandler} appends them to the log pane, {@link ConsoleLogHandler} prints them to the terminal.
+ */
+public abstract class LogHandler {
 
-    @Getter
-    private final JTextPane logTextPane;
     @Getter
     private final LogQueue logQueue;
 
     // New method to set FileSession after initialization
     @Setter
-    private FileSession fileSession;
+    private volatile FileSession fileSession;
     private Timer timer;
 
-    // This StringBuilder accumulates the log messages in HTML format
-    private final StringBuilder logHtmlContent = new StringBuilder("<html><body style='color:white;'>");
-
-    public LogHandler(JTextPane textPane) {
-        this.logTextPane = textPane;
+    protected LogHandler() {
         this.logQueue = new LogQueue();
 
         startLogProcessing();
     }
 
     /**
-     * Processes a log entry by appending it to the log text pane and saving it to a file.
+     * Processes a log entry by displaying it and saving it to a file.
      *
      * @param log The log entry to process.
      */
-    private void processLog(Log log){
-        appendLogToPane(log);
-        saveLogToFile(log);
+    private void processLog(Log log, FileSession fileSession){
+        displayLog(log);
+        fileSession.writeLogToFile(log);
     }
 
     /**
-     * Appends a new log entry as colored HTML text to the log text pane.
+     * Shows a log entry to the user.
      *
      * @param log The log entry to display.
      */
-    private void appendLogToPane(Log log) {
-        // Get the color of the log type as a hex code
-        String colorHex = "#" + Integer.toHexString(log.getLogType().getColor().getRGB()).substring(2);
-
-        // Format the log entry as an HTML line with timestamp and message
-        String logMessage = String.format("<span style='color:%s'>%s - %s</span><br>",
-                colorHex, log.getTimeStamp(), log.getMessage());
-
-        // Append the log message to the accumulated HTML content
-        logHtmlContent.append(logMessage);
-        logTextPane.setText(logHtmlContent + "</body></html>");
-
-        // Auto-scroll to the bottom of the JTextPane
-        logTextPane.setCaretPosition(logTextPane.getDocument().getLength());
-    }
+    protected abstract void displayLog(Log log);
 
     /**
-     * Saves a log entry to a file.
-     *
-     * @param log The log entry to save.
+     * Clears the log display when a session starts.
      */
-    private void saveLogToFile(Log log){
-        fileSession.writeLogToFile(log);
-    }
+    public abstract void clearLogPane();
 
     /**
      * Starts a timer that processes logs from the log queue every second.
      */
     public void startLogProcessing() {
-        this.timer = new Timer(1000, e ->
-        {
-            // Process logs from the queue
-            Log nextLog;
-            while ((nextLog = logQueue.getNextLog()) != null && fileSession != null){
-                processLog(nextLog);
+        this.timer = new Timer("log-handler", true);
+        this.timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                // Process logs from the queue
+                Log nextLog;
+                FileSession session;
+                while ((session = fileSession) != null && (nextLog = logQueue.getNextLog()) != null){
+                    processLog(nextLog, session);
+                }
             }
-        });
-        timer.start();
+        }, 1000, 1000);
     }
 
     public void endLogProcessing() {
         if(timer != null){
-            timer.stop();
+            timer.cancel();
         }
     }
-
-
-    /**
-     * Clears the log display when a session ends.
-     */
-    public void clearLogPane() {
-        logHtmlContent.setLength(0); // Reset log HTML content
-        logHtmlContent.append("<html><body style='color:white;'>"); // Keep formatting
-        logTextPane.setText(logHtmlContent + "</body></html>");
-
-        //logQueue.flushLogs();
-    }
 }
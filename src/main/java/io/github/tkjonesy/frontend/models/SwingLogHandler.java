@@ -0,0 +1,56 @@
+package io.github.tkjonesy.frontend.models;
+
+import io.github.tkjonesy.ONNX.models.Log;
+
+import lombok.Getter;
+
+import javax.swing.*;
+
+/**
+ * The {@code SwingLogHandler} class shows logs as colored HTML lines in the main window's log pane.
+ */
+public class SwingLogHandler extends LogHandler {
+
+    @Getter
+    private final JTextPane logTextPane;
+
+    // This StringBuilder accumulates the log messages in HTML format; only touched on the EDT
+    private final StringBuilder logHtmlContent = new StringBuilder("<html><body style='color:white;'>");
+
+    public SwingLogHandler(JTextPane textPane) {
+        this.logTextPane = textPane;
+    }
+
+    /**
+     * Appends a new log entry as colored HTML text to the log text pane.
+     *
+     * @param log The log entry to display.
+     */
+    @Override
+    protected void displayLog(Log log) {
+        // Format the log entry as an HTML line with timestamp and message
+        String logMessage = String.format("<span style='color:%s'>%s - %s</span><br>",
+                log.getLogType().getHexColor(), log.getTimeStamp(), log.getMessage());
+
+        SwingUtilities.invokeLater(() -> {
+            // Append the log message to the accumulated HTML content
+            logHtmlContent.append(logMessage);
+            logTextPane.setText(logHtmlContent + "</body></html>");
+
+            // Auto-scroll to the bottom of the JTextPane
+            logTextPane.setCaretPosition(logTextPane.getDocument().getLength());
+        });
+    }
+
+    /**
+     * Clears the log display when a session ends.
+     */
+    @Override
+    public void clearLogPane() {
+        SwingUtilities.invokeLater(() -> {
+            logHtmlContent.setLength(0); // Reset log HTML content
+            logHtmlContent.append("<html><body style='color:white;'>"); // Keep formatting
+            logTextPane.setText(logHtmlContent + "</body></html>");
+        });
+    }
+}
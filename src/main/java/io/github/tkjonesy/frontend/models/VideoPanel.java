@@ -0,0 +1,106 @@
+package io.github.tkjonesy.frontend.models;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@code VideoPanel} class shows the camera feed. It owns two {@link BufferedImage}s: the render thread copies
+ * each frame once, straight from the {@link Mat}'s native memory into the raster of the back image, then swaps it
+ * with the front image that the panel paints. Repaints are requested on the EDT and coalesced, so frames that
+ * arrive faster than Swing paints only cost the copy.
+ * <p>
+ * While the window is minimized or the panel is hidden, frames are not copied at all.
+ */
+public class VideoPanel extends JComponent implements FrameDisplay {
+
+    private final Object swapLock = new Object();
+
+    // Painted by the EDT; only replaced under swapLock
+    private BufferedImage front;
+
+    // Written by the render thread, never painted
+    private BufferedImage back;
+
+    private final AtomicBoolean repaintPending = new AtomicBoolean(false);
+
+    public VideoPanel() {
+        setOpaque(true);
+        setBackground(Color.BLACK);
+    }
+
+    /**
+     * Copies a frame into the back buffer and schedules it to be shown. Can be called from any thread.
+     *
+     * @param frame An 8-bit BGR or grayscale frame.
+     * @return {@code false} if the frame was skipped because the panel is not visible.
+     */
+    @Override
+    public boolean present(Mat frame) {
+        if (!isVisibleOnScreen()) return false;
+
+        int width = frame.cols();
+        int height = frame.rows();
+        int channels = frame.channels();
+        int type = (channels > 1) ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_BYTE_GRAY;
+
+        BufferedImage target = back;
+        if (target == null || target.getWidth() != width || target.getHeight() != height || target.getType() != type) {
+            target = new BufferedImage(width, height, type);
+        }
+
+        // Single copy from native memory into the image's raster, row by row if the Mat is padded
+        byte[] pixels = ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        BytePointer data = frame.data();
+        int rowBytes = width * channels;
+        if (frame.isContinuous()) {
+            data.get(pixels, 0, rowBytes * height);
+        } else {
+            long step = frame.step();
+            for (int y = 0; y < height; y++) {
+                data.position(y * step).get(pixels, y * rowBytes, rowBytes);
+            }
+            data.position(0);
+        }
+
+        synchronized (swapLock) {
+            back = front;
+            front = target;
+        }
+
+        if (repaintPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                repaintPending.set(false);
+                repaint();
+            });
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the panel is showing in a window that is not minimized.
+     */
+    @Override
+    public boolean isVisibleOnScreen() {
+        if (!isShowing()) return false;
+        Window window = SwingUtilities.getWindowAncestor(this);
+        return !(window instanceof Frame frame) || (frame.getExtendedState() & Frame.ICONIFIED) == 0;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        synchronized (swapLock) {
+            if (front != null) {
+                g.drawImage(front, 0, 0, getWidth(), getHeight(), null);
+                return;
+            }
+        }
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+    }
+}
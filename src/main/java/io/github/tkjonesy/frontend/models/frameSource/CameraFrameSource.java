@@ -0,0 +1,78 @@
+package io.github.tkjonesy.frontend.models.frameSource;
+
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_HEIGHT;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_WIDTH;
+
+/**
+ * A live camera opened by device index. Frames are timestamped when the read returns.
+ */
+public class CameraFrameSource implements FrameSource {
+
+    private final int deviceId;
+    private final VideoCapture camera;
+    private long lastTimestamp = 0;
+
+    public CameraFrameSource(int deviceId) {
+        this.deviceId = deviceId;
+        this.camera = new VideoCapture(deviceId);
+    }
+
+    @Override
+    public boolean read(Mat dst) {
+        boolean ok = camera.read(dst) && !dst.empty();
+        if (ok) lastTimestamp = System.nanoTime();
+        return ok;
+    }
+
+    @Override
+    public void skip() {
+        camera.grab();
+    }
+
+    @Override
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return camera.isOpened();
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return false;
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return TimeUnit.SECONDS.toNanos(1) / Math.max(1, ProgramSettings.getCurrentSettings().getCameraFps());
+    }
+
+    @Override
+    public void setResolution(int width, int height) {
+        camera.set(CAP_PROP_FRAME_WIDTH, width);
+        camera.set(CAP_PROP_FRAME_HEIGHT, height);
+    }
+
+    @Override
+    public String describe() {
+        return "camera " + deviceId;
+    }
+
+    @Override
+    public void close() {
+        if (camera.isOpened()) camera.release();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.tkjonesy.frontend.models.frameSource;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * The {@code FrameSource} interface is where the pipeline gets its frames from: a live camera, a recorded video, a
+ * directory of images or a synthetic pattern. Every frame comes with a capture timestamp on the
+ * {@link System#nanoTime()} clock; for recorded sources it is derived from the frame's position in the recording,
+ * so frames keep their original spacing even when read faster than real time.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * Reads the next frame into {@code dst}, reusing its memory when the size and type match.
+     *
+     * @param dst Receives the frame as 8-bit BGR.
+     * @return {@code false} if no frame could be read, e.g. at the end of a recording.
+     */
+    boolean read(Mat dst);
+
+    /**
+     * Discards the next frame, decoding as little of it as the source allows. Used when the pipeline has no free slot.
+     */
+    void skip();
+
+    /**
+     * @return The capture timestamp of the frame returned by the last successful {@link #read(Mat)}.
+     */
+    long getLastTimestamp();
+
+    /**
+     * @return {@code true} if the source was opened successfully.
+     */
+    boolean isOpened();
+
+    /**
+     * @return {@code true} once a finite source has returned its last frame.
+     */
+    boolean isEndOfStream();
+
+    /**
+     * @return {@code true} for sources that produce frames in real time, which are skipped rather than waited for
+     * when the pipeline is full.
+     */
+    boolean isLive();
+
+    /**
+     * @return The time the reader should leave between two frames, in nanoseconds, or 0 to read as fast as possible.
+     */
+    long getFrameIntervalNanos();
+
+    /**
+     * Requests a capture resolution. Only meaningful for cameras; other sources ignore it.
+     */
+    default void setResolution(int width, int height) {}
+
+    /**
+     * @return A short description for log messages, e.g. "camera 0".
+     */
+    String describe();
+
+    /**
+     * Releases the underlying device or files.
+     */
+    @Override
+    void close();
+}
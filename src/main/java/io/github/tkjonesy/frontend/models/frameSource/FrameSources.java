@@ -0,0 +1,63 @@
+package io.github.tkjonesy.frontend.models.frameSource;
+
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+
+/**
+ * Creates {@link FrameSource}s from a source specification, as used by the {@code frameSource} setting and the
+ * headless {@code --source} option:
+ * <ul>
+ *     <li>{@code camera} or {@code camera:<id>}: a live camera, by default {@code cameraDeviceId},</li>
+ *     <li>{@code video:<file>}: a recorded video,</li>
+ *     <li>{@code images:<directory>}: a directory of images, played at {@code cameraFps},</li>
+ *     <li>{@code synthetic} or {@code synthetic:<width>x<height>}: a generated test pattern at {@code cameraFps}.</li>
+ * </ul>
+ * Recorded and synthetic sources are read as fast as possible when {@code frameSourceMaxSpeed} is enabled.
+ */
+public final class FrameSources {
+
+    private FrameSources() {}
+
+    /**
+     * @param settings The settings to take the source specification and its defaults from.
+     * @return The source described by {@code settings.getFrameSource()}.
+     */
+    public static FrameSource fromSettings(ProgramSettings settings) {
+        return fromSpec(settings.getFrameSource(), settings);
+    }
+
+    /**
+     * @param spec A source specification, e.g. {@code video:/path/to/recording.mp4}.
+     * @param settings The settings to take defaults from.
+     * @return A new, opened source; check {@link FrameSource#isOpened()} before use.
+     * @throws IllegalArgumentException If the specification is not understood.
+     */
+    public static FrameSource fromSpec(String spec, ProgramSettings settings) {
+        if (spec == null || spec.isBlank()) spec = "camera";
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String argument = colon < 0 ? "" : spec.substring(colon + 1);
+        boolean maxSpeed = settings.isFrameSourceMaxSpeed();
+
+        return switch (kind) {
+            case "camera" -> new CameraFrameSource(argument.isEmpty() ? settings.getCameraDeviceId() : Integer.parseInt(argument));
+            case "video" -> new VideoFileFrameSource(requireArgument(spec, argument), maxSpeed);
+            case "images" -> new ImageDirectoryFrameSource(requireArgument(spec, argument), settings.getCameraFps(), maxSpeed);
+            case "synthetic" -> {
+                int width = 1280, height = 720;
+                if (!argument.isEmpty()) {
+                    String[] size = argument.toLowerCase().split("x");
+                    if (size.length != 2) throw new IllegalArgumentException("Expected synthetic:<width>x<height>, got " + spec);
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                }
+                yield new SyntheticFrameSource(width, height, settings.getCameraFps(), maxSpeed, 0);
+            }
+            default -> throw new IllegalArgumentException("Unknown frame source: " + spec);
+        };
+    }
+
+    private static String requireArgument(String spec, String argument) {
+        if (argument.isEmpty()) throw new IllegalArgumentException("Missing path in frame source: " + spec);
+        return argument;
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.tkjonesy.frontend.models.frameSource;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+/**
+ * A directory of still images, read in file name order as if they were consecutive video frames at a fixed rate.
+ * Files that cannot be decoded are skipped.
+ */
+public class ImageDirectoryFrameSource implements FrameSource {
+
+    private static final String[] EXTENSIONS = {".png", ".jpg", ".jpeg", ".bmp", ".tif", ".tiff"};
+
+    private final String directory;
+    private final File[] images;
+    private final double fps;
+    private final boolean maxSpeed;
+    private final long startNanos = System.nanoTime();
+    private int nextIndex = 0;
+    private long lastTimestamp = 0;
+
+    /**
+     * @param directory The directory to read images from.
+     * @param fps The frame rate the images are assumed to have been captured at.
+     * @param maxSpeed Whether to ignore {@code fps} for pacing and read as fast as possible.
+     */
+    public ImageDirectoryFrameSource(String directory, double fps, boolean maxSpeed) {
+        this.directory = directory;
+        this.fps = fps > 0 ? fps : 30.0;
+        this.maxSpeed = maxSpeed;
+        File[] files = new File(directory).listFiles((dir, name) -> isImage(name));
+        this.images = files == null ? new File[0] : files;
+        Arrays.sort(this.images);
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean read(Mat dst) {
+        while (nextIndex < images.length) {
+            int index = nextIndex++;
+            Mat image = imread(images[index].getAbsolutePath(), IMREAD_COLOR);
+            try {
+                if (image.empty()) {
+                    System.err.println("Skipping unreadable image: " + images[index]);
+                    continue;
+                }
+                image.copyTo(dst);
+            } finally {
+                image.deallocate();
+            }
+            lastTimestamp = startNanos + (long) (index * 1_000_000_000L / fps);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void skip() {
+        if (nextIndex < images.length) nextIndex++;
+    }
+
+    @Override
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return images.length > 0;
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return nextIndex >= images.length;
+    }
+
+    @Override
+    public boolean isLive() {
+        return false;
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return maxSpeed ? 0 : (long) (1_000_000_000L / fps);
+    }
+
+    @Override
+    public String describe() {
+        return "images " + directory + " (" + images.length + " files" + (maxSpeed ? ", max speed)" : ")");
+    }
+
+    @Override
+    public void close() {
+        nextIndex = images.length;
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.tkjonesy.frontend.models.frameSource;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgproc.FILLED;
+import static org.bytedeco.opencv.global.opencv_imgproc.LINE_8;
+import static org.bytedeco.opencv.global.opencv_imgproc.circle;
+import static org.bytedeco.opencv.global.opencv_imgproc.rectangle;
+
+/**
+ * A generated test pattern: a few solid shapes moving over a gray background. Deterministic, so it can be used to
+ * benchmark throughput and exercise the pipeline on machines without a camera.
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+    private final int width;
+    private final int height;
+    private final double fps;
+    private final boolean maxSpeed;
+    private final long frameLimit;
+    private final long startNanos = System.nanoTime();
+    private long frameIndex = 0;
+    private long lastTimestamp = 0;
+
+    private final Scalar background = new Scalar(64, 64, 64, 0);
+    private final Scalar boxColor = new Scalar(40, 160, 220, 0);
+    private final Scalar circleColor = new Scalar(220, 220, 220, 0);
+    private final Point topLeft = new Point(), bottomRight = new Point(), center = new Point();
+
+    /**
+     * @param width The frame width.
+     * @param height The frame height.
+     * @param fps The frame rate of the generated stream.
+     * @param maxSpeed Whether to ignore {@code fps} for pacing and generate frames as fast as possible.
+     * @param frameLimit The number of frames to generate, or 0 for an endless stream.
+     */
+    public SyntheticFrameSource(int width, int height, double fps, boolean maxSpeed, long frameLimit) {
+        this.width = width;
+        this.height = height;
+        this.fps = fps > 0 ? fps : 30.0;
+        this.maxSpeed = maxSpeed;
+        this.frameLimit = frameLimit;
+    }
+
+    @Override
+    public boolean read(Mat dst) {
+        if (isEndOfStream()) return false;
+        dst.create(height, width, CV_8UC3);
+        dst.put(background);
+
+        // A box sweeping left to right and a circle bouncing vertically
+        int boxSize = Math.max(8, height / 6);
+        int x = (int) ((frameIndex * 7) % Math.max(1, width - boxSize));
+        int y = height / 3;
+        rectangle(dst, topLeft.x(x).y(y), bottomRight.x(x + boxSize).y(y + boxSize), boxColor, FILLED, LINE_8, 0);
+
+        int radius = Math.max(4, height / 12);
+        int span = Math.max(1, height - 2 * radius);
+        long phase = (frameIndex * 5) % (2L * span);
+        int cy = radius + (int) (phase < span ? phase : 2L * span - phase);
+        circle(dst, center.x(width * 2 / 3).y(cy), radius, circleColor, FILLED, LINE_8, 0);
+
+        lastTimestamp = startNanos + (long) (frameIndex * 1_000_000_000L / fps);
+        frameIndex++;
+        return true;
+    }
+
+    @Override
+    public void skip() {
+        if (!isEndOfStream()) frameIndex++;
+    }
+
+    @Override
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return true;
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return frameLimit > 0 && frameIndex >= frameLimit;
+    }
+
+    @Override
+    public boolean isLive() {
+        return !maxSpeed;
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return maxSpeed ? 0 : (long) (1_000_000_000L / fps);
+    }
+
+    @Override
+    public String describe() {
+        return "synthetic " + width + "x" + height + (maxSpeed ? " (max speed)" : "");
+    }
+
+    @Override
+    public void close() {
+        frameIndex = frameLimit > 0 ? frameLimit : frameIndex;
+    }
+}
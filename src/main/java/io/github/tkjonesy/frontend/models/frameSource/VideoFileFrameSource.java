@@ -0,0 +1,102 @@
+package io.github.tkjonesy.frontend.models.frameSource;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FPS;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_COUNT;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_POS_MSEC;
+
+/**
+ * A recorded video file, e.g. a session's recording.mp4. Frames are timestamped from their position in the video.
+ * Played at the file's frame rate by default; in max-speed mode frames are read as fast as the pipeline takes them.
+ */
+public class VideoFileFrameSource implements FrameSource {
+
+    private final String path;
+    private final VideoCapture capture;
+    private final boolean maxSpeed;
+    private final double fps;
+    private final long startNanos = System.nanoTime();
+    private long lastTimestamp = 0;
+    private boolean endOfStream = false;
+
+    /**
+     * @param path The video file to read.
+     * @param maxSpeed Whether to ignore the file's frame rate and read as fast as possible.
+     */
+    public VideoFileFrameSource(String path, boolean maxSpeed) {
+        this.path = path;
+        this.capture = new VideoCapture(path);
+        this.maxSpeed = maxSpeed;
+        double fileFps = capture.isOpened() ? capture.get(CAP_PROP_FPS) : 0;
+        this.fps = fileFps > 0 ? fileFps : 30.0;
+    }
+
+    @Override
+    public boolean read(Mat dst) {
+        if (endOfStream) return false;
+        // The position before the read is the presentation time of the frame it returns
+        double positionMs = capture.get(CAP_PROP_POS_MSEC);
+        if (!capture.read(dst) || dst.empty()) {
+            endOfStream = true;
+            return false;
+        }
+        lastTimestamp = startNanos + (long) (positionMs * 1_000_000L);
+        return true;
+    }
+
+    @Override
+    public void skip() {
+        if (!endOfStream && !capture.grab()) endOfStream = true;
+    }
+
+    @Override
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return capture.isOpened();
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    @Override
+    public boolean isLive() {
+        return false;
+    }
+
+    @Override
+    public long getFrameIntervalNanos() {
+        return maxSpeed ? 0 : (long) (1_000_000_000L / fps);
+    }
+
+    /**
+     * @return The frame rate the video was recorded at.
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * @return The number of frames in the video as reported by its container, or 0 if unknown.
+     */
+    public long getFrameCount() {
+        return Math.max(0, (long) capture.get(CAP_PROP_FRAME_COUNT));
+    }
+
+    @Override
+    public String describe() {
+        return "video " + path + (maxSpeed ? " (max speed)" : "");
+    }
+
+    @Override
+    public void close() {
+        if (capture.isOpened()) capture.release();
+    }
+}
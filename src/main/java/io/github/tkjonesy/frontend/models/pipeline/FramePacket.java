@@ -0,0 +1,111 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import lombok.Getter;
+import lombok.Setter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code FramePacket} class is one capture slot of a {@link FrameRing}. It carries a captured frame through the
+ * pipeline together with the detections to draw on it, and owns the images each stage writes into, so a slot's
+ * native memory is allocated once and reused for every frame that passes through it.
+ * <p>
+ * A packet is reference counted: each stage either passes it on or calls {@link #release()}, and the last release
+ * returns the slot to its ring.
+ */
+@Getter
+public class FramePacket {
+
+    private final FrameRing ring;
+
+    /** The index of this slot in its ring. */
+    private final int slotIndex;
+
+    /** The captured frame; the camera reads straight into it. */
+    private final Mat frame = new Mat();
+
+    /** The frame resized to the display size. */
+    private final Mat display = new Mat();
+
+    /** The display frame after rotation, only used when a rotation is set. */
+    private final Mat rotated = new Mat();
+
+    /** The image that was shown, and is recorded: either {@link #display} or {@link #rotated}. */
+    @Setter
+    private Mat output;
+
+    /** The sequence number of the frame since capture started. */
+    private long frameSequence;
+
+    /** The {@link System#nanoTime()} at which the frame was captured. */
+    private long captureTimestamp;
+
+    /** A copy of the latest detections at capture time, owned by this packet. */
+    private final DetectionBatch detections = new DetectionBatch();
+
+    /** The stage currently holding the packet, reported by the leak detector. */
+    @Setter
+    private volatile String owner;
+
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    FramePacket(FrameRing ring, int slotIndex) {
+        this.ring = ring;
+        this.slotIndex = slotIndex;
+    }
+
+    // Prepares the slot for a new frame, called by the ring when the slot is handed out
+    void reset(long frameSequence, long captureTimestamp) {
+        this.frameSequence = frameSequence;
+        this.captureTimestamp = captureTimestamp;
+        this.output = null;
+        this.detections.clear();
+        this.owner = "capture";
+        this.refCount.set(1);
+    }
+
+    /**
+     * Updates the capture timestamp, e.g. once the camera read has returned.
+     */
+    public void setCaptureTimestamp(long captureTimestamp) {
+        this.captureTimestamp = captureTimestamp;
+    }
+
+    /**
+     * Adds a holder. Must be called before sharing the packet with another stage.
+     *
+     * @return This packet.
+     */
+    public FramePacket retain() {
+        refCount.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Removes a holder, returning the slot to its ring when the last holder releases it.
+     */
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            ring.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Frame " + frameSequence + " released more times than it was acquired");
+        }
+    }
+
+    /**
+     * @return {@code true} while the slot is borrowed from its ring.
+     */
+    public boolean isInUse() {
+        return refCount.get() > 0;
+    }
+
+    // Frees the slot's native memory when the ring is closed
+    void free() {
+        frame.deallocate();
+        display.deallocate();
+        rotated.deallocate();
+    }
+}
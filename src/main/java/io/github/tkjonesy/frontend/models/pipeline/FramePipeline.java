@@ -0,0 +1,66 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * The {@code FramePipeline} class owns the stages downstream of capture, starts and stops them together, and
+ * periodically prints the depth of every stage's queue.
+ */
+public class FramePipeline {
+
+    /** The interval between queue depth reports, in milliseconds. */
+    private static final long REPORT_INTERVAL_MS = 10_000;
+
+    private final List<PipelineStage<?>> stages = new ArrayList<>();
+    private Timer reportTimer;
+
+    /**
+     * Adds a stage. Stages are started in the order they were added and stopped in reverse.
+     *
+     * @param stage The stage to add.
+     * @return This pipeline.
+     */
+    public FramePipeline addStage(PipelineStage<?> stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    public synchronized void start() {
+        for (PipelineStage<?> stage : stages) {
+            stage.start();
+        }
+        reportTimer = new Timer("pipeline-report", true);
+        reportTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                System.out.println(report());
+            }
+        }, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS);
+    }
+
+    public synchronized void stop() {
+        if (reportTimer != null) {
+            reportTimer.cancel();
+            reportTimer = null;
+        }
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            stages.get(i).stop();
+        }
+    }
+
+    /**
+     * @return One line with the current and peak depth and the drop count of every stage's queue.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("📊 Pipeline queues:");
+        for (PipelineStage<?> stage : stages) {
+            StageQueue<?> queue = stage.getInput();
+            report.append(String.format(" %s %d/%d (peak %d, %s, dropped %d)",
+                    queue.getName(), queue.depth(), queue.getCapacity(), queue.resetPeakDepth(), queue.getPolicy(), queue.getDropped()));
+        }
+        return report.toString();
+    }
+}
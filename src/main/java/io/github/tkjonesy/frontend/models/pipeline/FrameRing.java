@@ -0,0 +1,117 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code FrameRing} class is a fixed set of {@link FramePacket} capture slots. The capture thread borrows a slot
+ * for every frame and the pipeline stages release it once the frame has been shown and recorded, so the capture
+ * path reuses the same native images instead of allocating new ones per frame.
+ * <p>
+ * If every slot is still held downstream, {@link #acquire} returns {@code null} and the frame is skipped; the ring
+ * should be sized to cover every queue between capture and the last stage. With leak detection enabled,
+ * {@link #reportLeaks()} lists the slots that were never released and the stage that last held them.
+ */
+public class FrameRing {
+
+    private final FramePacket[] slots;
+    private final ArrayBlockingQueue<FramePacket> free;
+    private final boolean trackLeaks;
+    private volatile boolean closed = false;
+
+    /** The number of frames skipped because every slot was in use. */
+    private final AtomicLong exhausted = new AtomicLong();
+
+    /**
+     * @param size The number of capture slots.
+     * @param trackLeaks Whether {@link #reportLeaks()} reports unreleased slots.
+     */
+    public FrameRing(int size, boolean trackLeaks) {
+        this.slots = new FramePacket[Math.max(1, size)];
+        this.free = new ArrayBlockingQueue<>(slots.length);
+        this.trackLeaks = trackLeaks;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new FramePacket(this, i);
+            free.add(slots[i]);
+        }
+    }
+
+    /**
+     * Borrows a slot for a new frame with a reference count of 1.
+     *
+     * @param frameSequence The sequence number of the frame.
+     * @param captureTimestamp The {@link System#nanoTime()} at which the frame was captured.
+     * @return The slot, or {@code null} if every slot is in use.
+     */
+    public FramePacket acquire(long frameSequence, long captureTimestamp) {
+        FramePacket packet = free.poll();
+        if (packet == null) {
+            exhausted.incrementAndGet();
+            return null;
+        }
+        packet.reset(frameSequence, captureTimestamp);
+        return packet;
+    }
+
+    /**
+     * @return The number of frames skipped because every slot was in use.
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * @return The number of slots currently borrowed by capture or a pipeline stage.
+     */
+    public int inUse() {
+        return slots.length - free.size();
+    }
+
+    /**
+     * @return The number of capture slots.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * Prints every slot that is still borrowed. Only available with leak detection enabled.
+     *
+     * @return The number of unreleased slots.
+     */
+    public int reportLeaks() {
+        if (!trackLeaks) return 0;
+        int leaks = 0;
+        for (FramePacket slot : slots) {
+            if (slot.isInUse()) {
+                leaks++;
+                System.err.println("❌ Frame slot " + slot.getSlotIndex() + " (frame " + slot.getFrameSequence()
+                        + ") was never released, last held by '" + slot.getOwner() + "'");
+            }
+        }
+        if (leaks == 0) {
+            System.out.println("✅ Frame ring: all " + slots.length + " slots released.");
+        }
+        return leaks;
+    }
+
+    /**
+     * Frees the native memory of every idle slot. Slots released after this call are freed as they come back.
+     */
+    public void close() {
+        closed = true;
+        FramePacket packet;
+        while ((packet = free.poll()) != null) {
+            packet.free();
+        }
+    }
+
+    void recycle(FramePacket packet) {
+        packet.setOwner(null);
+        if (closed) {
+            packet.free();
+        } else {
+            free.offer(packet);
+        }
+    }
+}
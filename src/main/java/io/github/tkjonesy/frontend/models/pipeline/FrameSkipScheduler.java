@@ -0,0 +1,195 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * The {@code FrameSkipScheduler} class chooses how many frames pass between two inferences, the cadence, from what it
+ * measures instead of a fixed {@code processEveryNthFrame}:
+ * <ul>
+ *     <li>the capture rate, over the last {@value #FRAME_WINDOW} frames,</li>
+ *     <li>the inference latency, over the last {@value #LATENCY_WINDOW} inferences,</li>
+ *     <li>the machine's CPU load, over the last {@value #LOAD_WINDOW} seconds.</li>
+ * </ul>
+ * The pool of K sessions can sustain K / latency inferences per second; at most {@code maxInferenceLoad} of that is
+ * used, and less while the CPU is busy with other work. The detection rate aimed for is {@code targetDetectionRate}
+ * or that budget, whichever is lower, and the cadence is the capture rate divided by it, kept between
+ * {@code minFrameSkip} and {@code maxFrameSkip}. Fast machines thus refresh detections more often, and slow ones skip
+ * more frames instead of letting inference fall behind.
+ * <p>
+ * The cadence is reconsidered once a second and only changed by steps of at least 20%, so noise in the measurements
+ * does not make it flicker. With {@code adaptiveFrameSkip} off, the cadence is {@code processEveryNthFrame}.
+ */
+public class FrameSkipScheduler {
+
+    private static final int FRAME_WINDOW = 64;
+    private static final int LATENCY_WINDOW = 32;
+    private static final int LOAD_WINDOW = 5;
+
+    /** How often the cadence is reconsidered. */
+    private static final long UPDATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Above this CPU load, the inference budget shrinks in proportion. */
+    private static final double CPU_BUSY = 0.9;
+
+    /**
+     * A cadence and what it was chosen from.
+     *
+     * @param everyNthFrame The number of frames between two inferences.
+     * @param detectionsPerSecond The detection refresh rate the cadence gives at the current capture rate.
+     * @param latencyMs The mean inference latency, or 0 before the first inference.
+     * @param adaptive Whether the cadence was chosen by the scheduler rather than fixed in the settings.
+     */
+    public record Cadence(int everyNthFrame, double detectionsPerSecond, double latencyMs, boolean adaptive) {}
+
+    private final ProgramSettings settings = ProgramSettings.getCurrentSettings();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+    // Capture times of the last frames, written by the capture thread only
+    private final long[] frameTimes = new long[FRAME_WINDOW];
+    private long frameCount = 0;
+
+    // Latencies of the last inferences, written by the inference threads
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencyCount = 0;
+
+    // CPU load samples taken at each update
+    private final double[] loads = new double[LOAD_WINDOW];
+    private long loadCount = 0;
+
+    private volatile Cadence cadence;
+    private long lastUpdate = 0;
+    private final IntSupplier sessions;
+    private final Consumer<Cadence> listener;
+
+    /**
+     * @param sessions Supplies the number of inference sessions, i.e. inferences that can run at once.
+     * @param listener Told about every cadence change, on the capture thread; may be {@code null}.
+     */
+    public FrameSkipScheduler(IntSupplier sessions, Consumer<Cadence> listener) {
+        this.sessions = sessions;
+        this.listener = listener;
+        int initial = Math.max(1, settings.getProcessEveryNthFrame());
+        this.cadence = new Cadence(settings.isAdaptiveFrameSkip() ? clampToBounds(initial) : initial, 0, 0, false);
+    }
+
+    /**
+     * Records the capture of a frame and reconsiders the cadence if it is due.
+     *
+     * @param now The capture time from {@link System#nanoTime()}.
+     * @return The number of frames between two inferences.
+     */
+    public int onFrame(long now) {
+        frameTimes[(int) (frameCount++ % FRAME_WINDOW)] = now;
+        if (now - lastUpdate >= UPDATE_INTERVAL_NANOS) {
+            lastUpdate = now;
+            update();
+        }
+        return cadence.everyNthFrame();
+    }
+
+    /**
+     * Records the latency of a finished inference. Safe to call from any thread.
+     *
+     * @param nanos The time the inference took.
+     */
+    public void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = nanos;
+        }
+    }
+
+    /**
+     * @return The current cadence.
+     */
+    public Cadence getCadence() {
+        return cadence;
+    }
+
+    private void update() {
+        double captureRate = captureRate();
+        double latency = meanLatency();
+        Cadence current = cadence;
+
+        if (!settings.isAdaptiveFrameSkip()) {
+            int fixed = Math.max(1, settings.getProcessEveryNthFrame());
+            if (fixed != current.everyNthFrame() || current.adaptive()) {
+                change(new Cadence(fixed, captureRate / fixed, latency / 1e6, false));
+            }
+            return;
+        }
+        sampleLoad();
+        if (latency <= 0 || captureRate <= 0) return;
+
+        // Inferences per second the pool sustains, less the headroom kept for capture, rendering and recording
+        double budget = Math.max(1, sessions.getAsInt()) * 1e9 / latency * settings.getMaxInferenceLoad();
+        double load = meanLoad();
+        if (load > CPU_BUSY) {
+            budget *= CPU_BUSY / load;
+        }
+        double rate = Math.min(settings.getTargetDetectionRate(), budget);
+        int ideal = clampToBounds((int) Math.ceil(captureRate / Math.max(rate, 1e-3)));
+
+        int step = Math.max(1, current.everyNthFrame() / 5);
+        if (!current.adaptive() || Math.abs(ideal - current.everyNthFrame()) >= step) {
+            change(new Cadence(ideal, captureRate / ideal, latency / 1e6, true));
+        }
+    }
+
+    private void change(Cadence next) {
+        cadence = next;
+        if (listener != null) listener.accept(next);
+    }
+
+    private int clampToBounds(int everyNthFrame) {
+        int min = Math.max(1, settings.getMinFrameSkip());
+        int max = Math.max(min, settings.getMaxFrameSkip());
+        return Math.max(min, Math.min(max, everyNthFrame));
+    }
+
+    // Frames per second over the window; for paced sources this is the source's frame rate
+    private double captureRate() {
+        int n = (int) Math.min(frameCount, FRAME_WINDOW);
+        if (n < 2) return 0;
+        long newest = frameTimes[(int) ((frameCount - 1) % FRAME_WINDOW)];
+        long oldest = frameTimes[(int) ((frameCount - n) % FRAME_WINDOW)];
+        return newest > oldest ? (n - 1) * 1e9 / (newest - oldest) : 0;
+    }
+
+    private double meanLatency() {
+        synchronized (latencies) {
+            int n = (int) Math.min(latencyCount, LATENCY_WINDOW);
+            if (n == 0) return 0;
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += latencies[i];
+            }
+            return (double) sum / n;
+        }
+    }
+
+    // The machine-wide CPU load, if the JVM reports it
+    private void sampleLoad() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean bean) {
+            double load = bean.getCpuLoad();
+            if (load >= 0) {
+                loads[(int) (loadCount++ % LOAD_WINDOW)] = load;
+            }
+        }
+    }
+
+    private double meanLoad() {
+        int n = (int) Math.min(loadCount, LOAD_WINDOW);
+        if (n == 0) return 0;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += loads[i];
+        }
+        return sum / n;
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_core.absdiff;
+import static org.bytedeco.opencv.global.opencv_core.bitwise_and;
+import static org.bytedeco.opencv.global.opencv_core.countNonZero;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_GRAYSCALE;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_NEAREST;
+import static org.bytedeco.opencv.global.opencv_imgproc.THRESH_BINARY;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+import static org.bytedeco.opencv.global.opencv_imgproc.threshold;
+
+/**
+ * The {@code MotionGate} class decides whether a frame is worth running inference on. It compares a small grayscale
+ * copy of the frame with the copy taken at the last inference; if too few pixels changed, the scene is static and the
+ * previous detections still hold, so inference is skipped. An inference is forced once the last one is older than
+ * {@code motionMaxStalenessMs}, so slow changes and changes outside the mask are still picked up.
+ * <p>
+ * The comparison runs on a {@value #WIDTH}-pixel-wide image, which costs a fraction of a millisecond. A pixel has
+ * changed if its gray level differs by more than {@code motionPixelThreshold}; a frame has changed if more than
+ * {@code motionAreaThreshold} of the watched pixels did. {@code motionMaskPath} optionally names an image whose
+ * non-zero pixels mark the region to watch, e.g. the instrument tray, stretched to the frame.
+ * <p>
+ * A gate is used by the capture thread only.
+ */
+public class MotionGate implements AutoCloseable {
+
+    /** The width frames are shrunk to before comparing; the height keeps the aspect ratio. */
+    private static final int WIDTH = 160;
+
+    private final ProgramSettings settings = ProgramSettings.getCurrentSettings();
+
+    // The shrunk frame, the one of the last inference and their thresholded difference
+    private final Mat small = new Mat();
+    private final Mat gray = new Mat();
+    private final Mat reference = new Mat();
+    private final Mat difference = new Mat();
+    private Size smallSize = new Size(0, 0);
+
+    // The region to watch at the shrunk size, or null to watch the whole frame
+    private Mat mask;
+    private String maskPath = "";
+    private int maskArea, maskWidth, maskHeight;
+
+    private long lastInference = 0;
+
+    /**
+     * Checks whether the frame changed enough since the last inference to run a new one. If it did, the frame
+     * becomes the reference for the next check.
+     *
+     * @param frame The 8-bit BGR frame about to be inferred.
+     * @param now The current time from {@link System#nanoTime()}.
+     * @return {@code true} to run inference on the frame, {@code false} to keep the previous detections.
+     */
+    public boolean shouldInfer(Mat frame, long now) {
+        shrink(frame);
+        boolean changed = reference.empty()
+                || reference.cols() != gray.cols() || reference.rows() != gray.rows()
+                || changedFraction() > settings.getMotionAreaThreshold();
+        boolean stale = now - lastInference >= TimeUnit.MILLISECONDS.toNanos(settings.getMotionMaxStalenessMs());
+        if (!changed && !stale) {
+            return false;
+        }
+        gray.copyTo(reference);
+        lastInference = now;
+        return true;
+    }
+
+    // A small grayscale copy of the frame; INTER_AREA averages the pixels away, which also smooths sensor noise
+    private void shrink(Mat frame) {
+        int height = Math.max(1, Math.round((float) WIDTH * frame.rows() / frame.cols()));
+        if (smallSize.width() != WIDTH || smallSize.height() != height) {
+            smallSize.close();
+            smallSize = new Size(WIDTH, height);
+        }
+        resize(frame, small, smallSize, 0, 0, INTER_AREA);
+        if (small.channels() == 3) {
+            cvtColor(small, gray, COLOR_BGR2GRAY);
+        } else {
+            small.copyTo(gray);
+        }
+    }
+
+    // The fraction of the watched pixels whose gray level changed by more than the pixel threshold
+    private float changedFraction() {
+        absdiff(gray, reference, difference);
+        threshold(difference, difference, settings.getMotionPixelThreshold(), 255, THRESH_BINARY);
+        updateMask();
+        if (mask != null) {
+            bitwise_and(difference, mask, difference);
+            return maskArea == 0 ? 0 : (float) countNonZero(difference) / maskArea;
+        }
+        return (float) countNonZero(difference) / (gray.cols() * gray.rows());
+    }
+
+    // Loads the mask when the setting or the frame size changed
+    private void updateMask() {
+        String path = settings.getMotionMaskPath() == null ? "" : settings.getMotionMaskPath();
+        if (path.equals(maskPath) && maskWidth == gray.cols() && maskHeight == gray.rows()) {
+            return;
+        }
+        maskPath = path;
+        maskWidth = gray.cols();
+        maskHeight = gray.rows();
+        if (mask != null) {
+            mask.close();
+            mask = null;
+        }
+        if (path.isEmpty()) return;
+
+        try (Mat image = imread(path, IMREAD_GRAYSCALE)) {
+            if (image.empty()) {
+                System.err.println("⚠️ Could not read the motion mask " + path + ", watching the whole frame");
+                return;
+            }
+            mask = new Mat();
+            resize(image, mask, smallSize, 0, 0, INTER_NEAREST);
+            threshold(mask, mask, 0, 255, THRESH_BINARY);
+            maskArea = countNonZero(mask);
+            System.out.println("🎭 Watching " + maskArea + " of " + (mask.cols() * mask.rows()) + " pixels for motion, masked by " + path);
+        }
+    }
+
+    /**
+     * Forgets the reference frame, so the next frame is inferred.
+     */
+    public void reset() {
+        reference.release();
+    }
+
+    @Override
+    public void close() {
+        small.close();
+        gray.close();
+        reference.close();
+        difference.close();
+        smallSize.close();
+        if (mask != null) mask.close();
+    }
+}
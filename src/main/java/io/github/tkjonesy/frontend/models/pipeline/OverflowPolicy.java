@@ -0,0 +1,16 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+/**
+ * The {@code OverflowPolicy} enum decides what a {@link StageQueue} does when an item arrives while it is full.
+ */
+public enum OverflowPolicy {
+
+    /** The producer waits until the consumer frees a slot. Nothing is lost, but a stalled consumer stalls the producer. */
+    BLOCK,
+
+    /** The oldest queued item is discarded to make room, so the consumer always sees the freshest items. */
+    DROP_OLDEST,
+
+    /** The arriving item is discarded, keeping the items already queued. */
+    DROP_NEWEST
+}
@@ -0,0 +1,90 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code PipelineStage} class runs one step of the frame pipeline on its own thread, taking items from its input
+ * {@link StageQueue} and passing each one to a handler. A slow stage only fills its own queue; how that affects the
+ * stage before it is decided by the queue's {@link OverflowPolicy}.
+ *
+ * @param <T> The type of item the stage consumes.
+ */
+public class PipelineStage<T> {
+
+    /**
+     * Processes one item. The handler owns the item and must release it or pass it on.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        void process(T item) throws Exception;
+    }
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final StageQueue<T> input;
+
+    private final Handler<T> handler;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * @param name The name of the stage, also used for its thread.
+     * @param input The queue the stage consumes.
+     * @param handler Called on the stage's thread for every item.
+     */
+    public PipelineStage(String name, StageQueue<T> input, Handler<T> handler) {
+        this.name = name;
+        this.input = input;
+        this.handler = handler;
+    }
+
+    /**
+     * Starts the stage's thread.
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::loop, "pipeline-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the stage's thread and discards any items left in its queue.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        input.clear();
+    }
+
+    private void loop() {
+        while (running) {
+            T item;
+            try {
+                item = input.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (item == null) continue;
+
+            try {
+                handler.process(item);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                System.err.println("Pipeline stage '" + name + "' failed: " + e.getMessage());
+            }
+        }
+    }
+}
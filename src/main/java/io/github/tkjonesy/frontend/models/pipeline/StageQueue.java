@@ -0,0 +1,123 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import lombok.Getter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The {@code StageQueue} class is the bounded hand-off between two pipeline stages. What happens when it is full is
+ * decided by its {@link OverflowPolicy}; items discarded by the policy are passed to a drop handler so they can
+ * release their resources.
+ *
+ * @param <T> The type of item passed between the stages.
+ */
+public class StageQueue<T> {
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final int capacity;
+
+    @Getter
+    private final OverflowPolicy policy;
+
+    private final ArrayBlockingQueue<T> queue;
+    private final Consumer<T> onDrop;
+
+    /** The number of items discarded by the overflow policy. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** The largest depth seen since the last {@link #resetPeakDepth()}. */
+    private volatile int peakDepth = 0;
+
+    /**
+     * @param name The name used in queue depth reports.
+     * @param capacity The maximum number of queued items.
+     * @param policy What to do with an item that arrives while the queue is full.
+     * @param onDrop Called with every item the policy discards, and with the items left in the queue by {@link #clear()}.
+     */
+    public StageQueue(String name, int capacity, OverflowPolicy policy, Consumer<T> onDrop) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy == null ? OverflowPolicy.DROP_OLDEST : policy;
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.onDrop = onDrop;
+    }
+
+    /**
+     * Adds an item, applying the overflow policy if the queue is full.
+     *
+     * @param item The item to add.
+     * @throws InterruptedException If interrupted while waiting under {@link OverflowPolicy#BLOCK}.
+     */
+    public void offer(T item) throws InterruptedException {
+        switch (policy) {
+            case BLOCK -> queue.put(item);
+            case DROP_NEWEST -> {
+                if (!queue.offer(item)) drop(item);
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(item)) {
+                    T oldest = queue.poll();
+                    if (oldest != null) drop(oldest);
+                }
+            }
+        }
+        int depth = queue.size();
+        if (depth > peakDepth) peakDepth = depth;
+    }
+
+    /**
+     * Waits for the next item.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of {@code timeout}.
+     * @return The next item, or {@code null} if none arrived in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Discards every queued item through the drop handler.
+     */
+    public void clear() {
+        T item;
+        while ((item = queue.poll()) != null) {
+            onDrop.accept(item);
+        }
+    }
+
+    /**
+     * @return The number of items currently queued.
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * @return The number of items discarded by the overflow policy so far.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The largest depth seen since the last reset.
+     */
+    public int resetPeakDepth() {
+        int peak = peakDepth;
+        peakDepth = queue.size();
+        return peak;
+    }
+
+    private void drop(T item) {
+        dropped.incrementAndGet();
+        onDrop.accept(item);
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import lombok.Getter;
+
+import java.util.function.Consumer;
+
+/**
+ * The {@code TickCounter} class passes the detections of every inference tick of an active session to the tool
+ * counts. It runs on the capture thread before the frame is queued for rendering, so a frame the render or record
+ * queue drops later has still been counted, and the buffer threshold sees every tick in order.
+ */
+public class TickCounter {
+
+    private final Consumer<DetectionBatch> toolCounts;
+
+    /** The number of ticks passed to the tool counts. */
+    @Getter
+    private long ticksCounted = 0;
+
+    /**
+     * @param toolCounts Updates the tool counts with one tick's detections, e.g. {@code OnnxRunner::processDetections}.
+     */
+    public TickCounter(Consumer<DetectionBatch> toolCounts) {
+        this.toolCounts = toolCounts;
+    }
+
+    /**
+     * Counts one inference tick. Ticks outside a session are ignored, like the frames that are not recorded.
+     *
+     * @param detections The detections of the tick: the latest inference result, or the tracks with
+     *                   {@code countFromTracks}. Only read during the call.
+     * @param sessionActive Whether a session is active.
+     */
+    public void count(DetectionBatch detections, boolean sessionActive) {
+        if (!sessionActive) return;
+        toolCounts.accept(detections);
+        ticksCounted++;
+    }
+}
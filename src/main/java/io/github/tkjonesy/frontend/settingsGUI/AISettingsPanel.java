@@ -24,6 +24,14 @@ public class AISettingsPanel extends JPanel {
     @Getter
     private final JSpinner processEveryNthFrameSpinner;
     @Getter
+    private final JCheckBox adaptiveFrameSkipCheckbox;
+    @Getter
+    private final JSpinner targetDetectionRateSpinner;
+    @Getter
+    private final JSpinner minFrameSkipSpinner;
+    @Getter
+    private final JSpinner maxFrameSkipSpinner;
+    @Getter
     private final JSlider confThresholdSlider;
     private final JTextField confThresholdTextField;
 
@@ -50,9 +58,34 @@ public class AISettingsPanel extends JPanel {
 
         // Process Every Nth Frame (Spinner)
         JLabel processNthLabel = new JLabel("Process Every Nth Frame:");
-        processEveryNthFrameSpinner = new JSpinner(new SpinnerNumberModel(settings.getProcessEveryNthFrame(), 15, 1000, 1));
+        processEveryNthFrameSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, settings.getProcessEveryNthFrame()), 1, 1000, 1));
         processEveryNthFrameSpinner.setToolTipText("Controls how often the AI processes frames. Higher values improve performance.");
 
+        // Adaptive Frame Skip (Checkbox + Spinners)
+        adaptiveFrameSkipCheckbox = new JCheckBox("Adapt to Machine Speed", settings.isAdaptiveFrameSkip());
+        adaptiveFrameSkipCheckbox.setToolTipText("Choose how often frames are processed from the measured inference time, instead of every Nth frame.");
+        JLabel targetRateLabel = new JLabel("Target Detections/s:");
+        targetDetectionRateSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0.1, Math.min(30.0, settings.getTargetDetectionRate())), 0.1, 30.0, 0.5));
+        targetDetectionRateSpinner.setToolTipText("How often detections should refresh. Slower machines refresh less often.");
+        JLabel frameSkipBoundsLabel = new JLabel("Every");
+        minFrameSkipSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, settings.getMinFrameSkip()), 1, 1000, 1));
+        JLabel frameSkipBoundsSeparator = new JLabel("to");
+        maxFrameSkipSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, settings.getMaxFrameSkip()), 1, 1000, 1));
+        JLabel frameSkipBoundsUnit = new JLabel("frames");
+        minFrameSkipSpinner.setToolTipText("Never process frames more often than this.");
+        maxFrameSkipSpinner.setToolTipText("Never process frames less often than this.");
+
+        // Only the controls of the chosen mode are editable
+        Runnable updateFrameSkipControls = () -> {
+            boolean adaptive = adaptiveFrameSkipCheckbox.isSelected();
+            processEveryNthFrameSpinner.setEnabled(!adaptive);
+            targetDetectionRateSpinner.setEnabled(adaptive);
+            minFrameSkipSpinner.setEnabled(adaptive);
+            maxFrameSkipSpinner.setEnabled(adaptive);
+        };
+        adaptiveFrameSkipCheckbox.addActionListener(e -> updateFrameSkipControls.run());
+        updateFrameSkipControls.run();
+
         // Confidence Threshold (Slider + Editable TextField)
         JLabel confThresholdLabel = new JLabel("Confidence Threshold:");
 
@@ -119,6 +152,23 @@ public class AISettingsPanel extends JPanel {
                                         .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                                         .addComponent(processEveryNthFrameSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
                         )
+                        .addComponent(adaptiveFrameSkipCheckbox)
+                        .addGroup(
+                                modelLayout.createSequentialGroup()
+                                        .addComponent(targetRateLabel)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                        .addComponent(targetDetectionRateSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                                        .addComponent(frameSkipBoundsLabel)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                        .addComponent(minFrameSkipSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                        .addComponent(frameSkipBoundsSeparator)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                        .addComponent(maxFrameSkipSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                        .addComponent(frameSkipBoundsUnit)
+                        )
                         .addGroup(
                                 modelLayout.createSequentialGroup()
                                         .addComponent(confThresholdLabel)
@@ -152,6 +202,19 @@ public class AISettingsPanel extends JPanel {
                                         .addComponent(processNthLabel)
                                         .addComponent(processEveryNthFrameSpinner)
                         )
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(adaptiveFrameSkipCheckbox)
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                        .addGroup(
+                                modelLayout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                                        .addComponent(targetRateLabel)
+                                        .addComponent(targetDetectionRateSpinner)
+                                        .addComponent(frameSkipBoundsLabel)
+                                        .addComponent(minFrameSkipSpinner)
+                                        .addComponent(frameSkipBoundsSeparator)
+                                        .addComponent(maxFrameSkipSpinner)
+                                        .addComponent(frameSkipBoundsUnit)
+                        )
                         .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
                         .addGroup(
                                 modelLayout.createParallelGroup(GroupLayout.Alignment.BASELINE)
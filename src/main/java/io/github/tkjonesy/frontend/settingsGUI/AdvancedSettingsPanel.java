@@ -9,10 +9,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Getter
 public class AdvancedSettingsPanel extends JPanel {
@@ -23,9 +21,19 @@ public class AdvancedSettingsPanel extends JPanel {
     private final JSlider nmsThresholdSlider;
     private final JTextField nmsThresholdTextField;
     private final JComboBox<String> optimizationLevelComboBox;
-    private final JSpinner numInputElementsSpinner;
-    private final JSpinner inputSizeSpinner;
-    private final JTextField inputShapeTextField;
+    private final JCheckBox rectangularInferenceCheckbox;
+    private final JSpinner sessionPoolSizeSpinner;
+    private final JSpinner intraOpThreadsSpinner;
+    private final JSpinner interOpThreadsSpinner;
+    private final JComboBox<String> executionModeComboBox;
+    private final JCheckBox memoryPatternCheckbox;
+    private final JCheckBox cpuArenaCheckbox;
+    private final JCheckBox motionGatingCheckbox;
+    private final JSpinner motionPixelThresholdSpinner;
+    private final JCheckBox objectTrackingCheckbox;
+    private final JSpinner trackMaxCoastSpinner;
+    private final JCheckBox boxPredictionCheckbox;
+    private final JCheckBox countFromTracksCheckbox;
 
     public AdvancedSettingsPanel() {
         final ProgramSettings settings = ProgramSettings.getCurrentSettings();
@@ -74,23 +82,61 @@ public class AdvancedSettingsPanel extends JPanel {
         optimizationLevelComboBox.setSelectedItem(settings.getOptimizationLevel().name());
         optimizationLevelComboBox.setToolTipText("Choose the level of ONNX Runtime optimizations.");
 
-        // Num Input Elements (Spinner)
-        JLabel numInputElementsLabel = new JLabel("Num Input Elements:");
-        numInputElementsSpinner = new JSpinner(new SpinnerNumberModel(settings.getNumInputElements(), 1, Integer.MAX_VALUE, 1));
-        numInputElementsSpinner.setToolTipText("Total number of input elements.");
-
-        // Input Size (Spinner)
-        JLabel inputSizeLabel = new JLabel("Input Size:");
-        inputSizeSpinner = new JSpinner(new SpinnerNumberModel(settings.getInputSize(), 1, Integer.MAX_VALUE, 1));
-        inputSizeSpinner.setToolTipText("The input image size (e.g., 640 for YOLO).");
-
-        // Input Shape (TextField)
-        JLabel inputShapeLabel = new JLabel("Input Shape:");
-        inputShapeTextField = new JTextField(
-                Arrays.stream(settings.getInputShape()).mapToObj(String::valueOf).collect(Collectors.joining(", ")),
-                20
-        );
-        inputShapeTextField.setToolTipText("Comma-separated input shape (e.g., 1,3,640,640)");
+        // Rectangular Inference (Checkbox)
+        rectangularInferenceCheckbox = new JCheckBox("Rectangular Inference", settings.isRectangularInference());
+        rectangularInferenceCheckbox.setToolTipText("Pad frames only to a multiple of the model's stride instead of a square. Needs a model exported with dynamic height and width.");
+
+        // Session Pool Size (Spinner); saved values are capped at this machine's cores, e.g. from a copied settings file
+        int cores = Runtime.getRuntime().availableProcessors();
+        JLabel sessionPoolSizeLabel = new JLabel("Inference Sessions:");
+        sessionPoolSizeSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, Math.min(cores, settings.getSessionPoolSize())), 1, cores, 1));
+        sessionPoolSizeSpinner.setToolTipText("Number of frames that can be inferred at once. Each session gets its own share of the " + cores + " cores.");
+
+        // Intra-op Threads (Spinner)
+        JLabel intraOpThreadsLabel = new JLabel("Intra-op Threads:");
+        intraOpThreadsSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(cores, settings.getIntraOpThreads())), 0, cores, 1));
+        intraOpThreadsSpinner.setToolTipText("Threads per session used inside one operator (0 to split the cores across the sessions).");
+
+        // Inter-op Threads (Spinner)
+        JLabel interOpThreadsLabel = new JLabel("Inter-op Threads:");
+        interOpThreadsSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(cores, settings.getInterOpThreads())), 0, cores, 1));
+        interOpThreadsSpinner.setToolTipText("Threads per session running independent operators in parallel mode (0 for the default).");
+
+        // Execution Mode (Dropdown)
+        JLabel executionModeLabel = new JLabel("Execution Mode:");
+        executionModeComboBox = new JComboBox<>(new String[]{"SEQUENTIAL", "PARALLEL"});
+        executionModeComboBox.setSelectedItem(settings.getExecutionMode().name());
+        executionModeComboBox.setToolTipText("Run the model's operators one after another, or independent ones in parallel.");
+
+        // Memory Pattern & CPU Arena (Checkboxes)
+        memoryPatternCheckbox = new JCheckBox("Memory Pattern Optimization", settings.isMemoryPatternOptimization());
+        memoryPatternCheckbox.setToolTipText("Pre-plan tensor memory from the first run. Best with fixed input shapes.");
+        cpuArenaCheckbox = new JCheckBox("CPU Arena Allocator", settings.isCpuArenaAllocator());
+        cpuArenaCheckbox.setToolTipText("Keep freed tensor memory in an arena for reuse instead of returning it to the system.");
+
+        // Motion Gating (Checkbox + Spinner)
+        motionGatingCheckbox = new JCheckBox("Skip Inference on Static Scenes", settings.isMotionGating());
+        motionGatingCheckbox.setToolTipText("Reuse the last detections while the frame does not change. Inference still runs every " + settings.getMotionMaxStalenessMs() + " ms.");
+        JLabel motionPixelThresholdLabel = new JLabel("Motion Threshold:");
+        motionPixelThresholdSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, Math.min(255, settings.getMotionPixelThreshold())), 1, 255, 1));
+        motionPixelThresholdSpinner.setToolTipText("Gray levels a pixel must change by to count as motion. Raise it for noisy cameras.");
+
+        // Object Tracking (Checkbox + Spinner)
+        objectTrackingCheckbox = new JCheckBox("Track Objects Across Inferences", settings.isObjectTracking());
+        objectTrackingCheckbox.setToolTipText("Give each detected object a persistent id, and keep it through briefly missed detections.");
+        JLabel trackMaxCoastLabel = new JLabel("Keep Lost Tracks (ms):");
+        trackMaxCoastSpinner = new JSpinner(new SpinnerNumberModel(Math.max(0, Math.min(60000, settings.getTrackMaxCoastMs())), 0, 60000, 250));
+        trackMaxCoastSpinner.setToolTipText("How long an object that is no longer detected keeps its track, e.g. while a hand covers it.");
+        boxPredictionCheckbox = new JCheckBox("Predict Box Motion Between Inferences", settings.isBoxPrediction());
+        boxPredictionCheckbox.setToolTipText("Move the boxes of tracked objects with their estimated speed, so they stay on instruments being moved.");
+        boxPredictionCheckbox.setEnabled(objectTrackingCheckbox.isSelected());
+        countFromTracksCheckbox = new JCheckBox("Count Tools From Tracks", settings.isCountFromTracks());
+        countFromTracksCheckbox.setToolTipText("Take the tool counts in the logs and AAR from the tracks, so briefly missed objects are not logged as removed and added again.");
+        countFromTracksCheckbox.setEnabled(objectTrackingCheckbox.isSelected());
+        objectTrackingCheckbox.addActionListener(e -> {
+            boxPredictionCheckbox.setEnabled(objectTrackingCheckbox.isSelected());
+            countFromTracksCheckbox.setEnabled(objectTrackingCheckbox.isSelected());
+        });
 
         // Layout using GroupLayout
         GroupLayout layout = new GroupLayout(this);
@@ -114,18 +160,41 @@ public class AdvancedSettingsPanel extends JPanel {
                                 .addComponent(optimizationLabel)
                                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(optimizationLevelComboBox, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+                        .addComponent(rectangularInferenceCheckbox)
+                        .addGroup(layout.createSequentialGroup()
+                                .addComponent(sessionPoolSizeLabel)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(sessionPoolSizeSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
                         .addGroup(layout.createSequentialGroup()
-                                .addComponent(numInputElementsLabel)
+                                .addComponent(intraOpThreadsLabel)
                                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
-                                .addComponent(numInputElementsSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+                                .addComponent(intraOpThreadsSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(interOpThreadsLabel)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(interOpThreadsSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+                        .addGroup(layout.createSequentialGroup()
+                                .addComponent(executionModeLabel)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(executionModeComboBox, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
                         .addGroup(layout.createSequentialGroup()
-                                .addComponent(inputSizeLabel)
+                                .addComponent(memoryPatternCheckbox)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(cpuArenaCheckbox))
+                        .addGroup(layout.createSequentialGroup()
+                                .addComponent(motionGatingCheckbox)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(motionPixelThresholdLabel)
                                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
-                                .addComponent(inputSizeSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+                                .addComponent(motionPixelThresholdSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
                         .addGroup(layout.createSequentialGroup()
-                                .addComponent(inputShapeLabel)
+                                .addComponent(objectTrackingCheckbox)
+                                .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                                .addComponent(trackMaxCoastLabel)
                                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
-                                .addComponent(inputShapeTextField, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+                                .addComponent(trackMaxCoastSpinner, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
+                        .addComponent(boxPredictionCheckbox)
+                        .addComponent(countFromTracksCheckbox)
         );
 
         layout.setVerticalGroup(
@@ -145,17 +214,39 @@ public class AdvancedSettingsPanel extends JPanel {
                                 .addComponent(optimizationLabel)
                                 .addComponent(optimizationLevelComboBox))
                         .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addComponent(rectangularInferenceCheckbox)
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                                .addComponent(sessionPoolSizeLabel)
+                                .addComponent(sessionPoolSizeSpinner))
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                                .addComponent(intraOpThreadsLabel)
+                                .addComponent(intraOpThreadsSpinner)
+                                .addComponent(interOpThreadsLabel)
+                                .addComponent(interOpThreadsSpinner))
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                                .addComponent(executionModeLabel)
+                                .addComponent(executionModeComboBox))
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
                         .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
-                                .addComponent(numInputElementsLabel)
-                                .addComponent(numInputElementsSpinner))
+                                .addComponent(memoryPatternCheckbox)
+                                .addComponent(cpuArenaCheckbox))
                         .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
                         .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
-                                .addComponent(inputSizeLabel)
-                                .addComponent(inputSizeSpinner))
+                                .addComponent(motionGatingCheckbox)
+                                .addComponent(motionPixelThresholdLabel)
+                                .addComponent(motionPixelThresholdSpinner))
                         .addPreferredGap(LayoutStyle.ComponentPlacement.UNRELATED)
                         .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
-                                .addComponent(inputShapeLabel)
-                                .addComponent(inputShapeTextField))
+                                .addComponent(objectTrackingCheckbox)
+                                .addComponent(trackMaxCoastLabel)
+                                .addComponent(trackMaxCoastSpinner))
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(boxPredictionCheckbox)
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(countFromTracksCheckbox)
         );
 
         this.setLayout(layout);
@@ -34,6 +34,8 @@ public class SettingsWindow extends JDialog {
     private JSlider cameraRotationSlider;
 
     private JSpinner processEveryNthFrameSpinner;
+    private JCheckBox adaptiveFrameSkipCheckbox;
+    private JSpinner targetDetectionRateSpinner, minFrameSkipSpinner, maxFrameSkipSpinner;
     private JSlider confThresholdSlider;
     private JCheckBox boundingBoxCheckbox;
 
@@ -42,9 +44,16 @@ public class SettingsWindow extends JDialog {
     private JComboBox<String> gpuDeviceSelector;
     private JSlider nmsThresholdSlider;
     private JComboBox<String> optimizationLevelComboBox;
-    private JSpinner numInputElementsSpinner;
-    private JSpinner inputSizeSpinner;
-    private JTextField inputShapeTextField;
+    private JCheckBox rectangularInferenceCheckbox;
+    private JSpinner sessionPoolSizeSpinner, intraOpThreadsSpinner, interOpThreadsSpinner;
+    private JComboBox<String> executionModeComboBox;
+    private JCheckBox memoryPatternCheckbox, cpuArenaCheckbox;
+    private JCheckBox motionGatingCheckbox;
+    private JSpinner motionPixelThresholdSpinner;
+    private JCheckBox objectTrackingCheckbox;
+    private JSpinner trackMaxCoastSpinner;
+    private JCheckBox boxPredictionCheckbox;
+    private JCheckBox countFromTracksCheckbox;
 
     private static final Color OCEAN = new Color(55, 90, 129);
 
@@ -277,6 +286,10 @@ public class SettingsWindow extends JDialog {
         this.modelSelector = modelPanel.getModelSelector();
         this.labelSelector = modelPanel.getLabelSelector();
         this.processEveryNthFrameSpinner = modelPanel.getProcessEveryNthFrameSpinner();
+        this.adaptiveFrameSkipCheckbox = modelPanel.getAdaptiveFrameSkipCheckbox();
+        this.targetDetectionRateSpinner = modelPanel.getTargetDetectionRateSpinner();
+        this.minFrameSkipSpinner = modelPanel.getMinFrameSkipSpinner();
+        this.maxFrameSkipSpinner = modelPanel.getMaxFrameSkipSpinner();
         this.confThresholdSlider = modelPanel.getConfThresholdSlider();
 
 
@@ -288,9 +301,19 @@ public class SettingsWindow extends JDialog {
         this.gpuDeviceSelector = advancedPanel.getGpuDeviceSelector();
         this.nmsThresholdSlider = advancedPanel.getNmsThresholdSlider();
         this.optimizationLevelComboBox = advancedPanel.getOptimizationLevelComboBox();
-        this.numInputElementsSpinner = advancedPanel.getNumInputElementsSpinner();
-        this.inputSizeSpinner = advancedPanel.getInputSizeSpinner();
-        this.inputShapeTextField = advancedPanel.getInputShapeTextField();
+        this.rectangularInferenceCheckbox = advancedPanel.getRectangularInferenceCheckbox();
+        this.sessionPoolSizeSpinner = advancedPanel.getSessionPoolSizeSpinner();
+        this.intraOpThreadsSpinner = advancedPanel.getIntraOpThreadsSpinner();
+        this.interOpThreadsSpinner = advancedPanel.getInterOpThreadsSpinner();
+        this.executionModeComboBox = advancedPanel.getExecutionModeComboBox();
+        this.memoryPatternCheckbox = advancedPanel.getMemoryPatternCheckbox();
+        this.cpuArenaCheckbox = advancedPanel.getCpuArenaCheckbox();
+        this.motionGatingCheckbox = advancedPanel.getMotionGatingCheckbox();
+        this.motionPixelThresholdSpinner = advancedPanel.getMotionPixelThresholdSpinner();
+        this.objectTrackingCheckbox = advancedPanel.getObjectTrackingCheckbox();
+        this.trackMaxCoastSpinner = advancedPanel.getTrackMaxCoastSpinner();
+        this.boxPredictionCheckbox = advancedPanel.getBoxPredictionCheckbox();
+        this.countFromTracksCheckbox = advancedPanel.getCountFromTracksCheckbox();
 
         /*--------------+
         | BUTTON LAYOUT |
@@ -435,6 +458,46 @@ public class SettingsWindow extends JDialog {
                 }
         );
 
+        addSettingChangeListener(adaptiveFrameSkipCheckbox, (ActionListener)
+                e -> {
+                    boolean value = adaptiveFrameSkipCheckbox.isSelected();
+                    System.out.println("Adaptive frame skip: " + value);
+                    settingsUpdates.put("adaptiveFrameSkip", value);
+                    if(settings.isAdaptiveFrameSkip() == value)
+                        settingsUpdates.remove("adaptiveFrameSkip");
+                }
+        );
+
+        addSettingChangeListener(targetDetectionRateSpinner, (ChangeListener)
+                e -> {
+                    float value = ((Number) targetDetectionRateSpinner.getValue()).floatValue();
+                    System.out.println("Target detection rate: " + value);
+                    settingsUpdates.put("targetDetectionRate", value);
+                    if(settings.getTargetDetectionRate() == value)
+                        settingsUpdates.remove("targetDetectionRate");
+                }
+        );
+
+        addSettingChangeListener(minFrameSkipSpinner, (ChangeListener)
+                e -> {
+                    int value = (int) minFrameSkipSpinner.getValue();
+                    System.out.println("Minimum frame skip: " + value);
+                    settingsUpdates.put("minFrameSkip", value);
+                    if(settings.getMinFrameSkip() == value)
+                        settingsUpdates.remove("minFrameSkip");
+                }
+        );
+
+        addSettingChangeListener(maxFrameSkipSpinner, (ChangeListener)
+                e -> {
+                    int value = (int) maxFrameSkipSpinner.getValue();
+                    System.out.println("Maximum frame skip: " + value);
+                    settingsUpdates.put("maxFrameSkip", value);
+                    if(settings.getMaxFrameSkip() == value)
+                        settingsUpdates.remove("maxFrameSkip");
+                }
+        );
+
         addSettingChangeListener(confThresholdSlider, (ChangeListener)
                 e -> {
                     float value = confThresholdSlider.getValue() / 100f;
@@ -476,33 +539,133 @@ public class SettingsWindow extends JDialog {
                 }
         );
 
-        addSettingChangeListener(numInputElementsSpinner, (ChangeListener)
+        addSettingChangeListener(sessionPoolSizeSpinner, (ChangeListener)
+                e -> {
+                    int value = (int) sessionPoolSizeSpinner.getValue();
+                    System.out.println("Inference sessions: " + value);
+                    settingsUpdates.put("sessionPoolSize", value);
+                    if(settings.getSessionPoolSize() == value)
+                        settingsUpdates.remove("sessionPoolSize");
+                }
+        );
+
+        addSettingChangeListener(intraOpThreadsSpinner, (ChangeListener)
+                e -> {
+                    int value = (int) intraOpThreadsSpinner.getValue();
+                    System.out.println("Intra-op threads: " + value);
+                    settingsUpdates.put("intraOpThreads", value);
+                    if(settings.getIntraOpThreads() == value)
+                        settingsUpdates.remove("intraOpThreads");
+                }
+        );
+
+        addSettingChangeListener(interOpThreadsSpinner, (ChangeListener)
+                e -> {
+                    int value = (int) interOpThreadsSpinner.getValue();
+                    System.out.println("Inter-op threads: " + value);
+                    settingsUpdates.put("interOpThreads", value);
+                    if(settings.getInterOpThreads() == value)
+                        settingsUpdates.remove("interOpThreads");
+                }
+        );
+
+        addSettingChangeListener(executionModeComboBox, (ActionListener)
+                e -> {
+                    String value = (String) executionModeComboBox.getSelectedItem();
+                    System.out.println("Execution mode: " + value);
+                    settingsUpdates.put("executionMode", OrtSession.SessionOptions.ExecutionMode.valueOf(value));
+                    if(settings.getExecutionMode().toString().equals(value))
+                        settingsUpdates.remove("executionMode");
+                }
+        );
+
+        addSettingChangeListener(rectangularInferenceCheckbox, (ActionListener)
+                e -> {
+                    boolean value = rectangularInferenceCheckbox.isSelected();
+                    System.out.println("Rectangular inference: " + value);
+                    settingsUpdates.put("rectangularInference", value);
+                    if(settings.isRectangularInference() == value)
+                        settingsUpdates.remove("rectangularInference");
+                }
+        );
+
+        addSettingChangeListener(memoryPatternCheckbox, (ActionListener)
+                e -> {
+                    boolean value = memoryPatternCheckbox.isSelected();
+                    System.out.println("Memory pattern optimization: " + value);
+                    settingsUpdates.put("memoryPatternOptimization", value);
+                    if(settings.isMemoryPatternOptimization() == value)
+                        settingsUpdates.remove("memoryPatternOptimization");
+                }
+        );
+
+        addSettingChangeListener(cpuArenaCheckbox, (ActionListener)
+                e -> {
+                    boolean value = cpuArenaCheckbox.isSelected();
+                    System.out.println("CPU arena allocator: " + value);
+                    settingsUpdates.put("cpuArenaAllocator", value);
+                    if(settings.isCpuArenaAllocator() == value)
+                        settingsUpdates.remove("cpuArenaAllocator");
+                }
+        );
+
+        addSettingChangeListener(motionGatingCheckbox, (ActionListener)
+                e -> {
+                    boolean value = motionGatingCheckbox.isSelected();
+                    System.out.println("Motion gating: " + value);
+                    settingsUpdates.put("motionGating", value);
+                    if(settings.isMotionGating() == value)
+                        settingsUpdates.remove("motionGating");
+                }
+        );
+
+        addSettingChangeListener(motionPixelThresholdSpinner, (ChangeListener)
+                e -> {
+                    int value = (int) motionPixelThresholdSpinner.getValue();
+                    System.out.println("Motion threshold: " + value);
+                    settingsUpdates.put("motionPixelThreshold", value);
+                    if(settings.getMotionPixelThreshold() == value)
+                        settingsUpdates.remove("motionPixelThreshold");
+                }
+        );
+
+        addSettingChangeListener(objectTrackingCheckbox, (ActionListener)
+                e -> {
+                    boolean value = objectTrackingCheckbox.isSelected();
+                    System.out.println("Object tracking: " + value);
+                    settingsUpdates.put("objectTracking", value);
+                    if(settings.isObjectTracking() == value)
+                        settingsUpdates.remove("objectTracking");
+                }
+        );
+
+        addSettingChangeListener(trackMaxCoastSpinner, (ChangeListener)
                 e -> {
-                    int value = (int) numInputElementsSpinner.getValue();
-                    System.out.println("Num input elements: " + value);
-                    settingsUpdates.put("numInputElements", value);
-                    if(settings.getNumInputElements() == value)
-                        settingsUpdates.remove("numInputElements");
+                    int value = (int) trackMaxCoastSpinner.getValue();
+                    System.out.println("Keep lost tracks: " + value + " ms");
+                    settingsUpdates.put("trackMaxCoastMs", value);
+                    if(settings.getTrackMaxCoastMs() == value)
+                        settingsUpdates.remove("trackMaxCoastMs");
                 }
         );
 
-        addSettingChangeListener(inputSizeSpinner, (ChangeListener)
+        addSettingChangeListener(boxPredictionCheckbox, (ActionListener)
                 e -> {
-                    int value = (int) inputSizeSpinner.getValue();
-                    System.out.println("Input size: " + value);
-                    settingsUpdates.put("inputSize", value);
-                    if(settings.getInputSize() == value)
-                        settingsUpdates.remove("inputSize");
+                    boolean value = boxPredictionCheckbox.isSelected();
+                    System.out.println("Box prediction: " + value);
+                    settingsUpdates.put("boxPrediction", value);
+                    if(settings.isBoxPrediction() == value)
+                        settingsUpdates.remove("boxPrediction");
                 }
         );
 
-        addSettingChangeListener(inputShapeTextField, (PropertyChangeListener)
+        addSettingChangeListener(countFromTracksCheckbox, (ActionListener)
                 e -> {
-                    String value = inputShapeTextField.getText();
-                    System.out.println("Input shape: " + value);
-                    settingsUpdates.put("inputShape", value);
-                    if(Arrays.toString(settings.getInputShape()).equals(value))
-                        settingsUpdates.remove("inputShape");
+                    boolean value = countFromTracksCheckbox.isSelected();
+                    System.out.println("Count tools from tracks: " + value);
+                    settingsUpdates.put("countFromTracks", value);
+                    if(settings.isCountFromTracks() == value)
+                        settingsUpdates.remove("countFromTracks");
                 }
         );
 
@@ -0,0 +1,195 @@
+package io.github.tkjonesy.headless;
+
+import io.github.tkjonesy.ONNX.models.OnnxRunner;
+import io.github.tkjonesy.frontend.models.CameraFetcher;
+import io.github.tkjonesy.frontend.models.ConsoleLogHandler;
+import io.github.tkjonesy.frontend.models.LogHandler;
+import io.github.tkjonesy.frontend.models.SessionHandler;
+import io.github.tkjonesy.frontend.models.frameSource.FrameSource;
+import io.github.tkjonesy.frontend.models.frameSource.FrameSources;
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+import io.github.tkjonesy.utils.settings.SettingsLoader;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code HeadlessApp} class runs AIMs without a user interface: it captures from the camera (or another
+ * {@link FrameSource}), runs inference and tracking, and records a session to the sessions directory, logging to the
+ * terminal. No Swing or AWT classes are
+ * loaded and no CPU is spent on rendering, so it can run on display-less machines, including Linux.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp AIMs.jar io.github.tkjonesy.headless.HeadlessApp --session "OR 3" [options]
+ *
+ *   --config &lt;file&gt;        Settings JSON to use instead of ~/AIMs/settings.json
+ *   --session &lt;title&gt;      Session title (required)
+ *   --description &lt;text&gt;   Session description
+ *   --duration &lt;seconds&gt;   Stop after this many seconds; otherwise run until interrupted (Ctrl+C)
+ *   --camera &lt;id&gt;          Camera device id
+ *   --source &lt;spec&gt;        Frame source instead of the camera: video:&lt;file&gt;, images:&lt;dir&gt; or synthetic[:WxH]
+ *   --max-speed            Read recorded and synthetic sources as fast as possible instead of in real time
+ *   --model &lt;file&gt;         ONNX model path
+ *   --labels &lt;file&gt;        Label file path
+ *   --every &lt;n&gt;            Run inference on every Nth frame instead of adapting to the inference latency
+ *   --sessions &lt;n&gt;         Number of inference sessions, i.e. frames inferred at once
+ *   --rectangular          Pad frames only to a multiple of the model's stride (models with dynamic height and width)
+ *   --motion-gate          Skip inference while the scene does not change
+ * </pre>
+ * With a recorded source, the session ends by itself once the recording has been processed.
+ */
+public class HeadlessApp {
+
+    private static final String USAGE = """
+            Usage: HeadlessApp --session <title> [--config <file>] [--description <text>] [--duration <seconds>]
+                               [--camera <id>] [--source <spec>] [--max-speed]
+                               [--model <file>] [--labels <file>] [--every <n>] [--sessions <n>] [--rectangular]
+                               [--motion-gate]""";
+
+    private static final Set<String> OPTIONS = Set.of("help", "config", "session", "description", "duration",
+            "camera", "source", "max-speed", "model", "labels", "every", "sessions", "rectangular", "motion-gate");
+
+    // Options that take no value
+    private static final Set<String> FLAGS = Set.of("help", "max-speed", "rectangular", "motion-gate");
+
+    private static boolean stopped = false;
+
+    public static void main(String[] args) {
+        // Guarantee that nothing below can open a window, even by accident
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        try {
+            options = parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.containsKey("help") || !options.containsKey("session")) {
+            System.out.println(USAGE);
+            System.exit(options.containsKey("help") ? 0 : 2);
+            return;
+        }
+
+        ProgramSettings settings = options.containsKey("config")
+                ? SettingsLoader.loadSettings(options.get("config"))
+                : SettingsLoader.loadSettings();
+        applyOverrides(settings, options);
+        ProgramSettings.setCurrentSettings(settings);
+        System.out.println(settings);
+
+        Loader.load(opencv_core.class);
+        FrameSource source = FrameSources.fromSettings(settings);
+        if (!source.isOpened()) {
+            System.err.println("Error: Frame source " + source.describe() + " could not be opened. Exiting...");
+            System.exit(-1);
+        }
+
+        LogHandler logHandler = new ConsoleLogHandler();
+        SessionHandler sessionHandler = new SessionHandler(logHandler);
+        OnnxRunner onnxRunner = new OnnxRunner(logHandler.getLogQueue());
+
+        // Start the session first, so a recorded source is recorded from its first frame
+        if (!sessionHandler.startNewSession(options.get("session"), options.getOrDefault("description", ""), onnxRunner)) {
+            System.err.println("Failed to start session. Exiting...");
+            System.exit(1);
+        }
+
+        Thread cameraFetcherThread = new Thread(new CameraFetcher(null, () -> source, onnxRunner, sessionHandler), "capture");
+        cameraFetcherThread.start();
+
+        // Stop on Ctrl+C, when the requested duration has elapsed or when a recorded source has been read to the end
+        Thread shutdownHook = new Thread(() -> shutdown(sessionHandler, logHandler, cameraFetcherThread, source));
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        try {
+            // join(0) waits until capture stops
+            cameraFetcherThread.join(options.containsKey("duration") ? Long.parseLong(options.get("duration")) * 1000 : 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook does the cleanup
+            return;
+        }
+        shutdown(sessionHandler, logHandler, cameraFetcherThread, source);
+        System.exit(0);
+    }
+
+    // Ends the session so its files and AAR are written, then stops capture and releases the frame source
+    private static synchronized void shutdown(SessionHandler sessionHandler, LogHandler logHandler, Thread cameraFetcherThread,
+                                              FrameSource source) {
+        if (stopped) return;
+        stopped = true;
+        System.out.println("Beginning cleanup Process...");
+        if (sessionHandler.isSessionActive()) {
+            sessionHandler.endSession();
+        }
+        logHandler.endLogProcessing();
+
+        System.out.println("Stopping camera feed thread...");
+        cameraFetcherThread.interrupt();
+        try {
+            cameraFetcherThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Closing frame source...");
+        source.close();
+        System.out.println("Done cleanup process.");
+    }
+
+    private static Map<String, String> parseArguments(String[] args) {
+        return parseArguments(args, OPTIONS, FLAGS);
+    }
+
+    // Parses "--name value" pairs and value-less flags, rejecting anything not in options
+    static Map<String, String> parseArguments(String[] args, Set<String> known, Set<String> flags) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            if (flags.contains(name)) {
+                options.put(name, "");
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for --" + name);
+            }
+            options.put(name, args[++i]);
+        }
+        return options;
+    }
+
+    // Command line options take precedence over the settings file
+    static void applyOverrides(ProgramSettings settings, Map<String, String> options) {
+        HashMap<String, Object> overrides = new HashMap<>();
+        if (options.containsKey("camera")) overrides.put("cameraDeviceId", Integer.parseInt(options.get("camera")));
+        if (options.containsKey("source")) overrides.put("frameSource", options.get("source"));
+        if (options.containsKey("max-speed")) overrides.put("frameSourceMaxSpeed", true);
+        if (options.containsKey("every")) {
+            overrides.put("processEveryNthFrame", Integer.parseInt(options.get("every")));
+            overrides.put("adaptiveFrameSkip", false);
+        }
+        if (options.containsKey("sessions")) overrides.put("sessionPoolSize", Integer.parseInt(options.get("sessions")));
+        if (options.containsKey("rectangular")) overrides.put("rectangularInference", true);
+        if (options.containsKey("motion-gate")) overrides.put("motionGating", true);
+        if (options.containsKey("model")) settings.setModelPath(options.get("model"));
+        if (options.containsKey("labels")) settings.setLabelPath(options.get("labels"));
+        settings.applyWithoutSideEffects(overrides);
+    }
+}
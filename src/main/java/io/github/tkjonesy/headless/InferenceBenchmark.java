@@ -0,0 +1,329 @@
+package io.github.tkjonesy.headless;
+
+import ai.onnxruntime.OrtException;
+import io.github.tkjonesy.ONNX.Detection;
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import io.github.tkjonesy.ONNX.SessionPool;
+import io.github.tkjonesy.ONNX.Yolo;
+import io.github.tkjonesy.frontend.models.frameSource.SyntheticFrameSource;
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+import io.github.tkjonesy.utils.settings.SettingsLoader;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code InferenceBenchmark} class measures inference throughput for several session pool sizes K on this
+ * machine, so {@code sessionPoolSize} and {@code intraOpThreads} can be chosen for the host. For every K, a pool of K
+ * sessions is built with the configured threading settings, each session is warmed up, and K threads infer synthetic
+ * frames one at a time until the frame count is reached.
+ * <p>
+ * With {@code --compare-letterbox}, one session infers the same frames with square and with rectangular letterboxing
+ * instead, and the latency of both is printed along with how many of the square mode's detections the rectangular
+ * mode also finds.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp AIMs.jar io.github.tkjonesy.headless.InferenceBenchmark [options]
+ *
+ *   --config &lt;file&gt;        Settings JSON to use instead of ~/AIMs/settings.json
+ *   --model &lt;file&gt;         ONNX model path
+ *   --labels &lt;file&gt;        Label file path
+ *   --pool-sizes &lt;list&gt;    Comma-separated pool sizes to measure (default: 1, 2, 4, ... up to the core count)
+ *   --frames &lt;n&gt;           Frames inferred per pool size (default: 200)
+ *   --size &lt;W&gt;x&lt;H&gt;         Frame size (default: 1280x720)
+ *   --compare-letterbox    Compare square and rectangular letterboxing instead of pool sizes
+ * </pre>
+ */
+public class InferenceBenchmark {
+
+    private static final String USAGE = """
+            Usage: InferenceBenchmark [--config <file>] [--model <file>] [--labels <file>]
+                                      [--pool-sizes <list>] [--frames <n>] [--size <W>x<H>] [--compare-letterbox]""";
+
+    private static final Set<String> OPTIONS = Set.of("help", "config", "model", "labels", "pool-sizes", "frames", "size",
+            "compare-letterbox");
+    private static final Set<String> FLAGS = Set.of("help", "compare-letterbox");
+
+    // Detections of the two letterbox modes are the same object if their boxes overlap at least this much
+    private static final float PARITY_IOU = 0.5f;
+
+    // Distinct frames cycled through, so consecutive inferences do not see the same image
+    private static final int DISTINCT_FRAMES = 16;
+
+    private record Result(int sessions, int threadsPerSession, int frames, double seconds, double meanMs, double p95Ms) {}
+
+    private record LetterboxResult(String mode, int inputWidth, int inputHeight, double meanMs, double p95Ms,
+                                   List<List<Detection>> detections) {}
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        try {
+            options = HeadlessApp.parseArguments(args, OPTIONS, FLAGS);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.containsKey("help")) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        ProgramSettings settings = options.containsKey("config")
+                ? SettingsLoader.loadSettings(options.get("config"))
+                : SettingsLoader.loadSettings();
+        HeadlessApp.applyOverrides(settings, options);
+        ProgramSettings.setCurrentSettings(settings);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] poolSizes = options.containsKey("pool-sizes")
+                ? Arrays.stream(options.get("pool-sizes").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray()
+                : defaultPoolSizes(cores);
+        int frameCount = Integer.parseInt(options.getOrDefault("frames", "200"));
+        String[] size = options.getOrDefault("size", "1280x720").split("x");
+        int width = Integer.parseInt(size[0]), height = Integer.parseInt(size[1]);
+
+        Loader.load(opencv_core.class);
+        List<Mat> frames = syntheticFrames(width, height);
+
+        if (options.containsKey("compare-letterbox")) {
+            try {
+                compareLetterbox(settings, frames, frameCount);
+            } catch (OrtException | IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                frames.forEach(Mat::close);
+            }
+            return;
+        }
+
+        System.out.println("⏱ Benchmarking " + settings.getModelPath() + " on " + cores + " cores, " + frameCount
+                + " frames of " + width + "x" + height + " per pool size, optimization " + settings.getOptimizationLevel()
+                + ", " + settings.getExecutionMode() + " execution");
+        List<Result> results = new ArrayList<>();
+        try {
+            for (int poolSize : poolSizes) {
+                results.add(measure(settings, poolSize, frames, frameCount));
+            }
+        } catch (OrtException | IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            frames.forEach(Mat::close);
+        }
+        printTable(results);
+    }
+
+    // 1, 2, 4, ... up to the number of cores, plus the number of cores itself
+    private static int[] defaultPoolSizes(int cores) {
+        List<Integer> sizes = new ArrayList<>();
+        for (int k = 1; k < cores; k *= 2) {
+            sizes.add(k);
+        }
+        sizes.add(cores);
+        return sizes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<Mat> syntheticFrames(int width, int height) {
+        List<Mat> frames = new ArrayList<>(DISTINCT_FRAMES);
+        try (SyntheticFrameSource source = new SyntheticFrameSource(width, height, 30, true, DISTINCT_FRAMES)) {
+            Mat frame = new Mat();
+            while (source.read(frame)) {
+                frames.add(frame.clone());
+            }
+            frame.close();
+        }
+        return frames;
+    }
+
+    private static Result measure(ProgramSettings settings, int poolSize, List<Mat> frames, int frameCount)
+            throws OrtException, IOException {
+        int threadsPerSession = SessionPool.threadsPerSession(settings, poolSize);
+        try (SessionPool pool = new SessionPool(settings.getModelPath(), settings.getLabelPath(), poolSize, threadsPerSession)) {
+            // Warm up every session, so first-run allocations are not measured
+            List<Yolo> warm = new ArrayList<>();
+            try {
+                for (int i = 0; i < pool.size(); i++) {
+                    Yolo session = pool.acquire();
+                    session.run(frames.get(i % frames.size()), new DetectionBatch());
+                    warm.add(session);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                warm.forEach(pool::release);
+            }
+
+            long[] latencies = new long[frameCount];
+            AtomicInteger next = new AtomicInteger();
+            Thread[] clients = new Thread[pool.size()];
+            long start = System.nanoTime();
+            for (int c = 0; c < clients.length; c++) {
+                clients[c] = new Thread(() -> infer(pool, frames, latencies, next), "benchmark-" + c);
+                clients[c].start();
+            }
+            for (Thread client : clients) {
+                try {
+                    client.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double meanMs = Arrays.stream(sorted).average().orElse(0) / 1e6;
+            double p95Ms = sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.95))] / 1e6;
+            Result result = new Result(pool.size(), threadsPerSession, frameCount, seconds, meanMs, p95Ms);
+            System.out.printf("  K=%d: %.1f fps%n", result.sessions(), result.frames() / result.seconds());
+            return result;
+        }
+    }
+
+    // Client thread: infers frames until the shared count is reached, recording each frame's latency
+    private static void infer(SessionPool pool, List<Mat> frames, long[] latencies, AtomicInteger next) {
+        DetectionBatch batch = new DetectionBatch();
+        int index;
+        while ((index = next.getAndIncrement()) < latencies.length) {
+            long start = System.nanoTime();
+            Yolo session = null;
+            try {
+                session = pool.acquire();
+                session.run(frames.get(index % frames.size()), batch);
+            } catch (OrtException e) {
+                throw new RuntimeException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                if (session != null) pool.release(session);
+            }
+            latencies[index] = System.nanoTime() - start;
+        }
+    }
+
+    // Infers the frames with square and with rectangular letterboxing on one session, then prints latency and parity
+    private static void compareLetterbox(ProgramSettings settings, List<Mat> frames, int frameCount) throws OrtException, IOException {
+        System.out.println("⏱ Comparing square and rectangular letterboxing of " + settings.getModelPath() + ", " + frameCount
+                + " frames of " + frames.get(0).cols() + "x" + frames.get(0).rows());
+        boolean configured = settings.isRectangularInference();
+        List<LetterboxResult> results = new ArrayList<>(2);
+        try (SessionPool pool = new SessionPool(settings.getModelPath(), settings.getLabelPath(), 1, SessionPool.threadsPerSession(settings, 1))) {
+            Yolo session = pool.getPrimary();
+            if (!session.getMetadata().isDynamicInputSize()) {
+                System.err.println("⚠️ The model has a fixed input size, so rectangular letterboxing falls back to square");
+            }
+            for (boolean rectangular : new boolean[]{false, true}) {
+                HashMap<String, Object> mode = new HashMap<>();
+                mode.put("rectangularInference", rectangular);
+                settings.applyWithoutSideEffects(mode);
+                results.add(measureLetterbox(session, rectangular ? "rectangular" : "square", frames, frameCount));
+            }
+        } finally {
+            HashMap<String, Object> restore = new HashMap<>();
+            restore.put("rectangularInference", configured);
+            settings.applyWithoutSideEffects(restore);
+        }
+        printLetterboxTable(results);
+    }
+
+    private static LetterboxResult measureLetterbox(Yolo session, String mode, List<Mat> frames, int frameCount) throws OrtException {
+        int[] size = session.inputSizeFor(frames.get(0).cols(), frames.get(0).rows());
+
+        // The detections of every distinct frame, which also warms up the session for this input size
+        List<List<Detection>> detections = new ArrayList<>(frames.size());
+        for (Mat frame : frames) {
+            detections.add(session.run(frame));
+        }
+
+        DetectionBatch batch = new DetectionBatch();
+        long[] latencies = new long[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            long start = System.nanoTime();
+            session.run(frames.get(i % frames.size()), batch);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        double meanMs = Arrays.stream(latencies).average().orElse(0) / 1e6;
+        double p95Ms = latencies[Math.min(latencies.length - 1, (int) (latencies.length * 0.95))] / 1e6;
+        System.out.printf("  %s (%dx%d): %.1f ms%n", mode, size[0], size[1], meanMs);
+        return new LetterboxResult(mode, size[0], size[1], meanMs, p95Ms, detections);
+    }
+
+    private static void printLetterboxTable(List<LetterboxResult> results) {
+        LetterboxResult square = results.get(0);
+        System.out.println();
+        System.out.printf("%-12s %-10s %-10s %-10s %-10s %-12s %-10s%n", "Mode", "Input", "Mean ms", "P95 ms", "Speedup",
+                "Detections", "Matched");
+        for (LetterboxResult result : results) {
+            int total = 0, matched = 0;
+            double iouSum = 0;
+            for (int f = 0; f < result.detections().size(); f++) {
+                List<Detection> reference = square.detections().get(f);
+                List<Detection> candidates = result.detections().get(f);
+                total += candidates.size();
+                boolean[] used = new boolean[candidates.size()];
+                for (Detection expected : reference) {
+                    int best = -1;
+                    float bestIou = PARITY_IOU;
+                    for (int c = 0; c < candidates.size(); c++) {
+                        Detection candidate = candidates.get(c);
+                        float iou = iou(expected.bbox(), candidate.bbox());
+                        if (!used[c] && candidate.label().equals(expected.label()) && iou >= bestIou) {
+                            best = c;
+                            bestIou = iou;
+                        }
+                    }
+                    if (best >= 0) {
+                        used[best] = true;
+                        matched++;
+                        iouSum += bestIou;
+                    }
+                }
+            }
+            int expected = square.detections().stream().mapToInt(List::size).sum();
+            String parity = expected == 0 ? "n/a" : String.format("%.1f%%", 100.0 * matched / expected);
+            System.out.printf("%-12s %-10s %-10.1f %-10.1f %-10s %-12d %s%s%n", result.mode(),
+                    result.inputWidth() + "x" + result.inputHeight(), result.meanMs(), result.p95Ms(),
+                    String.format("%.2fx", square.meanMs() / result.meanMs()), total, parity,
+                    matched > 0 ? String.format(" (mean IoU %.3f)", iouSum / matched) : "");
+        }
+    }
+
+    // Intersection over union of two [x1, y1, x2, y2] boxes
+    private static float iou(float[] a, float[] b) {
+        float w = Math.max(0, Math.min(a[2], b[2]) - Math.max(a[0], b[0]));
+        float h = Math.max(0, Math.min(a[3], b[3]) - Math.max(a[1], b[1]));
+        float intersection = w * h;
+        float union = (a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - intersection;
+        return union > 0 ? intersection / union : 0;
+    }
+
+    private static void printTable(List<Result> results) {
+        double baseline = results.isEmpty() ? 1 : results.get(0).frames() / results.get(0).seconds();
+        System.out.println();
+        System.out.printf("%-4s %-16s %-10s %-10s %-10s %-8s%n", "K", "Threads/session", "FPS", "Mean ms", "P95 ms", "Speedup");
+        for (Result result : results) {
+            double fps = result.frames() / result.seconds();
+            System.out.printf("%-4d %-16s %-10.1f %-10.1f %-10.1f %.2fx%n",
+                    result.sessions(), result.threadsPerSession() > 0 ? String.valueOf(result.threadsPerSession()) : "default",
+                    fps, result.meanMs(), result.p95Ms(), fps / baseline);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.tkjonesy.headless;
+
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+import io.github.tkjonesy.utils.settings.SettingsLoader;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code ReprocessApp} class re-evaluates a recorded session with the current model, e.g. after a model change,
+ * without replaying the video in front of a camera. The recording is processed faster than real time by a
+ * {@link SessionReprocessor}, and the new logs and AAR are written to a {@code reprocess_<date>} directory inside the
+ * session's directory, next to the original ones.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp AIMs.jar io.github.tkjonesy.headless.ReprocessApp --session ~/AIMs/sessions/OR3_2025-03-01T0930 [options]
+ *
+ *   --session &lt;dir|file&gt;   Session directory containing recording.mp4, or a video file (required)
+ *   --config &lt;file&gt;        Settings JSON to use instead of ~/AIMs/settings.json
+ *   --model &lt;file&gt;         ONNX model path
+ *   --labels &lt;file&gt;        Label file path
+ *   --every &lt;n&gt;            Run inference on every Nth frame
+ *   --workers &lt;n&gt;          Number of parallel inference workers, each with its own session (default: sessionPoolSize)
+ * </pre>
+ */
+public class ReprocessApp {
+
+    private static final String USAGE = """
+            Usage: ReprocessApp --session <dir|file> [--config <file>] [--model <file>] [--labels <file>]
+                                [--every <n>] [--workers <n>]""";
+
+    private static final Set<String> OPTIONS = Set.of("help", "session", "config", "model", "labels", "every", "workers");
+    private static final Set<String> FLAGS = Set.of("help");
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        try {
+            options = HeadlessApp.parseArguments(args, OPTIONS, FLAGS);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.containsKey("help") || !options.containsKey("session")) {
+            System.out.println(USAGE);
+            System.exit(options.containsKey("help") ? 0 : 2);
+            return;
+        }
+
+        File session = new File(options.get("session"));
+        File recording = session.isDirectory() ? new File(session, "recording.mp4") : session;
+        if (!recording.isFile()) {
+            System.err.println("Error: No recording found at " + recording + ". Exiting...");
+            System.exit(1);
+        }
+
+        ProgramSettings settings = options.containsKey("config")
+                ? SettingsLoader.loadSettings(options.get("config"))
+                : SettingsLoader.loadSettings();
+        // Each worker infers on its own session
+        if (options.containsKey("workers")) options.put("sessions", options.get("workers"));
+        HeadlessApp.applyOverrides(settings, options);
+        ProgramSettings.setCurrentSettings(settings);
+        System.out.println(settings);
+
+        String dateTime = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmss"));
+        File sessionDirectory = recording.getAbsoluteFile().getParentFile();
+        String outputDirectory = new File(sessionDirectory, "reprocess_" + dateTime).getPath();
+
+        Loader.load(opencv_core.class);
+        SessionReprocessor reprocessor = new SessionReprocessor(recording.getPath(), outputDirectory, sessionDirectory.getName());
+        System.exit(reprocessor.reprocess() ? 0 : 1);
+    }
+}
@@ -0,0 +1,353 @@
+package io.github.tkjonesy.headless;
+
+import ai.onnxruntime.OrtException;
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import io.github.tkjonesy.ONNX.ObjectTracker;
+import io.github.tkjonesy.ONNX.SessionPool;
+import io.github.tkjonesy.ONNX.Yolo;
+import io.github.tkjonesy.ONNX.models.Log;
+import io.github.tkjonesy.ONNX.models.LogQueue;
+import io.github.tkjonesy.ONNX.models.OnnxRunner;
+import io.github.tkjonesy.frontend.models.FileSession;
+import io.github.tkjonesy.frontend.models.frameSource.VideoFileFrameSource;
+import io.github.tkjonesy.utils.MatPool;
+import io.github.tkjonesy.utils.MatPool.PooledMat;
+import io.github.tkjonesy.utils.settings.ProgramSettings;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code SessionReprocessor} class runs a recorded session's video through the current model and tracking logic
+ * as fast as the machine allows, writing a fresh {@code logfile.log}, {@code log.csv} and {@code AAR.txt}.
+ * <p>
+ * The work is spread over several threads:
+ * <ul>
+ *     <li>a decoder thread reads the video and queues every Nth frame, skipping the others without converting them,</li>
+ *     <li>one inference worker per session of the {@link SessionPool} letterboxes, infers and post-processes queued
+ *     frames in parallel; each worker takes as many queued frames as the model's preferred batch size and infers
+ *     them in one call on a session borrowed from the pool,</li>
+ *     <li>the calling thread puts the results back in frame order, runs them through the {@link ObjectTracker} if
+ *     tools are counted from tracks and feeds them to {@link OnnxRunner#processDetections(DetectionBatch)}; both
+ *     depend on the order of the frames.</li>
+ * </ul>
+ * Logs are stamped with their position in the recording rather than the time they were produced, in the same format
+ * as live logs.
+ * <p>
+ * Frames are always inferred at the fixed cadence of {@code processEveryNthFrame}. The live cadence of
+ * {@code adaptiveFrameSkip} follows the inference latency and CPU load measured while capturing in real time, which
+ * have no counterpart when the recording is read as fast as possible, so it is not replayed.
+ * <p>
+ * If the decoder or a worker thread dies, the run stops with an error instead of waiting for its results.
+ */
+public class SessionReprocessor {
+
+    /** The interval between progress reports, in nanoseconds. */
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final String recordingPath;
+    private final String outputDirectory;
+    private final String title;
+    private final int workers;
+    private final int processEveryNthFrame;
+
+    private final LogQueue logQueue = new LogQueue();
+    private final OnnxRunner onnxRunner;
+    private final SessionPool sessionPool;
+
+    // Tracks the results in frame order on the calling thread, like the capture thread does live
+    private final ObjectTracker objectTracker = new ObjectTracker();
+    private final DetectionBatch trackedDetections = new DetectionBatch();
+
+    // Frames waiting for a worker, and the end-of-video marker
+    private final BlockingQueue<Job> jobs;
+    private static final Job END = new Job(-1, -1, 0, null);
+
+    // Finished results by job index, until the tracking thread reaches them
+    private final Map<Long, DetectionBatch> completed = new HashMap<>();
+    private final ConcurrentLinkedQueue<DetectionBatch> freeBatches = new ConcurrentLinkedQueue<>();
+
+    // Set by the decoder once the end of the video is reached
+    private volatile long totalJobs = -1;
+    private volatile long totalFrames = 0;
+    private volatile Throwable failure;
+
+    /**
+     * A decoded frame waiting for inference.
+     *
+     * @param index The position of the job among the inferred frames, used to restore their order.
+     * @param frameNumber The position of the frame in the video.
+     * @param offsetNanos The presentation time of the frame relative to the start of the video.
+     */
+    private record Job(long index, long frameNumber, long offsetNanos, PooledMat frame) {}
+
+    /**
+     * @param recordingPath The video to reprocess, usually a session's {@code recording.mp4}.
+     * @param outputDirectory The directory to create for the new logs and AAR.
+     * @param title The session name written to the AAR.
+     */
+    public SessionReprocessor(String recordingPath, String outputDirectory, String title) {
+        this.recordingPath = recordingPath;
+        this.outputDirectory = outputDirectory;
+        this.title = title;
+        this.processEveryNthFrame = Math.max(1, ProgramSettings.getCurrentSettings().getProcessEveryNthFrame());
+        this.onnxRunner = new OnnxRunner(logQueue);
+        this.sessionPool = onnxRunner.getSessionPool();
+        this.workers = sessionPool.size();
+        // Enough queued frames for every worker to fill a whole batch
+        this.jobs = new ArrayBlockingQueue<>(this.workers * (Math.max(1, ProgramSettings.getCurrentSettings().getMaxBatchSize()) + 1));
+    }
+
+    /**
+     * Reprocesses the whole recording and writes the session files. Blocks until done.
+     *
+     * @return {@code true} if the recording was processed to the end.
+     */
+    public boolean reprocess() {
+        VideoFileFrameSource source = new VideoFileFrameSource(recordingPath, true);
+        if (!source.isOpened()) {
+            System.err.println("❌ Could not open recording: " + recordingPath);
+            return false;
+        }
+        System.out.println("🎞 Reprocessing " + recordingPath + " (" + source.getFrameCount() + " frames at "
+                + source.getFps() + " fps) with " + workers + " inference worker(s), every " + processEveryNthFrame + " frame(s)");
+        if (ProgramSettings.getCurrentSettings().isAdaptiveFrameSkip()) {
+            System.out.println("🎚 adaptiveFrameSkip only applies live; reprocessing infers every "
+                    + processEveryNthFrame + " frame(s)");
+        }
+
+        FileSession fileSession = new FileSession(onnxRunner, title, null, outputDirectory);
+        MatPool matPool = new MatPool("reprocess", jobs.remainingCapacity() * 2, false);
+
+        Thread decoder = new Thread(() -> decode(source, matPool), "reprocess-decoder");
+        Thread[] inferenceThreads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            inferenceThreads[i] = new Thread(this::infer, "reprocess-worker-" + i);
+            inferenceThreads[i].setDaemon(true);
+            inferenceThreads[i].setUncaughtExceptionHandler(this::onThreadDeath);
+            inferenceThreads[i].start();
+        }
+        decoder.setDaemon(true);
+        decoder.setUncaughtExceptionHandler(this::onThreadDeath);
+        decoder.start();
+
+        long start = System.nanoTime();
+        long nextReport = start + REPORT_INTERVAL;
+        long lastOffset = 0;
+        long processed = 0;
+        try {
+            while (failure == null && (totalJobs < 0 || processed < totalJobs)) {
+                DetectionBatch batch = awaitResult(processed);
+                if (batch == null) continue;
+
+                ProgramSettings settings = ProgramSettings.getCurrentSettings();
+                if (settings.isObjectTracking() && settings.isCountFromTracks()) {
+                    objectTracker.configure(settings);
+                    objectTracker.update(batch, trackedDetections);
+                    onnxRunner.processDetections(trackedDetections);
+                } else {
+                    onnxRunner.processDetections(batch);
+                }
+                lastOffset = batch.getCaptureTimestamp();
+                writeLogs(fileSession, lastOffset);
+                freeBatches.offer(batch);
+                processed++;
+
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    report("⏩ Reprocessing:", batch.getFrameSequence() + 1, lastOffset, now - start);
+                    nextReport = now + REPORT_INTERVAL;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } finally {
+            decoder.interrupt();
+            for (Thread thread : inferenceThreads) {
+                thread.interrupt();
+            }
+            joinQuietly(decoder);
+            for (Thread thread : inferenceThreads) {
+                joinQuietly(thread);
+            }
+            Job leftover;
+            while ((leftover = jobs.poll()) != null) {
+                if (leftover.frame() != null) leftover.frame().release();
+            }
+            source.close();
+            matPool.close();
+        }
+
+        // The recording's full length, including frames after the last inferred one
+        long durationNanos = (long) (totalFrames * 1_000_000_000L / source.getFps());
+        fileSession.endSession(Duration.ofNanos(Math.max(durationNanos, lastOffset)));
+        sessionPool.close();
+
+        if (failure != null) {
+            System.err.println("❌ Reprocessing stopped early: " + failure);
+            return false;
+        }
+        report("✅ Reprocessed", totalFrames, durationNanos, System.nanoTime() - start);
+        System.out.println("📁 Results written to " + outputDirectory);
+        return true;
+    }
+
+    // Decoder thread: reads the video, queuing every Nth frame and skipping the rest
+    private void decode(VideoFileFrameSource source, MatPool matPool) {
+        Mat frame = new Mat();
+        long frameNumber = 0, index = 0, firstTimestamp = -1;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (frameNumber % processEveryNthFrame != 0) {
+                    source.skip();
+                    if (source.isEndOfStream()) break;
+                    frameNumber++;
+                    continue;
+                }
+                if (!source.read(frame)) break;
+                if (firstTimestamp < 0) firstTimestamp = source.getLastTimestamp();
+
+                jobs.put(new Job(index++, frameNumber, source.getLastTimestamp() - firstTimestamp, matPool.copyOf(frame)));
+                frameNumber++;
+            }
+            totalFrames = frameNumber;
+            totalJobs = index;
+            for (int i = 0; i < workers; i++) {
+                jobs.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            frame.close();
+        }
+    }
+
+    // Inference worker: takes up to a batch of frames, then letterboxes, infers and decodes them together
+    private void infer() {
+        List<Job> batchJobs = new ArrayList<>();
+        List<Mat> frames = new ArrayList<>();
+        List<DetectionBatch> results = new ArrayList<>();
+        try {
+            while (true) {
+                batchJobs.clear();
+                batchJobs.add(jobs.take());
+                jobs.drainTo(batchJobs, sessionPool.getPrimary().getPreferredBatchSize() - 1);
+
+                // Hand back end markers meant for other workers
+                boolean end = false;
+                for (int i = batchJobs.size() - 1; i >= 0; i--) {
+                    if (batchJobs.get(i) == END) {
+                        batchJobs.remove(i);
+                        if (end) jobs.offer(END);
+                        end = true;
+                    }
+                }
+
+                if (!batchJobs.isEmpty()) {
+                    inferBatch(batchJobs, frames, results);
+                }
+                if (end) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void inferBatch(List<Job> batchJobs, List<Mat> frames, List<DetectionBatch> results) throws InterruptedException {
+        frames.clear();
+        results.clear();
+        for (Job job : batchJobs) {
+            DetectionBatch batch = freeBatches.poll();
+            frames.add(job.frame().getMat());
+            results.add(batch != null ? batch : new DetectionBatch());
+        }
+
+        Yolo yolo = sessionPool.acquire();
+        try {
+            if (yolo == null) throw new IllegalStateException("The session pool was closed");
+            yolo.run(frames, results);
+        } catch (OrtException | RuntimeException e) {
+            // Empty frames keep the sequence intact, as a failed live inference does
+            for (DetectionBatch batch : results) {
+                batch.clear();
+            }
+            System.err.println("Inference failed on frames " + batchJobs.get(0).frameNumber() + " to "
+                    + batchJobs.get(batchJobs.size() - 1).frameNumber() + ": " + e.getMessage());
+        } finally {
+            if (yolo != null) sessionPool.release(yolo);
+            for (Job job : batchJobs) {
+                job.frame().release();
+            }
+        }
+
+        synchronized (completed) {
+            for (int i = 0; i < batchJobs.size(); i++) {
+                Job job = batchJobs.get(i);
+                DetectionBatch batch = results.get(i);
+                batch.setFrameSequence(job.frameNumber());
+                batch.setCaptureTimestamp(job.offsetNanos());
+                completed.put(job.index(), batch);
+            }
+            completed.notifyAll();
+        }
+    }
+
+    // A thread that dies leaves results missing for good, so the run stops instead of waiting for them
+    private void onThreadDeath(Thread thread, Throwable e) {
+        System.err.println("❌ " + thread.getName() + " died: " + e);
+        synchronized (completed) {
+            if (failure == null) failure = e;
+            completed.notifyAll();
+        }
+    }
+
+    // Waits briefly for the result of the given job; returns null to let the caller recheck for the end or a failure
+    private DetectionBatch awaitResult(long index) throws InterruptedException {
+        synchronized (completed) {
+            DetectionBatch batch = completed.remove(index);
+            if (batch == null) {
+                completed.wait(100);
+                batch = completed.remove(index);
+            }
+            return batch;
+        }
+    }
+
+    // Writes the logs produced by the last processed frame, stamped with the frame's position in the recording
+    private void writeLogs(FileSession fileSession, long offsetNanos) {
+        String timeStamp = LocalTime.ofNanoOfDay(offsetNanos % TimeUnit.DAYS.toNanos(1)).format(Log.TIME_FORMAT);
+        Log log;
+        while ((log = logQueue.getNextLog()) != null) {
+            Log stamped = new Log(log.getLogType(), log.getMessage(), timeStamp);
+            System.out.println(stamped.getLogType().getAnsiColor() + stamped.getTimeStamp() + " - " + stamped.getMessage() + "\u001B[0m");
+            fileSession.writeLogToFile(stamped);
+        }
+    }
+
+    private static void report(String prefix, long frames, long videoNanos, long elapsedNanos) {
+        double seconds = Math.max(1e-9, elapsedNanos / 1e9);
+        System.out.printf("%s %d frames in %.1f s: %.1f fps, %.2fx realtime%n",
+                prefix, frames, seconds, frames / seconds, videoNanos / 1e9 / seconds);
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
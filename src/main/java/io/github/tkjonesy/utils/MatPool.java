@@ -0,0 +1,187 @@
+package io.github.tkjonesy.utils;
+
+import lombok.Getter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code MatPool} class keeps preallocated native {@link Mat}s, keyed by size and type, so code on the capture
+ * path can borrow an image buffer instead of allocating one per frame and leaving it to JavaCPP's deallocators.
+ * <p>
+ * A borrowed image is a reference-counted {@link PooledMat}: every holder calls {@link PooledMat#retain()} before
+ * sharing it and {@link PooledMat#release()} when done, and the last release returns it to the pool. With leak
+ * detection enabled, the pool remembers where each outstanding image was acquired and {@link #reportLeaks()} lists
+ * the ones never released.
+ */
+public class MatPool {
+
+    private final String name;
+    private volatile int maxIdlePerKey;
+    private final boolean trackLeaks;
+    private volatile boolean closed = false;
+
+    private final Map<Long, ConcurrentLinkedDeque<PooledMat>> idle = new ConcurrentHashMap<>();
+
+    // Outstanding images and where they were acquired; only filled when leak detection is enabled
+    private final Map<PooledMat, Throwable> outstanding = new ConcurrentHashMap<>();
+
+    /** The number of images allocated because no idle image of the requested key was available. */
+    private final AtomicLong allocations = new AtomicLong();
+
+    /** The number of acquisitions served from idle images. */
+    private final AtomicLong reuses = new AtomicLong();
+
+    /**
+     * @param name The name used in leak reports.
+     * @param maxIdlePerKey The number of idle images kept per size and type; extra released images are freed.
+     * @param trackLeaks Whether to record the acquisition site of every outstanding image.
+     */
+    public MatPool(String name, int maxIdlePerKey, boolean trackLeaks) {
+        this.name = name;
+        this.maxIdlePerKey = Math.max(1, maxIdlePerKey);
+        this.trackLeaks = trackLeaks;
+    }
+
+    /**
+     * Changes the number of idle images kept per size and type, e.g. when more of them can be in use at once. Extra
+     * idle images are freed as they are released.
+     */
+    public void setMaxIdlePerKey(int maxIdlePerKey) {
+        this.maxIdlePerKey = Math.max(1, maxIdlePerKey);
+    }
+
+    /**
+     * Borrows an image of the given size and type with a reference count of 1. Its contents are undefined.
+     */
+    public PooledMat acquire(int rows, int cols, int type) {
+        long key = key(rows, cols, type);
+        PooledMat pooled = null;
+        ConcurrentLinkedDeque<PooledMat> free = idle.get(key);
+        if (free != null) pooled = free.pollFirst();
+
+        if (pooled == null) {
+            pooled = new PooledMat(new Mat(rows, cols, type), key);
+            allocations.incrementAndGet();
+        } else {
+            reuses.incrementAndGet();
+        }
+        pooled.refCount.set(1);
+        if (trackLeaks) outstanding.put(pooled, new Throwable("Acquired from MatPool '" + name + "'"));
+        return pooled;
+    }
+
+    /**
+     * Borrows an image with the same size and type as {@code src} and copies {@code src} into it.
+     */
+    public PooledMat copyOf(Mat src) {
+        PooledMat copy = acquire(src.rows(), src.cols(), src.type());
+        src.copyTo(copy.getMat());
+        return copy;
+    }
+
+    /**
+     * @return The number of images allocated so far.
+     */
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    /**
+     * @return The number of acquisitions served from idle images so far.
+     */
+    public long getReuses() {
+        return reuses.get();
+    }
+
+    /**
+     * Prints every image that was acquired but never released. Only available with leak detection enabled.
+     *
+     * @return The number of unreleased images.
+     */
+    public int reportLeaks() {
+        if (!trackLeaks) return 0;
+        int leaks = outstanding.size();
+        if (leaks == 0) {
+            System.out.println("✅ MatPool '" + name + "': no unreleased images.");
+        } else {
+            System.err.println("❌ MatPool '" + name + "': " + leaks + " unreleased image(s):");
+            for (Throwable site : outstanding.values()) {
+                site.printStackTrace();
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * Frees every idle image. Images released after this call are freed instead of being pooled.
+     */
+    public void close() {
+        closed = true;
+        for (ConcurrentLinkedDeque<PooledMat> free : idle.values()) {
+            PooledMat pooled;
+            while ((pooled = free.pollFirst()) != null) {
+                pooled.mat.deallocate();
+            }
+        }
+    }
+
+    private void recycle(PooledMat pooled) {
+        if (trackLeaks) outstanding.remove(pooled);
+        ConcurrentLinkedDeque<PooledMat> free = idle.computeIfAbsent(pooled.key, k -> new ConcurrentLinkedDeque<>());
+        if (closed || free.size() >= maxIdlePerKey) {
+            pooled.mat.deallocate();
+        } else {
+            free.offerFirst(pooled);
+        }
+    }
+
+    private static long key(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | (type & 0xFFFF);
+    }
+
+    /**
+     * A reference-counted image borrowed from a {@link MatPool}.
+     */
+    public final class PooledMat {
+
+        @Getter
+        private final Mat mat;
+
+        private final long key;
+        private final AtomicInteger refCount = new AtomicInteger();
+
+        private PooledMat(Mat mat, long key) {
+            this.mat = mat;
+            this.key = key;
+        }
+
+        /**
+         * Adds a holder. Must be called before handing the image to another owner.
+         *
+         * @return This image.
+         */
+        public PooledMat retain() {
+            if (refCount.getAndIncrement() <= 0) {
+                throw new IllegalStateException("Cannot retain an image that was already returned to the pool");
+            }
+            return this;
+        }
+
+        /**
+         * Removes a holder, returning the image to the pool when the last holder releases it.
+         */
+        public void release() {
+            int remaining = refCount.decrementAndGet();
+            if (remaining == 0) {
+                recycle(this);
+            } else if (remaining < 0) {
+                throw new IllegalStateException("Image released more times than it was acquired");
+            }
+        }
+    }
+}
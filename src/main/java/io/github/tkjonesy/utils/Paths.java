@@ -4,6 +4,7 @@ public class Paths {
 
     public static final String AIMS_DIRECTORY = System.getProperty("user.home") + "/AIMs";
     public static final String AIMS_MODELS_DIRECTORY = AIMS_DIRECTORY + "/ai_models";
+    public static final String AIMS_OPTIMIZED_MODELS_DIRECTORY = AIMS_MODELS_DIRECTORY + "/optimized";
     public static final String AIMS_SESSIONS_DIRECTORY = AIMS_DIRECTORY + "/sessions";
     public static final String AIMS_SETTINGS_FILE_PATH = AIMS_DIRECTORY + "/settings.json";
 
@@ -0,0 +1,53 @@
+package io.github.tkjonesy.utils;
+
+import lombok.Getter;
+
+/**
+ * The {@code StageTimer} class accumulates the duration of a repeated pipeline stage (e.g. preprocessing)
+ * and prints a summary to the console every {@code reportEvery} samples.
+ */
+public class StageTimer {
+
+    private final String name;
+    private final int reportEvery;
+
+    private long count = 0;
+    private long totalNanos = 0;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos = 0;
+
+    /** The duration of the most recent sample, in nanoseconds. */
+    @Getter
+    private volatile long lastNanos = 0;
+
+    /**
+     * @param name The label printed in front of each summary.
+     * @param reportEvery The number of samples between summaries.
+     */
+    public StageTimer(String name, int reportEvery) {
+        this.name = name;
+        this.reportEvery = Math.max(1, reportEvery);
+    }
+
+    /**
+     * Records one sample and prints a summary if enough samples have been collected.
+     *
+     * @param nanos The duration of the sample, in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        lastNanos = nanos;
+        count++;
+        totalNanos += nanos;
+        minNanos = Math.min(minNanos, nanos);
+        maxNanos = Math.max(maxNanos, nanos);
+
+        if (count >= reportEvery) {
+            System.out.printf("⏱ %s: avg %.2f ms, min %.2f ms, max %.2f ms over %d frames%n",
+                    name, totalNanos / 1e6 / count, minNanos / 1e6, maxNanos / 1e6, count);
+            count = 0;
+            totalNanos = 0;
+            minNanos = Long.MAX_VALUE;
+            maxNanos = 0;
+        }
+    }
+}
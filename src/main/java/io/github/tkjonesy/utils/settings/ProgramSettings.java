@@ -1,17 +1,20 @@
 package io.github.tkjonesy.utils.settings;
 
-import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
-import io.github.tkjonesy.ONNX.YoloV8;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.github.tkjonesy.ONNX.enums.PreprocessMode;
 import io.github.tkjonesy.frontend.App;
+import io.github.tkjonesy.frontend.models.pipeline.OverflowPolicy;
 import io.github.tkjonesy.utils.annotations.SettingsLabel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.Set;
 
+// Settings that were removed, e.g. the input geometry now read from the model, are ignored in older settings files
+@JsonIgnoreProperties(ignoreUnknown = true)
 @Getter
 public class ProgramSettings {
 
@@ -28,6 +31,22 @@ public class ProgramSettings {
     private int cameraFps;
     @SettingsLabel(value = "cameraRotation", type = Integer.class)
     private int cameraRotation;
+    @SettingsLabel(value = "frameSource", type = String.class) // camera[:id], video:<file>, images:<dir>, synthetic[:WxH]
+    private String frameSource = "camera";
+    @SettingsLabel(value = "frameSourceMaxSpeed", type = Boolean.class) // read recorded sources without real-time pacing
+    private boolean frameSourceMaxSpeed = false;
+
+    // Pipeline variables
+    @SettingsLabel(value = "renderQueueCapacity", type = Integer.class)
+    private int renderQueueCapacity = 2;
+    @SettingsLabel(value = "renderOverflowPolicy", type = OverflowPolicy.class) // block, drop_oldest, drop_newest
+    private OverflowPolicy renderOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+    @SettingsLabel(value = "recordQueueCapacity", type = Integer.class)
+    private int recordQueueCapacity = 60;
+    @SettingsLabel(value = "recordOverflowPolicy", type = OverflowPolicy.class) // block, drop_oldest, drop_newest
+    private OverflowPolicy recordOverflowPolicy = OverflowPolicy.BLOCK;
+    @SettingsLabel(value = "debugLeakDetection", type = Boolean.class) // report unreleased frames at shutdown
+    private boolean debugLeakDetection = false;
 
     // Storage variables
     @SettingsLabel(value = "fileDirectory", type = String.class)
@@ -40,8 +59,18 @@ public class ProgramSettings {
     @Setter
     @SettingsLabel(value = "labelPath", type = String.class)
     private String labelPath;
-    @SettingsLabel(value = "processEveryNthFrame", type = Integer.class)
+    @SettingsLabel(value = "processEveryNthFrame", type = Integer.class) // the fixed cadence, and the first adaptive one
     private int processEveryNthFrame;
+    @SettingsLabel(value = "adaptiveFrameSkip", type = Boolean.class) // choose the cadence from the measured latency
+    private boolean adaptiveFrameSkip = true;
+    @SettingsLabel(value = "targetDetectionRate", type = Float.class) // detections per second aimed for
+    private float targetDetectionRate = 2.0f;
+    @SettingsLabel(value = "minFrameSkip", type = Integer.class)
+    private int minFrameSkip = 1;
+    @SettingsLabel(value = "maxFrameSkip", type = Integer.class)
+    private int maxFrameSkip = 60;
+    @SettingsLabel(value = "maxInferenceLoad", type = Float.class) // share of the sessions' capacity inference may use
+    private float maxInferenceLoad = 0.75f;
     @SettingsLabel(value = "showBoundingBoxes", type = Boolean.class)
     private boolean showBoundingBoxes;
     @SettingsLabel(value = "confThreshold", type = Float.class)
@@ -52,38 +81,92 @@ public class ProgramSettings {
     private int gpuDeviceId;
     @SettingsLabel(value = "nmsThreshold", type = Float.class)
     private float nmsThreshold;
+    @SettingsLabel(value = "softNms", type = Boolean.class)
+    private boolean softNms = false;
+    @SettingsLabel(value = "maxDetections", type = Integer.class) // 0 keeps every detection
+    private int maxDetections = 300;
     @SettingsLabel(value = "optimizationLevel", type = OrtSession.SessionOptions.OptLevel.class) // all, extended, basic, no
     private OrtSession.SessionOptions.OptLevel optimizationLevel;
-    @SettingsLabel(value = "numInputElements", type = Integer.class)
-    private int numInputElements;
-    @SettingsLabel(value = "inputSize", type = Integer.class)
-    private int inputSize;
-    @SettingsLabel(value = "inputShape", type = long[].class)
-    private long[] inputShape;
+    @SettingsLabel(value = "preprocessMode", type = PreprocessMode.class) // legacy, fused, fused_parallel
+    private PreprocessMode preprocessMode = PreprocessMode.FUSED;
+    @SettingsLabel(value = "rectangularInference", type = Boolean.class) // pad to the model stride, not a square
+    private boolean rectangularInference = false;
+    @SettingsLabel(value = "maxBatchSize", type = Integer.class) // frames per inference call for batched runs
+    private int maxBatchSize = 8;
+    @SettingsLabel(value = "batchLatencyBudgetMs", type = Integer.class) // how long one batched call may take
+    private int batchLatencyBudgetMs = 250;
+
+    // ONNX Runtime session variables
+    @SettingsLabel(value = "sessionPoolSize", type = Integer.class) // sessions kept for concurrent inferences
+    private int sessionPoolSize = 1;
+    @SettingsLabel(value = "intraOpThreads", type = Integer.class) // per session; 0 splits the cores across the pool
+    private int intraOpThreads = 0;
+    @SettingsLabel(value = "interOpThreads", type = Integer.class) // 0 keeps ONNX Runtime's default
+    private int interOpThreads = 0;
+    @SettingsLabel(value = "executionMode", type = OrtSession.SessionOptions.ExecutionMode.class) // sequential, parallel
+    private OrtSession.SessionOptions.ExecutionMode executionMode = OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL;
+    @SettingsLabel(value = "memoryPatternOptimization", type = Boolean.class)
+    private boolean memoryPatternOptimization = true;
+    @SettingsLabel(value = "cpuArenaAllocator", type = Boolean.class)
+    private boolean cpuArenaAllocator = false;
+    @SettingsLabel(value = "optimizedModelCache", type = Boolean.class) // reuse optimized graphs from ai_models/optimized
+    private boolean optimizedModelCache = true;
+
+    // Motion gating variables
+    @SettingsLabel(value = "motionGating", type = Boolean.class) // skip inference while the scene does not change
+    private boolean motionGating = false;
+    @SettingsLabel(value = "motionPixelThreshold", type = Integer.class) // gray levels a pixel must change by
+    private int motionPixelThreshold = 25;
+    @SettingsLabel(value = "motionAreaThreshold", type = Float.class) // fraction of watched pixels that must change
+    private float motionAreaThreshold = 0.005f;
+    @SettingsLabel(value = "motionMaskPath", type = String.class) // image whose non-zero pixels are watched; empty for all
+    private String motionMaskPath = "";
+    @SettingsLabel(value = "motionMaxStalenessMs", type = Integer.class) // longest time between two inferences
+    private int motionMaxStalenessMs = 5000;
+
+    // Object tracking variables
+    @SettingsLabel(value = "objectTracking", type = Boolean.class) // give detections persistent track ids
+    private boolean objectTracking = true;
+    @SettingsLabel(value = "trackIouThreshold", type = Float.class) // overlap a detection needs to continue a track
+    private float trackIouThreshold = 0.3f;
+    @SettingsLabel(value = "trackHighScoreThreshold", type = Float.class) // score a detection needs to start a track
+    private float trackHighScoreThreshold = 0.6f;
+    @SettingsLabel(value = "trackMaxCoastMs", type = Integer.class) // how long an unmatched track is kept
+    private int trackMaxCoastMs = 1500;
+    @SettingsLabel(value = "boxPrediction", type = Boolean.class) // move tracked boxes between inferences
+    private boolean boxPrediction = true;
+    @SettingsLabel(value = "countFromTracks", type = Boolean.class) // count tools from tracks instead of raw detections
+    private boolean countFromTracks = false;
+
+    // Settings that only take effect when the inference sessions are rebuilt
+    private static final Set<String> SESSION_SETTINGS = Set.of("optimizationLevel", "sessionPoolSize", "intraOpThreads",
+            "interOpThreads", "executionMode", "memoryPatternOptimization", "cpuArenaAllocator", "optimizedModelCache");
 
     // -------------------------------------------------------------------------
 
     public void updateSettings(HashMap<String, Object> newSettings) {
-        boolean updateONNX = false, updateCamera = false;
+        boolean updateONNX = false, updateCamera = false, updateFrameSource = false;
         for (String key : newSettings.keySet()) {
             setSettings(key, newSettings.get(key));
-            if(key.equals("modelPath") || key.equals("labelPath")){
+            if(key.equals("modelPath") || key.equals("labelPath") || SESSION_SETTINGS.contains(key)){
                 updateONNX = true;
             }
             if(key.equals("cameraDeviceId")){
                 updateCamera = true;
             }
+            if(key.equals("frameSource") || key.equals("frameSourceMaxSpeed")){
+                updateFrameSource = true;
+            }
         }
         if(updateONNX){
-            try {
-                System.out.println("Updating ONNX model and label paths to: " + this.modelPath + ", " + this.labelPath);
-                App.getOnnxRunner().setInferenceSession(new YoloV8(this.modelPath, this.labelPath));
-            }catch (IOException | OrtException e) {
-                throw new RuntimeException(e);
-            }
+            // Loads in the background; the current model keeps running until the new one is ready
+            System.out.println("Reloading ONNX sessions with model and label paths: " + this.modelPath + ", " + this.labelPath);
+            App.getOnnxRunner().reloadSessionsAsync();
         }
 
-        if(updateCamera){
+        if(updateFrameSource){
+            App.updateFrameSource(this);
+        } else if(updateCamera){
             App.updateCamera((int)newSettings.get("cameraDeviceId"));
 
         }
@@ -91,6 +174,18 @@ public class ProgramSettings {
         SettingsLoader.saveSettings(this);
     }
 
+    /**
+     * Applies settings without reloading the model, swapping the camera or saving the settings file, e.g. for
+     * command-line overrides applied before anything is started.
+     *
+     * @param newSettings The settings to change, keyed by their {@link SettingsLabel} value.
+     */
+    public void applyWithoutSideEffects(HashMap<String, Object> newSettings) {
+        for (String key : newSettings.keySet()) {
+            setSettings(key, newSettings.get(key));
+        }
+    }
+
     private void setSettings(String label, Object value) {
         Field[] fields = this.getClass().getDeclaredFields();
         for (Field field : fields) {
@@ -122,17 +217,51 @@ public class ProgramSettings {
         return "ProgramSettings{" +
                 "cameraDeviceId=" + cameraDeviceId +
                 ", cameraFps=" + cameraFps +
+                ", frameSource='" + frameSource + '\'' +
+                ", frameSourceMaxSpeed=" + frameSourceMaxSpeed +
+                ", renderQueueCapacity=" + renderQueueCapacity +
+                ", renderOverflowPolicy=" + renderOverflowPolicy +
+                ", recordQueueCapacity=" + recordQueueCapacity +
+                ", recordOverflowPolicy=" + recordOverflowPolicy +
+                ", debugLeakDetection=" + debugLeakDetection +
                 ", fileDirectory='" + fileDirectory + '\'' +
                 ", modelPath='" + modelPath + '\'' +
                 ", labelPath='" + labelPath + '\'' +
                 ", processEveryNthFrame=" + processEveryNthFrame +
+                ", adaptiveFrameSkip=" + adaptiveFrameSkip +
+                ", targetDetectionRate=" + targetDetectionRate +
+                ", minFrameSkip=" + minFrameSkip +
+                ", maxFrameSkip=" + maxFrameSkip +
+                ", maxInferenceLoad=" + maxInferenceLoad +
                 ", showBoundingBoxes=" + showBoundingBoxes +
                 ", confThreshold=" + confThreshold +
                 ", gpuDeviceId=" + gpuDeviceId +
                 ", nmsThreshold=" + nmsThreshold +
+                ", softNms=" + softNms +
+                ", maxDetections=" + maxDetections +
                 ", optimizationLevel=" + optimizationLevel +
-                ", numInputElements=" + numInputElements +
-                ", inputSize=" + inputSize +
+                ", preprocessMode=" + preprocessMode +
+                ", rectangularInference=" + rectangularInference +
+                ", maxBatchSize=" + maxBatchSize +
+                ", batchLatencyBudgetMs=" + batchLatencyBudgetMs +
+                ", sessionPoolSize=" + sessionPoolSize +
+                ", intraOpThreads=" + intraOpThreads +
+                ", interOpThreads=" + interOpThreads +
+                ", executionMode=" + executionMode +
+                ", memoryPatternOptimization=" + memoryPatternOptimization +
+                ", cpuArenaAllocator=" + cpuArenaAllocator +
+                ", optimizedModelCache=" + optimizedModelCache +
+                ", motionGating=" + motionGating +
+                ", motionPixelThreshold=" + motionPixelThreshold +
+                ", motionAreaThreshold=" + motionAreaThreshold +
+                ", motionMaskPath='" + motionMaskPath + '\'' +
+                ", motionMaxStalenessMs=" + motionMaxStalenessMs +
+                ", objectTracking=" + objectTracking +
+                ", trackIouThreshold=" + trackIouThreshold +
+                ", trackHighScoreThreshold=" + trackHighScoreThreshold +
+                ", trackMaxCoastMs=" + trackMaxCoastMs +
+                ", boxPrediction=" + boxPrediction +
+                ", countFromTracks=" + countFromTracks +
                 '}';
     }
 
@@ -54,6 +54,27 @@ public class SettingsLoader {
         return settings;
     }
 
+    /**
+     * Loads settings from a specific file, e.g. a config file passed on the command line. Settings missing from the
+     * file keep their defaults. The file is not written back.
+     *
+     * @param configPath The path of the JSON settings file.
+     * @return The loaded settings.
+     */
+    public static ProgramSettings loadSettings(String configPath){
+        initializeAIMsDirectories();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        ProgramSettings settings;
+        try {
+            settings = objectMapper.readValue(new File(configPath), ProgramSettings.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load settings from file: " + configPath, e);
+        }
+        verifyModelAndLabels(settings);
+        return settings;
+    }
+
     private static void initializeAIMsDirectories() {
         try {
             Path parentDirectory = Paths.get(AIMS_DIRECTORY);
@@ -0,0 +1,93 @@
+package io.github.tkjonesy.ONNX.kernels;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the SIMD kernels give bit-identical results to the scalar kernels, for lengths around the vector width
+ * so both the vector loops and their scalar tails are covered.
+ */
+class SimdKernelsTest {
+
+    private static final int[] LENGTHS = {0, 1, 2, 3, 5, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 1000, 8400};
+
+    private static Kernels simd;
+    private final Kernels scalar = new ScalarKernels();
+    private final Random random = new Random(42);
+
+    @BeforeAll
+    static void loadSimd() {
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "the tests must run with --add-modules jdk.incubator.vector");
+        simd = new SimdKernels();
+    }
+
+    @Test
+    void maxArgmaxMatchesScalar() {
+        for (int n : LENGTHS) {
+            float[] simdScore = new float[n], scalarScore = new float[n];
+            int[] simdClass = new int[n], scalarClass = new int[n];
+            Arrays.fill(simdScore, -Float.MAX_VALUE);
+            Arrays.fill(scalarScore, -Float.MAX_VALUE);
+            for (int classId = 0; classId < 12; classId++) {
+                float[] row = new float[n];
+                for (int i = 0; i < n; i++) {
+                    // Coarse scores, so ties between classes are common
+                    row[i] = random.nextInt(8) / 8f;
+                }
+                simd.maxArgmax(row, n, classId, simdScore, simdClass);
+                scalar.maxArgmax(row, n, classId, scalarScore, scalarClass);
+            }
+            assertArrayEquals(scalarScore, simdScore, "scores, n = " + n);
+            assertArrayEquals(scalarClass, simdClass, "classes, n = " + n);
+        }
+    }
+
+    @Test
+    void maxArgmaxOnlyTouchesTheFirstNAnchors() {
+        int n = 37;
+        float[] row = new float[n + 11];
+        Arrays.fill(row, 1);
+        float[] score = new float[n + 11];
+        int[] classes = new int[n + 11];
+        simd.maxArgmax(row, n, 3, score, classes);
+        for (int i = n; i < row.length; i++) {
+            assertTrue(score[i] == 0 && classes[i] == 0, "anchor " + i + " was written");
+        }
+    }
+
+    @Test
+    void floatDeinterleaveMatchesScalar() {
+        for (int pixels : LENGTHS) {
+            int srcOffset = 3 * random.nextInt(4), dstOffset = random.nextInt(5);
+            float[] hwc = new float[srcOffset + 3 * pixels];
+            for (int i = 0; i < hwc.length; i++) hwc[i] = random.nextFloat();
+
+            float[][] expected = new float[3][dstOffset + pixels], actual = new float[3][dstOffset + pixels];
+            scalar.deinterleave(hwc, srcOffset, pixels, expected[0], expected[1], expected[2], dstOffset);
+            simd.deinterleave(hwc, srcOffset, pixels, actual[0], actual[1], actual[2], dstOffset);
+            for (int c = 0; c < 3; c++) {
+                assertArrayEquals(expected[c], actual[c], "channel " + c + ", pixels = " + pixels);
+            }
+        }
+    }
+
+    @Test
+    void scaleMatchesScalar() {
+        for (int n : LENGTHS) {
+            int[] in = new int[n];
+            for (int i = 0; i < n; i++) in[i] = random.nextInt(256);
+
+            float[] expected = new float[n], actual = new float[n];
+            scalar.scale(in, expected, n, 1 / 255f);
+            simd.scale(in, actual, n, 1 / 255f);
+            assertArrayEquals(expected, actual, "n = " + n);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * The tool counting state machine as it was before {@link ToolCounter} moved it into {@code int} arrays: label-keyed
+ * {@code HashMap}s, a buffer keyed by label and count, and a removal queue. Kept as the reference the new
+ * implementation is checked against; the debug printing is left out.
+ */
+class LegacyToolCounter {
+
+    private int logCounter = 1;
+    int peakObjectsSeen = 0;
+    final LogQueue logQueue;
+    final HashMap<String, Integer> activeDetections = new HashMap<>();
+    final HashMap<DetectionWithCount, Integer> detectionBuffer = new HashMap<>();
+    HashMap<String, Integer> startCountPerClass = new HashMap<>();
+    final HashMap<String, Integer> totalInstancesAdded = new HashMap<>();
+    int bufferThreshold = 3;
+    private boolean sessionActive = false;
+    private int[] classCounts = new int[0];
+
+    LegacyToolCounter(LogQueue logQueue) {
+        this.logQueue = logQueue;
+    }
+
+    void processDetections(DetectionBatch detections) {
+        processDetectionCounts(detectionsBatchToMap(detections));
+    }
+
+    void endSession() {
+        sessionActive = false;
+        startCountPerClass.clear();
+        activeDetections.clear();
+        detectionBuffer.clear();
+        peakObjectsSeen = 0;      // Resets peak object count
+        totalInstancesAdded.clear();
+        logCounter = 1;
+    }
+
+    // Count detections per class with an int array, only touching label strings for classes that are present
+    private HashMap<String, Integer> detectionsBatchToMap(DetectionBatch detections) {
+        int[] classIds = detections.getClassIds();
+        int maxClassId = -1;
+        for (int i = 0; i < detections.getCount(); i++) {
+            maxClassId = Math.max(maxClassId, classIds[i]);
+        }
+        if (classCounts.length <= maxClassId) {
+            classCounts = new int[maxClassId + 1];
+        }
+        for (int i = 0; i < detections.getCount(); i++) {
+            classCounts[classIds[i]]++;
+        }
+
+        HashMap<String, Integer> currentDetections = new HashMap<>();
+        for (int classId = 0; classId <= maxClassId; classId++) {
+            if (classCounts[classId] > 0) {
+                currentDetections.merge(detections.labelOf(classId), classCounts[classId], Integer::sum);
+                classCounts[classId] = 0;
+            }
+        }
+
+        return currentDetections;
+    }
+
+    // Utility method to format log messages
+    private String formatLogMessage(int logIndex, String label, String action) {
+        return String.format(
+                "Log #%d    Object: %-15s    Action: %-25s",
+                logIndex, label, action
+        );
+    }
+
+    private void processDetectionCounts(HashMap<String, Integer> currentDetections) {
+
+        //  Update Peak Objects Seen at Once
+        int currentObjectsSeen = activeDetections.values().stream().mapToInt(Integer::intValue).sum(); // Count total objects seen
+        if (currentObjectsSeen > peakObjectsSeen) {
+            peakObjectsSeen = currentObjectsSeen; // Update if higher count found
+        }
+
+        // If the session is not active and the current detections are not empty, capture the initial tool set
+        if (!sessionActive && !activeDetections.isEmpty()) {
+            sessionActive = true;
+            startCountPerClass = new HashMap<>();
+            startCountPerClass.putAll(activeDetections);
+        }
+
+        // <String, Integer> activeDetections
+        // key = label
+        // value = count
+        // For labels that are in activeDetections but not in the current frame, add the label with count 0 to currentDetections
+        for (var detection : activeDetections.entrySet()) {
+            // If the label is in the current frame, skip
+            if (currentDetections.containsKey(detection.getKey())) {
+                continue;
+            }
+
+            // If the label is not in the current frame, add its removal to the buffer
+            currentDetections.put(detection.getKey(), 0);
+        }
+
+        /*
+         * <String, Integer> currentDetections
+         * key = label
+         * value = count
+         * Add the labels in currentDetections to the detectionBuffer
+         *     If the label is already in the buffer, increment its count
+         *     If the label is not in the buffer, add it with count 1
+         *     If the buffer value is greater than the buffer threshold, remove the label from the buffer and add it to activeDetections
+         */
+        for (var detection : currentDetections.entrySet()) {
+
+            // Create a DetectionWithCount object to use as a key for the detectionBuffer. example: "person3"
+            DetectionWithCount detectionWithCount = new DetectionWithCount(detection.getKey(), detection.getValue());
+
+            // currentBufferValue is the number of consecutive frames the detection has been in the buffer
+            int currentBufferValue = detectionBuffer.getOrDefault(detectionWithCount, 0);
+
+            // Increment the buffer value by 1. If the value is negative, default it to 0
+            currentBufferValue = Math.max(currentBufferValue, 0) + 1;
+
+            // If the buffer value is greater than or equal to the buffer threshold
+            if (currentBufferValue >= bufferThreshold) {
+
+                // Update the activeDetections
+                handleUpdate(detectionWithCount);
+
+                // Remove the detection from the buffer
+                detectionBuffer.remove(detectionWithCount);
+            } else {
+
+                // Update the bufferValue for the detection
+                detectionBuffer.put(detectionWithCount, currentBufferValue);
+            }
+        }
+
+        // Since you can't remove items from a hashmap while iterating through it, we need to store the items to be removed in a queue
+        Queue<DetectionWithCount> queueForBufferRemoval = new LinkedList<>();
+
+        // <DetectionWithCount, Integer> detectionBuffer
+        // key = label + count
+        // value = number of consecutive frames the detection has been in the buffer
+        // For labels that are in the buffer but not in the current frame, decrement. Aka decrement detection outliers/flickers
+        for (var detection : detectionBuffer.entrySet()) {
+
+            // Grab the count of the detection in the buffer and the current count of the detection
+            int detectionCountInBuffer = detection.getKey().count();
+            int detectionCountInCurrentDetections = currentDetections.getOrDefault(detection.getKey().label(), 0);
+
+            // If the label is in the current frame and the count is the same, skip
+            if (currentDetections.containsKey(detection.getKey().label()) && detectionCountInBuffer == detectionCountInCurrentDetections) {
+                continue;
+            }
+
+            queueForBufferRemoval.add(detection.getKey());
+        }
+
+        // Remove the detections from the buffer
+        while (!queueForBufferRemoval.isEmpty()) {
+            DetectionWithCount detection = queueForBufferRemoval.poll();
+            detectionBuffer.remove(detection);
+        }
+    }
+
+    private void handleUpdate(DetectionWithCount detectionWithCount) {
+        int originalValue = activeDetections.getOrDefault(detectionWithCount.label(), 0);
+        int newValue = detectionWithCount.count();
+        int difference = newValue - originalValue;
+
+        //  Green log - New object detected or class count increased
+        if (difference > 0) {
+            if(originalValue == 0){
+                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "New Object Detected: " + newValue);
+                logQueue.addGreenLog(logMessage);
+            }else{
+                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "Class count increased: " + newValue);
+                logQueue.addGreenLog(logMessage);
+            }
+
+            int totalAdded = totalInstancesAdded.getOrDefault(detectionWithCount.label(), 0);
+            totalInstancesAdded.put(detectionWithCount.label(), totalAdded + difference);
+
+        //  Red log - Object removed or class count decreased
+        } else if (difference < 0) {
+            if(newValue == 0) {
+                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "Object Removed");
+                logQueue.addRedLog(logMessage);
+            } else{
+                String logMessage = formatLogMessage(logCounter++, detectionWithCount.label(), "Class count decreased: " + newValue);
+                logQueue.addRedLog(logMessage);
+            }
+        }
+
+        // Update active detections
+        if(difference != 0 && newValue != 0){
+            activeDetections.put(detectionWithCount.label(), newValue);
+        }else if(newValue == 0){
+            activeDetections.remove(detectionWithCount.label());
+        }
+    }
+
+    private record DetectionWithCount(String label, int count) {}
+}
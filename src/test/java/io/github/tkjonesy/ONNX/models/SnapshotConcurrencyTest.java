@@ -0,0 +1,283 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers the snapshots other threads read, the {@link ToolCounter}'s {@link TrackingSnapshot} and the
+ * {@link DetectionHandoff}'s {@link DetectionSnapshot}, from several threads at once, and checks that every snapshot
+ * a reader sees is internally consistent, and that detection snapshots are reused without disturbing their readers.
+ */
+// A broken handoff can leave readers spinning, so the tests fail after a while instead of hanging the build
+@Timeout(60)
+class SnapshotConcurrencyTest {
+
+    private static final List<String> LABELS = List.of("hammer", "wrench", "scalpel", "forceps", "clamp", "wrench");
+    private static final int PUBLISHERS = 3;
+    private static final int READERS = 3;
+
+    private PrintStream out;
+
+    @BeforeEach
+    void silenceDebugOutput() {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void restoreOutput() {
+        System.setOut(out);
+    }
+
+    @Test
+    void trackingSnapshotsStayConsistent() throws InterruptedException {
+        LogQueue logQueue = new LogQueue();
+        ToolCounter counter = new ToolCounter(logQueue);
+        counter.setBufferThreshold(2);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+        AtomicLong reads = new AtomicLong();
+
+        // The record thread counts frames while the UI thread ends sessions and readers take snapshots
+        Thread producer = new Thread(() -> {
+            Random random = new Random(1);
+            DetectionBatch batch = new DetectionBatch();
+            batch.setLabels(LABELS);
+            int[] counts = new int[LABELS.size() + 2];
+            for (int frame = 0; frame < 200_000; frame++) {
+                if (random.nextInt(20) == 0) {
+                    for (int classId = 0; classId < counts.length; classId++) counts[classId] = random.nextInt(4);
+                }
+                batch.clear();
+                for (int classId = 0; classId < counts.length; classId++) {
+                    int count = counts[classId] + (random.nextInt(4) == 0 ? random.nextInt(3) - 1 : 0);
+                    for (int i = 0; i < count; i++) batch.add(classId, 0, 0, 1, 1, 0.9f);
+                }
+                counter.processDetections(batch);
+                while (logQueue.getNextLog() != null) {
+                    // The logs are not checked here
+                }
+            }
+            producing.set(false);
+        }, "record");
+        Thread sessionEnder = new Thread(() -> {
+            while (producing.get()) {
+                LockSupport.parkNanos(200_000);
+                counter.reset();
+            }
+        }, "ui");
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                long lastVersion = -1;
+                while (producing.get()) {
+                    TrackingSnapshot snapshot = counter.getSnapshot();
+                    String problem = checkTracking(snapshot, lastVersion);
+                    if (problem != null) violations.add(problem);
+                    lastVersion = snapshot.version();
+                    reads.incrementAndGet();
+                }
+            }, "reader-" + r));
+        }
+
+        readers.add(producer);
+        readers.add(sessionEnder);
+        runAll(readers);
+        assertTrue(violations.isEmpty(), () -> violations.size() + " inconsistent snapshot(s), e.g. " + violations.peek());
+        assertTrue(reads.get() > 0, "the readers never ran");
+    }
+
+    // Counts only grow through additions, so no label can be active, or have started, with more than were added.
+    // The peak is taken before the initial tool set in the same frame, so it covers the initial tools
+    private static String checkTracking(TrackingSnapshot snapshot, long lastVersion) {
+        if (snapshot.version() < lastVersion) {
+            return "version went back from " + lastVersion + " to " + snapshot.version();
+        }
+        for (Map.Entry<String, Integer> entry : snapshot.activeDetections().entrySet()) {
+            if (entry.getValue() > snapshot.totalInstancesAdded().getOrDefault(entry.getKey(), 0)) {
+                return "more " + entry.getKey() + " active than added in " + snapshot;
+            }
+        }
+        int startTotal = 0;
+        for (Map.Entry<String, Integer> entry : snapshot.startCountPerClass().entrySet()) {
+            if (entry.getValue() > snapshot.totalInstancesAdded().getOrDefault(entry.getKey(), 0)) {
+                return "more " + entry.getKey() + " at the start than added in " + snapshot;
+            }
+            startTotal += entry.getValue();
+        }
+        if (startTotal > snapshot.peakObjectsSeen()) {
+            return "initial tools above the peak in " + snapshot;
+        }
+        try {
+            snapshot.activeDetections().put("intruder", 1);
+            return "the active counts of a snapshot can be modified";
+        } catch (UnsupportedOperationException expected) {
+            return null;
+        }
+    }
+
+    @Test
+    void detectionSnapshotsStayConsistent() throws InterruptedException {
+        DetectionHandoff handoff = new DetectionHandoff();
+        AtomicLong sequence = new AtomicLong();
+        AtomicLong publishing = new AtomicLong(PUBLISHERS);
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+        AtomicLong reads = new AtomicLong();
+
+        // Like the worker threads: each publisher reuses one scratch batch, and overwrites it right after publishing
+        List<Thread> publishers = new ArrayList<>();
+        for (int p = 0; p < PUBLISHERS; p++) {
+            publishers.add(new Thread(() -> {
+                DetectionBatch scratch = new DetectionBatch();
+                scratch.setLabels(LABELS);
+                for (int i = 0; i < 100_000; i++) {
+                    fill(scratch, sequence.getAndIncrement());
+                    handoff.publish(scratch);
+                    fill(scratch, -1);
+                }
+                publishing.decrementAndGet();
+            }, "publisher-" + p));
+        }
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                long lastVersion = 0, lastSequence = -1;
+                while (publishing.get() > 0) {
+                    DetectionSnapshot snapshot = handoff.acquire();
+                    if (snapshot == null) continue;
+                    try {
+                        long version = snapshot.version();
+                        long frame = snapshot.detections().getFrameSequence();
+                        if (version < lastVersion || frame < lastSequence) {
+                            violations.add("went back from version " + lastVersion + " to " + version);
+                        }
+                        lastVersion = version;
+                        lastSequence = frame;
+                        // Checked twice, so a snapshot refilled while it is held is caught as well
+                        for (int check = 0; check < 2; check++) {
+                            String problem = checkDetections(snapshot.detections(), frame);
+                            if (problem == null && snapshot.version() != version) problem = "version " + version + " changed";
+                            if (problem != null) violations.add(problem);
+                            Thread.yield();
+                        }
+                        reads.incrementAndGet();
+                    } finally {
+                        snapshot.release();
+                    }
+                }
+            }, "reader-" + r));
+        }
+
+        publishers.addAll(readers);
+        runAll(publishers);
+        assertTrue(violations.isEmpty(), () -> violations.size() + " inconsistent snapshot(s), e.g. " + violations.peek());
+        assertTrue(reads.get() > 0, "the readers never ran");
+        DetectionSnapshot newest = handoff.acquire();
+        assertEquals(sequence.get() - 1, newest.detections().getFrameSequence(), "the newest frame was not kept");
+        newest.release();
+    }
+
+    @Test
+    void heldSnapshotsAreNotReused() {
+        DetectionHandoff handoff = new DetectionHandoff();
+        DetectionBatch scratch = new DetectionBatch();
+        scratch.setLabels(LABELS);
+        fill(scratch, 16);
+        handoff.publish(scratch);
+        DetectionSnapshot held = handoff.acquire();
+
+        // Released snapshots go back to the pool, so a publisher and a reader taking turns reuse a couple of them
+        Set<DetectionSnapshot> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (long frame = 17; frame < 1_000; frame++) {
+            fill(scratch, frame);
+            handoff.publish(scratch);
+            DetectionSnapshot snapshot = handoff.acquire();
+            seen.add(snapshot);
+            snapshot.release();
+        }
+
+        assertNull(checkDetections(held.detections(), 16), "a held snapshot was refilled");
+        assertTrue(seen.size() <= 2, seen.size() + " snapshots for 983 frames");
+        assertFalse(seen.contains(held));
+        held.release();
+    }
+
+    @Test
+    void snapshotsAreReadOnly() {
+        DetectionHandoff handoff = new DetectionHandoff();
+        DetectionBatch scratch = new DetectionBatch();
+        fill(scratch, 5);
+        handoff.publish(scratch);
+
+        DetectionSnapshot snapshot = handoff.acquire();
+        DetectionBatch detections = snapshot.detections();
+        assertThrows(IllegalStateException.class, detections::clear);
+        assertThrows(IllegalStateException.class, () -> detections.add(0, 0, 0, 1, 1, 0.5f));
+        assertThrows(IllegalStateException.class, () -> detections.copyFrom(scratch));
+        assertThrows(IllegalStateException.class, () -> detections.setFrameSequence(6));
+        snapshot.release();
+    }
+
+    // Fills the batch with detections that all follow from the frame sequence
+    private static void fill(DetectionBatch batch, long frame) {
+        batch.clear();
+        int count = (int) Math.floorMod(frame, 17L);
+        float value = (float) Math.floorMod(frame, 1L << 20);
+        for (int i = 0; i < count; i++) {
+            batch.add(i % LABELS.size(), value, value + 1, value + 2, value + 3, value / (1 << 20), i);
+        }
+        batch.setFrameSequence(frame);
+        batch.setCaptureTimestamp(frame * 10);
+    }
+
+    private static String checkDetections(DetectionBatch batch, long frame) {
+        if (batch.getFrameSequence() != frame || batch.getCaptureTimestamp() != frame * 10) {
+            return "frame " + frame + " changed to " + batch.getFrameSequence();
+        }
+        if (batch.getCount() != Math.floorMod(frame, 17L)) {
+            return "frame " + frame + " has " + batch.getCount() + " detections";
+        }
+        float value = (float) Math.floorMod(frame, 1L << 20);
+        float[] boxes = batch.getBoxes();
+        for (int i = 0; i < batch.getCount(); i++) {
+            int o = 4 * i;
+            if (batch.getClassIds()[i] != i % LABELS.size() || batch.getTrackIds()[i] != i
+                    || boxes[o] != value || boxes[o + 1] != value + 1 || boxes[o + 2] != value + 2 || boxes[o + 3] != value + 3
+                    || batch.getScores()[i] != value / (1 << 20)) {
+                return "detection " + i + " of frame " + frame + " is torn";
+            }
+        }
+        return null;
+    }
+
+    private static void runAll(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+    }
+}
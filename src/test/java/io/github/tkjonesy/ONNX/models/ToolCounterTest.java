@@ -0,0 +1,143 @@
+package io.github.tkjonesy.ONNX.models;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@link ToolCounter} and {@link LegacyToolCounter} with the same random detection sequences and checks that
+ * they log the same changes under the same log numbers and end every frame with the same counts. Within a frame the
+ * new counter logs in label slot order rather than the old HashMap order, which is checked as well.
+ */
+class ToolCounterTest {
+
+    // "wrench" appears twice so two class ids share a label; ids past the table are labelled "class N"
+    private static final List<String> LABELS = List.of("hammer", "wrench", "scalpel", "wrench", "forceps");
+    private static final int MAX_CLASS_ID = 7;
+    private static final int FRAMES = 20_000;
+
+    private PrintStream out;
+
+    @BeforeEach
+    void silenceDebugOutput() {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    void restoreOutput() {
+        System.setOut(out);
+    }
+
+    @Test
+    void matchesLegacyCounterOnRandomSequences() {
+        for (int threshold = 1; threshold <= 4; threshold++) {
+            for (long seed = 0; seed < 5; seed++) {
+                runSequence(threshold, new Random(seed * 31 + threshold));
+            }
+        }
+    }
+
+    private void runSequence(int threshold, Random random) {
+        LogQueue newLogs = new LogQueue();
+        LogQueue legacyLogs = new LogQueue();
+        ToolCounter counter = new ToolCounter(newLogs);
+        LegacyToolCounter legacy = new LegacyToolCounter(legacyLogs);
+        counter.setBufferThreshold(threshold);
+        legacy.bufferThreshold = threshold;
+
+        DetectionBatch batch = new DetectionBatch();
+        batch.setLabels(LABELS);
+        int[] counts = new int[MAX_CLASS_ID + 1];
+
+        // Slots go to the label table's labels in class id order, then to unknown class ids as they are first seen
+        List<String> slotOrder = new ArrayList<>(new LinkedHashSet<>(LABELS));
+
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (random.nextInt(2_000) == 0) {
+                counter.reset();
+                legacy.endSession();
+            }
+
+            // Counts mostly hold steady so the buffer fills, with the odd flicker
+            for (int classId = 0; classId < counts.length; classId++) {
+                if (random.nextInt(10) == 0) {
+                    counts[classId] = random.nextInt(4) == 0 ? random.nextInt(4) : 0;
+                }
+            }
+            batch.clear();
+            for (int classId = 0; classId < counts.length; classId++) {
+                int count = counts[classId] > 0 && random.nextInt(20) == 0 ? counts[classId] - 1 : counts[classId];
+                for (int i = 0; i < count; i++) {
+                    batch.add(classId, 0, 0, 10, 10, 0.9f);
+                }
+                if (count > 0 && !slotOrder.contains(batch.labelOf(classId))) {
+                    slotOrder.add(batch.labelOf(classId));
+                }
+            }
+
+            counter.processDetections(batch);
+            legacy.processDetections(batch);
+
+            String context = "threshold " + threshold + ", frame " + frame;
+            assertSameLogs(newLogs, legacyLogs, slotOrder, context);
+            TrackingSnapshot snapshot = counter.getSnapshot();
+            assertEquals(legacy.activeDetections, snapshot.activeDetections(), context);
+            assertEquals(legacy.startCountPerClass, snapshot.startCountPerClass(), context);
+            assertEquals(legacy.totalInstancesAdded, snapshot.totalInstancesAdded(), context);
+            assertEquals(legacy.peakObjectsSeen, snapshot.peakObjectsSeen(), context);
+        }
+    }
+
+    // Both counters number the logs of a frame consecutively in the order they queue them, so the numbers must match.
+    // Which change gets which number differs on purpose: the new counter logs a frame's changes in label slot order,
+    // the old one in HashMap order. So the changes are compared without their numbers and without regard to order,
+    // and the new counter's order is checked against the slot order separately
+    private static void assertSameLogs(LogQueue newLogs, LogQueue legacyLogs, List<String> slotOrder, String context) {
+        List<Integer> newNumbers = new ArrayList<>(), legacyNumbers = new ArrayList<>();
+        List<String> newEntries = drain(newLogs, newNumbers);
+        List<String> legacyEntries = drain(legacyLogs, legacyNumbers);
+        assertEquals(legacyNumbers, newNumbers, context);
+        for (int i = 1; i < newNumbers.size(); i++) {
+            assertEquals(newNumbers.get(i - 1) + 1, newNumbers.get(i), context + ": log numbers must be consecutive");
+        }
+
+        int lastSlot = -1;
+        for (String entry : newEntries) {
+            int slot = slotOrder.indexOf(labelOf(entry));
+            assertTrue(slot > lastSlot, context + ": " + entry + " is out of slot order " + slotOrder);
+            lastSlot = slot;
+        }
+
+        newEntries.sort(null);
+        legacyEntries.sort(null);
+        assertEquals(legacyEntries, newEntries, context);
+    }
+
+    // The type and message of each log in queue order, without the "Log #N" prefix, whose number goes to numbers
+    private static List<String> drain(LogQueue logs, List<Integer> numbers) {
+        List<String> entries = new ArrayList<>();
+        for (Log log = logs.getNextLog(); log != null; log = logs.getNextLog()) {
+            String message = log.getMessage();
+            int object = message.indexOf("Object:");
+            numbers.add(Integer.parseInt(message.substring("Log #".length(), object).trim()));
+            entries.add(log.getLogType() + " " + message.substring(object));
+        }
+        return entries;
+    }
+
+    private static String labelOf(String entry) {
+        return entry.substring(entry.indexOf("Object:") + "Object:".length(), entry.indexOf("Action:")).trim();
+    }
+}
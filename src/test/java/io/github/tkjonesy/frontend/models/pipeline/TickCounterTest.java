@@ -0,0 +1,54 @@
+package io.github.tkjonesy.frontend.models.pipeline;
+
+import io.github.tkjonesy.ONNX.DetectionBatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that inference ticks reach the tool counts even when the render queue drops their frames.
+ */
+class TickCounterTest {
+
+    private static final int TICKS = 100;
+
+    @Test
+    void countsTicksTheRenderQueueDrops() throws InterruptedException {
+        List<Long> counted = new ArrayList<>();
+        TickCounter tickCounter = new TickCounter(detections -> counted.add(detections.getFrameSequence()));
+        List<Long> dropped = new ArrayList<>();
+        // A live source's render queue, with a render stage that has stalled
+        StageQueue<Long> renderQueue = new StageQueue<>("render", 2, OverflowPolicy.DROP_OLDEST, dropped::add);
+
+        DetectionBatch detections = new DetectionBatch();
+        for (long frame = 0; frame < TICKS; frame++) {
+            detections.clear();
+            detections.add(0, 0, 0, 10, 10, 0.9f);
+            detections.setFrameSequence(frame);
+            // As on the capture thread: count the tick, then queue the frame
+            tickCounter.count(detections, true);
+            renderQueue.offer(frame);
+        }
+
+        assertEquals(TICKS - renderQueue.getCapacity(), dropped.size(), "the render queue should have dropped frames");
+        assertEquals(TICKS, tickCounter.getTicksCounted());
+        for (int frame = 0; frame < TICKS; frame++) {
+            assertEquals(frame, counted.get(frame), "ticks must be counted once each, in order");
+        }
+    }
+
+    @Test
+    void ignoresTicksOutsideASession() {
+        List<DetectionBatch> counted = new ArrayList<>();
+        TickCounter tickCounter = new TickCounter(counted::add);
+
+        tickCounter.count(new DetectionBatch(), false);
+
+        assertTrue(counted.isEmpty());
+        assertEquals(0, tickCounter.getTicksCounted());
+    }
+}